@@ -4,19 +4,39 @@ import com.arize.protocol.Public;
 import com.arize.protocol.Public.BulkRecord;
 import com.arize.protocol.Public.Record;
 import com.arize.types.Embedding;
+import com.google.protobuf.Timestamp;
 import com.google.protobuf.util.Timestamps;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.message.BasicHeader;
 
 import java.io.IOException;
+import java.lang.reflect.Array;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ArizeClient implements ArizeAPI {
 
@@ -40,9 +60,72 @@ public class ArizeClient implements ArizeAPI {
   /** The Arize space key */
   private final String spaceKey;
 
+  /** Prebuilt request shapes for the single, bulk and preprod endpoints. */
+  private final RequestTemplate logTemplate;
+
+  private final RequestTemplate bulkTemplate;
+
+  private final RequestTemplate trainingValidationTemplate;
+
   /** The HTTP client. */
   private final CloseableHttpAsyncClient client;
 
+  /** Optional policy deciding which production records are sent, null to send all. */
+  private volatile Sampler sampler;
+
+  /** Optional filter for repeated prediction ids, null to send duplicates. */
+  private volatile Deduplicator deduplicator;
+
+  /** Whether bulk rows failing validation are dropped instead of failing the whole batch. */
+  private volatile boolean dropInvalidRows;
+
+  /** Feature and tag name dictionaries by model id. */
+  private final ConcurrentHashMap<String, FeatureDictionary> featureDictionaries =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Requests issued and not yet completed. Its monitor guards admission under {@link
+   * #inFlightLimit} and is notified as requests complete while a limit is set or during shutdown.
+   */
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  /** Body bytes of the requests in flight. */
+  private final AtomicLong inFlightBytes = new AtomicLong();
+
+  /** Optional bound on the requests in flight, null for none. */
+  private volatile InFlightLimit inFlightLimit;
+
+  /** Optional breaker stopping requests while the endpoint fails, null for none. */
+  private volatile CircuitBreaker circuitBreaker;
+
+  /** Optional hedging of single-record requests, null for none. */
+  private volatile HedgePolicy hedgePolicy;
+
+  /**
+   * Issues hedge requests and cancels requests past their deadline; started with the first hedge
+   * policy or request timeout and stopped on close.
+   */
+  private volatile ScheduledThreadPoolExecutor scheduler;
+
+  private volatile Duration requestTimeout;
+
+  /** Deadline of every request in nanoseconds, 0 for none. */
+  private volatile long requestTimeoutNanos;
+
+  /** Set once the client stops accepting records, by {@link #shutdown} or {@link #close}. */
+  private volatile boolean shutDown;
+
+  /** When requests blocked on the in-flight limit give up once shut down; set before shutDown. */
+  private volatile long shutdownDeadlineNanos;
+
+  /** Batchers, sessions and joiners of this client that still hold records, drained on shutdown. */
+  private final Set<Drainable> drainables = ConcurrentHashMap.newKeySet();
+
+  /** Guarded by this. */
+  private ShutdownReport shutdownReport;
+
+  private Thread shutdownHook;
+
   /**
    * Constructor for passing in an httpClient, typically for mocking.
    *
@@ -68,6 +151,10 @@ public class ArizeClient implements ArizeAPI {
     this.host = new URI(uri + "/log");
     this.bulkHost = new URI(uri + "/bulk");
     this.trainingValidationHost = new URI(uri + "/preprod");
+    final Header[] headers = buildHeaders(apiKey, spaceKey);
+    this.logTemplate = new RequestTemplate(this.host, headers);
+    this.bulkTemplate = new RequestTemplate(this.bulkHost, headers);
+    this.trainingValidationTemplate = new RequestTemplate(this.trainingValidationHost, headers);
     this.client.start();
   }
 
@@ -96,17 +183,33 @@ public class ArizeClient implements ArizeAPI {
     this(HttpAsyncClients.createDefault(), apiKey, spaceKey, uri);
   }
 
+  /**
+   * Initializes the protocol classes and JSON encoding used by every logging call, which otherwise
+   * happens on the first request and adds hundreds of milliseconds to it. Call it during startup,
+   * for example from a serverless function's initializer or before a snapshot is taken, so the
+   * first {@code log} runs at steady-state latency. Later calls return immediately. Sends nothing.
+   */
+  public static void warmUp() {
+    WarmUp.run();
+  }
+
+  /**
+   * Builds a one-off request. Clients stamp requests from their prebuilt {@link RequestTemplate}s
+   * instead, which avoids rebuilding the headers on every call.
+   */
   protected static HttpPost buildRequest(
       final String body, final URI host, String apiKey, String spaceKey) {
-    final HttpPost request = new HttpPost();
-    request.setEntity(new StringEntity(body, StandardCharsets.UTF_8));
-    request.setURI(host);
-    request.addHeader("Authorization", apiKey);
-    request.addHeader("Grpc-Metadata-space", spaceKey);
-    request.addHeader("Grpc-Metadata-sdk-language", SDK_LANGUAGE);
-    request.addHeader("Grpc-Metadata-language-version", LANGUAGE_VERSION);
-    request.addHeader("Grpc-Metadata-sdk-version", SDK_VERSION);
-    return request;
+    return new RequestTemplate(host, buildHeaders(apiKey, spaceKey)).newRequest(body);
+  }
+
+  private static Header[] buildHeaders(final String apiKey, final String spaceKey) {
+    return new Header[] {
+      new BasicHeader("Authorization", apiKey),
+      new BasicHeader("Grpc-Metadata-space", spaceKey),
+      new BasicHeader("Grpc-Metadata-sdk-language", SDK_LANGUAGE),
+      new BasicHeader("Grpc-Metadata-language-version", LANGUAGE_VERSION),
+      new BasicHeader("Grpc-Metadata-sdk-version", SDK_VERSION)
+    };
   }
 
   /**
@@ -127,6 +230,355 @@ public class ArizeClient implements ArizeAPI {
     return spaceKey;
   }
 
+  /**
+   * Get the cache of prebuilt feature and tag values. The cache is shared by every client in the
+   * JVM.
+   *
+   * @return the value cache, for monitoring its hit rate
+   */
+  public static ValueCache getValueCache() {
+    return RecordUtil.VALUE_CACHE;
+  }
+
+  /**
+   * Set the policy deciding which production records are sent. Records that are not sampled are
+   * dropped before any conversion and reported as {@link Response.ResponseCode#SAMPLED_OUT}; a bulk
+   * call whose rows are all dropped reports the reason for its last row.
+   * Training and validation records are never sampled.
+   *
+   * @param sampler the sampling policy, or null to send every record
+   */
+  public void setSampler(final Sampler sampler) {
+    this.sampler = sampler;
+  }
+
+  /**
+   * Get the sampling policy.
+   *
+   * @return the sampler, or null if every record is sent
+   */
+  public Sampler getSampler() {
+    return sampler;
+  }
+
+  /**
+   * Set the filter that drops records repeating a recently sent prediction id. Duplicates are
+   * dropped before any conversion and reported as {@link Response.ResponseCode#DUPLICATE}. A
+   * record is remembered only once it is converted and handed off, and forgotten again if its
+   * {@code log} or {@code bulkLog} request fails, so retries of rejected or failed records are
+   * sent. Training and validation records are never deduplicated.
+   *
+   * @param deduplicator the filter, or null to send duplicates
+   */
+  public void setDeduplicator(final Deduplicator deduplicator) {
+    this.deduplicator = deduplicator;
+  }
+
+  /**
+   * Get the duplicate filter.
+   *
+   * @return the deduplicator, or null if duplicates are sent
+   */
+  public Deduplicator getDeduplicator() {
+    return deduplicator;
+  }
+
+  /**
+   * Set how {@link #bulkLog} treats rows that cannot be converted. By default the whole batch is
+   * rejected with an {@link IllegalArgumentException} listing every bad row. When enabled, bad
+   * rows are left out and the rest of the batch is sent; a batch with no valid rows is still
+   * rejected.
+   *
+   * @param dropInvalidRows true to drop bad rows and send the rest
+   */
+  public void setDropInvalidRows(final boolean dropInvalidRows) {
+    this.dropInvalidRows = dropInvalidRows;
+  }
+
+  /** @return true if bulk rows failing validation are dropped instead of failing the batch */
+  public boolean isDropInvalidRows() {
+    return dropInvalidRows;
+  }
+
+  /**
+   * Set the bound on requests in flight and what logging calls over it do. See {@link
+   * InFlightLimit}. Requests already in flight count towards a new limit.
+   *
+   * @param inFlightLimit the bound, or null to issue requests without one
+   */
+  public void setInFlightLimit(final InFlightLimit inFlightLimit) {
+    this.inFlightLimit = inFlightLimit;
+    synchronized (inFlight) {
+      // blocked callers re-check against the new limit
+      inFlight.notifyAll();
+    }
+  }
+
+  /**
+   * Get the bound on requests in flight.
+   *
+   * @return the limit, or null if requests are issued without one
+   */
+  public InFlightLimit getInFlightLimit() {
+    return inFlightLimit;
+  }
+
+  /**
+   * Set the circuit breaker guarding the Arize endpoint. While it is open, production records go
+   * to its {@link CircuitBreaker.Fallback} before any conversion and are reported as {@link
+   * Response.ResponseCode#CIRCUIT_OPEN}, ahead of the sampler and deduplicator. Requests of every
+   * kind are refused with the same code; a refused request with a callback, such as a batch of a
+   * {@link RecordBatcher}, is reported to it as failed.
+   *
+   * @param circuitBreaker the breaker, or null to always send
+   */
+  public void setCircuitBreaker(final CircuitBreaker circuitBreaker) {
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  /**
+   * Get the circuit breaker.
+   *
+   * @return the breaker, or null if requests are always sent
+   */
+  public CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /**
+   * Set the hedging of single-record {@code log} requests, which sends a duplicate of a request
+   * that is slower than usual and takes the first success. See {@link HedgePolicy}. Bulk, file
+   * and training or validation requests are never hedged.
+   *
+   * @param hedgePolicy the policy, or null to send each record once
+   */
+  public synchronized void setHedgePolicy(final HedgePolicy hedgePolicy) {
+    if (hedgePolicy != null) {
+      startScheduler();
+    }
+    this.hedgePolicy = hedgePolicy;
+  }
+
+  /**
+   * Get the hedging policy.
+   *
+   * @return the policy, or null if each record is sent once
+   */
+  public HedgePolicy getHedgePolicy() {
+    return hedgePolicy;
+  }
+
+  /**
+   * Set the deadline of every request. A request still outstanding this long after it was issued,
+   * whether waiting for a connection, connecting or waiting for the response, is cancelled: its
+   * {@link Response} throws a {@link java.util.concurrent.CancellationException}, the callbacks of
+   * batchers and sessions count its records as failed and the circuit breaker counts it as a
+   * failure. Each attempt of a hedged request has its own deadline.
+   *
+   * @param requestTimeout the deadline, or null for none beyond the HTTP client's defaults
+   */
+  public synchronized void setRequestTimeout(final Duration requestTimeout) {
+    if (requestTimeout == null) {
+      this.requestTimeoutNanos = 0;
+    } else {
+      if (requestTimeout.isNegative() || requestTimeout.isZero()) {
+        throw new IllegalArgumentException("requestTimeout must be positive");
+      }
+      startScheduler();
+      this.requestTimeoutNanos = requestTimeout.toNanos();
+    }
+    this.requestTimeout = requestTimeout;
+  }
+
+  /** Must hold the lock. */
+  private void startScheduler() {
+    if (scheduler == null) {
+      final ScheduledThreadPoolExecutor executor =
+          new ScheduledThreadPoolExecutor(
+              1,
+              task -> {
+                final Thread thread = new Thread(task, "arize-scheduler");
+                thread.setDaemon(true);
+                return thread;
+              });
+      executor.setRemoveOnCancelPolicy(true);
+      scheduler = executor;
+    }
+  }
+
+  /**
+   * Get the deadline of every request.
+   *
+   * @return the deadline, or null if requests have none
+   */
+  public Duration getRequestTimeout() {
+    return requestTimeout;
+  }
+
+  /**
+   * Checks a bulk batch without converting or sending it. Reports every row {@link #bulkLog}
+   * would reject for an unsupported label, feature or tag type, mismatched prediction and actual
+   * labels, or an incomplete ranking label. List lengths must already match.
+   *
+   * @return every violation found, with its row index
+   * @throws IllegalArgumentException if predictionIds is null or the list lengths differ
+   */
+  public <T> BulkValidationReport validateBulk(
+      final List<String> predictionIds,
+      final List<Map<String, ?>> features,
+      final List<Map<String, Embedding>> embeddingFeatures,
+      final List<Map<String, ?>> tags,
+      final List<T> predictionLabels,
+      final List<T> actualLabels,
+      final List<Map<String, Double>> shapValues) {
+    if (predictionIds == null) {
+      throw new IllegalArgumentException("predictionIds cannot be null");
+    }
+    final int rows = predictionIds.size();
+    if ((features != null && features.size() != rows)
+        || (embeddingFeatures != null && embeddingFeatures.size() != rows)
+        || (tags != null && tags.size() != rows)
+        || (predictionLabels != null && predictionLabels.size() != rows)
+        || (actualLabels != null && actualLabels.size() != rows)
+        || (shapValues != null && shapValues.size() != rows)) {
+      throw new IllegalArgumentException("every list must be the same length as predictionIds");
+    }
+    return BulkValidator.validate(
+        predictionIds, features, embeddingFeatures, tags, predictionLabels, actualLabels, shapValues);
+  }
+
+  /** @return the feature and tag name dictionary of a model */
+  FeatureDictionary featureDictionary(final String modelId) {
+    final FeatureDictionary dictionary = featureDictionaries.get(modelId);
+    if (dictionary != null) {
+      return dictionary;
+    }
+    return featureDictionaries.computeIfAbsent(modelId, id -> new FeatureDictionary());
+  }
+
+  /**
+   * Runs the circuit breaker, sampler and deduplicator for a production record before it is
+   * converted. Nothing is remembered as sent yet; once the record is converted, {@link #markSent}
+   * does that.
+   *
+   * @param parts the record parts, see {@link Deduplicator#parts}
+   * @return null if the record should be sent, otherwise the response reporting why it was dropped
+   * @throws IllegalArgumentException if the model id is missing, checked before any stage runs
+   */
+  Response screen(final String modelId, final String predictionId, final int parts) {
+    if (modelId == null || modelId.isEmpty()) {
+      throw new IllegalArgumentException("modelId cannot be null or empty");
+    }
+    if (predictionId == null) {
+      // left for buildRecord to reject
+      return null;
+    }
+    final CircuitBreaker currentBreaker = this.circuitBreaker;
+    if (currentBreaker != null && currentBreaker.rejectRecord(modelId, predictionId)) {
+      return Response.CIRCUIT_OPEN;
+    }
+    final Sampler currentSampler = this.sampler;
+    if (currentSampler != null && !currentSampler.sample(modelId, predictionId)) {
+      return Response.SAMPLED_OUT;
+    }
+    final Deduplicator currentDeduplicator = this.deduplicator;
+    if (currentDeduplicator != null
+        && currentDeduplicator.isDuplicate(modelId, predictionId, parts)) {
+      return Response.DUPLICATE;
+    }
+    return null;
+  }
+
+  /**
+   * Remembers a converted production record as sent with the deduplicator, right before it is
+   * handed off.
+   *
+   * @return the parts to pass to {@link #forgetSent} should the record not be sent after all, or
+   *     -1 if another call sent the same parts since it was screened and it must be dropped
+   */
+  int markSent(final String modelId, final String predictionId, final int parts) {
+    final Deduplicator currentDeduplicator = this.deduplicator;
+    if (currentDeduplicator == null || parts == 0) {
+      return 0;
+    }
+    final int marked = currentDeduplicator.markSent(modelId, predictionId, parts);
+    return marked == 0 ? -1 : marked;
+  }
+
+  /** Undoes {@link #markSent} for a record that could not be sent, so a retry is not dropped. */
+  void forgetSent(final String modelId, final String predictionId, final int marked) {
+    final Deduplicator currentDeduplicator = this.deduplicator;
+    if (currentDeduplicator != null && marked > 0) {
+      currentDeduplicator.forget(modelId, predictionId, marked);
+    }
+  }
+
+  /**
+   * Sends a converted production record that passed {@link #screen}, remembering it with the
+   * deduplicator until its request fails.
+   */
+  private Response sendScreened(final Record record, final int parts) throws IOException {
+    final String modelId = record.getModelId();
+    final String predictionId = record.getPredictionId();
+    final int marked = markSent(modelId, predictionId, parts);
+    if (marked < 0) {
+      return Response.DUPLICATE;
+    }
+    final Response response;
+    if (marked == 0) {
+      response = send(record);
+    } else {
+      final ForgetOnFailure marks = new ForgetOnFailure(this, modelId);
+      marks.add(predictionId, marked);
+      try {
+        response = send(record, marks);
+      } catch (IOException | RuntimeException e) {
+        marks.forget();
+        throw e;
+      }
+    }
+    if (response == Response.CIRCUIT_OPEN) {
+      divert(modelId, Collections.singletonList(record));
+    }
+    return response;
+  }
+
+  /** Hands converted production records whose request the circuit breaker refused to it. */
+  void divert(final String modelId, final List<Record> records) {
+    final CircuitBreaker currentBreaker = this.circuitBreaker;
+    if (currentBreaker != null) {
+      for (Record record : records) {
+        currentBreaker.reject(modelId, record.getPredictionId());
+      }
+    }
+  }
+
+  /**
+   * Remembers the screened records of a bulk request as sent, removing those another call sent
+   * since they were screened.
+   *
+   * @return the marks to undo should the request fail, or null if nothing was remembered
+   */
+  private ForgetOnFailure markSent(
+      final String modelId, final BulkRecord.Builder builder, final int parts) {
+    if (this.deduplicator == null || parts == 0) {
+      return null;
+    }
+    final ForgetOnFailure marks = new ForgetOnFailure(this, modelId);
+    int index = 0;
+    while (index < builder.getRecordsCount()) {
+      final String predictionId = builder.getRecords(index).getPredictionId();
+      final int marked = markSent(modelId, predictionId, parts);
+      if (marked < 0) {
+        builder.removeRecords(index);
+        continue;
+      }
+      marks.add(predictionId, marked);
+      index++;
+    }
+    return marks;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -145,6 +597,153 @@ public class ArizeClient implements ArizeAPI {
       Map<String, Double> shapValues,
       long predictionTimestamp)
       throws IOException, IllegalArgumentException {
+    final int parts = Deduplicator.parts(predictionLabel, actualLabel, shapValues);
+    final Response dropped = screen(modelId, predictionId, parts);
+    if (dropped != null) {
+      return dropped;
+    }
+    Record.Builder builder = Record.newBuilder();
+    buildRecord(
+        builder,
+        modelId,
+        modelVersion,
+        predictionId,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionLabel,
+        actualLabel,
+        shapValues,
+        predictionTimestamp);
+    return sendScreened(builder.build(), parts);
+  }
+
+  /**
+   * Logs a prediction and/or actual described by a reusable event. Produces the same record as
+   * {@link #log(String, String, String, Map, Map, Map, Object, Object, Map, long)} without building
+   * any maps; the event may be cleared and reused as soon as this returns.
+   *
+   * @return {@link Response}
+   * @throws IOException in case of a network error
+   * @throws IllegalArgumentException if the model or prediction id is missing or the labels differ
+   *     in kind
+   */
+  public Response log(final PredictionEvent event) throws IOException, IllegalArgumentException {
+    if (event == null) {
+      throw new IllegalArgumentException("event cannot be null");
+    }
+    final Response dropped = screen(event.getModelId(), event.getPredictionId(), event.parts());
+    if (dropped != null) {
+      return dropped;
+    }
+    final Record.Builder builder = Record.newBuilder();
+    buildRecord(builder, event);
+    return sendScreened(builder.build(), event.parts());
+  }
+
+  /**
+   * Logs a record of a regression model. Same as {@link #log} with numeric labels passed as
+   * primitives, so they are neither boxed nor converted through their string form.
+   *
+   * @param predictionLabel the predicted value, or {@link Double#NaN} if not sending a prediction
+   * @param actualLabel the actual value, or {@link Double#NaN} if not sending an actual
+   * @return {@link Response}
+   * @throws IOException in case of a network error
+   * @throws IllegalArgumentException in case data type for features or tags are not supported.
+   */
+  public Response logNumeric(
+      final String modelId,
+      final String modelVersion,
+      final String predictionId,
+      final Map<String, ?> features,
+      final Map<String, Embedding> embeddingFeatures,
+      final Map<String, ?> tags,
+      final double predictionLabel,
+      final double actualLabel,
+      final Map<String, Double> shapValues,
+      final long predictionTimestamp)
+      throws IOException, IllegalArgumentException {
+    final int parts = Deduplicator.numericParts(predictionLabel, actualLabel, shapValues);
+    final Response dropped = screen(modelId, predictionId, parts);
+    if (dropped != null) {
+      return dropped;
+    }
+    final Record.Builder builder = Record.newBuilder();
+    buildNumericRecord(
+        builder,
+        modelId,
+        modelVersion,
+        predictionId,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionLabel,
+        actualLabel,
+        shapValues,
+        predictionTimestamp);
+    return sendScreened(builder.build(), parts);
+  }
+
+  /**
+   * Sends a prebuilt record to the single record endpoint.
+   *
+   * @param record the record to send
+   * @return {@link Response}
+   * @throws IOException if the record cannot be serialized
+   */
+  Response send(final Record record) throws IOException {
+    return send(record, null);
+  }
+
+  /**
+   * Sends a prebuilt record to the single record endpoint.
+   *
+   * @param record the record to send
+   * @param callback optional callback notified when the request, or the winning hedge, completes
+   * @return {@link Response}
+   * @throws IOException if the record cannot be serialized
+   */
+  Response send(final Record record, final FutureCallback<HttpResponse> callback)
+      throws IOException {
+    return send(record, callback, true);
+  }
+
+  /**
+   * Sends a prebuilt record to the single record endpoint.
+   *
+   * @param checked false for the records of a {@link Drainable}, which keep being sent, unhedged,
+   *     while {@link #shutdown} drains it
+   * @return {@link Response}
+   * @throws IOException if the record cannot be serialized
+   */
+  Response send(
+      final Record record, final FutureCallback<HttpResponse> callback, final boolean checked)
+      throws IOException {
+    final String body = RecordUtil.toJSON(record);
+    final HedgePolicy hedging = this.hedgePolicy;
+    if (hedging == null || !checked) {
+      return execute(logTemplate.newRequest(body), callback, checked);
+    }
+    return new HedgedRequest(body, hedging, callback).start();
+  }
+
+  /**
+   * Validates the arguments of a single-record {@link #log} call and populates {@code builder}
+   * with the resulting record. Shared by the direct and batched logging paths.
+   */
+  <T> void buildRecord(
+      Record.Builder builder,
+      String modelId,
+      String modelVersion,
+      String predictionId,
+      Map<String, ?> features,
+      Map<String, Embedding> embeddingFeatures,
+      Map<String, ?> tags,
+      T predictionLabel,
+      T actualLabel,
+      Map<String, Double> shapValues,
+      long predictionTimestamp)
+      throws IllegalArgumentException {
     if (modelId == null || modelId.isEmpty()) {
       throw new IllegalArgumentException("modelId cannot be null or empty");
     }
@@ -152,48 +751,199 @@ public class ArizeClient implements ArizeAPI {
       throw new IllegalArgumentException("predictionId cannot be null or empty");
     }
     RecordUtil.validatePredictionActualMatches(predictionLabel, actualLabel);
-    Record.Builder builder = Record.newBuilder();
+    Public.Prediction.Builder predictionBuilder = null;
+    if (predictionLabel != null) {
+      predictionBuilder = Public.Prediction.newBuilder();
+      RecordUtil.putPredictionLabel(predictionBuilder, null, predictionLabel);
+    }
+    Public.Actual.Builder actualBuilder = null;
+    if (actualLabel != null) {
+      actualBuilder = Public.Actual.newBuilder();
+      RecordUtil.putActualLabel(actualBuilder, null, actualLabel);
+    }
+    populateRecord(
+        builder,
+        modelId,
+        modelVersion,
+        predictionId,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionBuilder,
+        actualBuilder,
+        shapValues,
+        predictionTimestamp);
+  }
+
+  /**
+   * Validates a {@link PredictionEvent} and populates {@code builder} with the resulting record.
+   * Shared by the direct and batched logging paths.
+   */
+  void buildRecord(final Record.Builder builder, final PredictionEvent event)
+      throws IllegalArgumentException {
+    buildRecord(builder, event.getModelId(), event.getModelVersion(), event);
+  }
+
+  /**
+   * Same as {@link #buildRecord(Record.Builder, PredictionEvent)} with the model id and version
+   * supplied by the caller, such as a {@link ModelSession}, instead of read from the event.
+   */
+  void buildRecord(
+      final Record.Builder builder,
+      final String modelId,
+      final String modelVersion,
+      final PredictionEvent event)
+      throws IllegalArgumentException {
+    if (modelId == null || modelId.isEmpty()) {
+      throw new IllegalArgumentException("modelId cannot be null or empty");
+    }
+    final String predictionId = event.getPredictionId();
+    if (predictionId == null || predictionId.isEmpty()) {
+      throw new IllegalArgumentException("predictionId cannot be null or empty");
+    }
+    event.validateLabels();
     builder.setModelId(modelId);
     builder.setPredictionId(predictionId);
     builder.setSpaceKey(this.spaceKey);
 
-    if (predictionLabel != null) {
-      Public.Prediction.Builder predictionBuilder = Public.Prediction.newBuilder();
-      if (predictionLabel.getClass() == Ranking.class) {
-        predictionBuilder.setPredictionLabel(RecordUtil.convertPredictionLabel(predictionLabel));
-      } else{
-        predictionBuilder.setLabel(RecordUtil.convertLabel(predictionLabel));
+    final FeatureDictionary dictionary = featureDictionary(modelId);
+    final Timestamp timestamp =
+        event.getTimestamp() != 0 ? Timestamps.fromMillis(event.getTimestamp()) : null;
+    Public.Prediction.Builder predictionBuilder = null;
+    if (event.hasPrediction()) {
+      predictionBuilder = Public.Prediction.newBuilder();
+      event.encodePredictionLabel(predictionBuilder);
+      event.encodeLlm(predictionBuilder);
+      if (event.getLlmFields() != null) {
+        builder.setIsGenerativeLlmRecord(LlmFields.GENERATIVE_LLM_RECORD);
       }
       if (modelVersion != null) {
         predictionBuilder.setModelVersion(modelVersion);
       }
-      if (features != null) {
-        predictionBuilder.putAllFeatures(RecordUtil.convertFeatures(features));
+      event.encodeFeatures(predictionBuilder, dictionary);
+      event.encodeTags(predictionBuilder, dictionary);
+      if (timestamp != null) {
+        predictionBuilder.setTimestamp(timestamp);
       }
-      if (embeddingFeatures != null) {
-        predictionBuilder.putAllFeatures(RecordUtil.convertEmbeddingFeatures(embeddingFeatures));
+      builder.setPrediction(predictionBuilder);
+    }
+    if (event.hasActualLabel()) {
+      final Public.Actual.Builder actualBuilder = Public.Actual.newBuilder();
+      event.encodeActualLabel(actualBuilder);
+      if (timestamp != null) {
+        actualBuilder.setTimestamp(timestamp);
       }
-      if (tags != null) {
-        predictionBuilder.putAllTags(RecordUtil.convertTags(tags));
+      if (predictionBuilder != null) {
+        actualBuilder.putAllTags(predictionBuilder.getTagsMap());
+      } else {
+        event.encodeTags(actualBuilder, dictionary);
       }
-      if (predictionTimestamp != 0) {
-        predictionBuilder.setTimestamp(Timestamps.fromMillis(predictionTimestamp));
+      builder.setActual(actualBuilder);
+    }
+    if (event.hasShapValues()) {
+      final Public.FeatureImportances.Builder featureImportancesBuilder =
+          Public.FeatureImportances.newBuilder();
+      if (modelVersion != null) {
+        featureImportancesBuilder.setModelVersion(modelVersion);
       }
-      builder.setPrediction(predictionBuilder);
+      if (timestamp != null) {
+        featureImportancesBuilder.setTimestamp(timestamp);
+      }
+      event.encodeShapValues(featureImportancesBuilder);
+      builder.setFeatureImportances(featureImportancesBuilder);
     }
-    if (actualLabel != null) {
-      Public.Actual.Builder actualBuilder = Public.Actual.newBuilder();
-      if (actualLabel.getClass() == Ranking.class) {
-        actualBuilder.setActualLabel(RecordUtil.convertActualLabel(actualLabel));
-      } else{
-        actualBuilder.setLabel(RecordUtil.convertLabel(actualLabel));
+  }
+
+  /**
+   * Numeric counterpart of {@link #buildRecord}: validates the arguments of a {@link #logNumeric}
+   * call and populates {@code builder}. A NaN label is treated as absent.
+   */
+  void buildNumericRecord(
+      final Record.Builder builder,
+      final String modelId,
+      final String modelVersion,
+      final String predictionId,
+      final Map<String, ?> features,
+      final Map<String, Embedding> embeddingFeatures,
+      final Map<String, ?> tags,
+      final double predictionLabel,
+      final double actualLabel,
+      final Map<String, Double> shapValues,
+      final long predictionTimestamp)
+      throws IllegalArgumentException {
+    if (modelId == null || modelId.isEmpty()) {
+      throw new IllegalArgumentException("modelId cannot be null or empty");
+    }
+    if (predictionId == null || predictionId.length() == 0) {
+      throw new IllegalArgumentException("predictionId cannot be null or empty");
+    }
+    Public.Prediction.Builder predictionBuilder = null;
+    if (!Double.isNaN(predictionLabel)) {
+      predictionBuilder =
+          Public.Prediction.newBuilder().setLabel(RecordUtil.numericLabel(predictionLabel));
+    }
+    Public.Actual.Builder actualBuilder = null;
+    if (!Double.isNaN(actualLabel)) {
+      actualBuilder = Public.Actual.newBuilder().setLabel(RecordUtil.numericLabel(actualLabel));
+    }
+    populateRecord(
+        builder,
+        modelId,
+        modelVersion,
+        predictionId,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionBuilder,
+        actualBuilder,
+        shapValues,
+        predictionTimestamp);
+  }
+
+  /**
+   * Fills in everything but the labels, which the caller has already set on the prediction and
+   * actual builders. A null builder leaves that part out of the record.
+   */
+  private void populateRecord(
+      final Record.Builder builder,
+      final String modelId,
+      final String modelVersion,
+      final String predictionId,
+      final Map<String, ?> features,
+      final Map<String, Embedding> embeddingFeatures,
+      final Map<String, ?> tags,
+      final Public.Prediction.Builder predictionBuilder,
+      final Public.Actual.Builder actualBuilder,
+      final Map<String, Double> shapValues,
+      final long predictionTimestamp) {
+    builder.setModelId(modelId);
+    builder.setPredictionId(predictionId);
+    builder.setSpaceKey(this.spaceKey);
+
+    final FeatureDictionary dictionary = featureDictionary(modelId);
+    final Timestamp timestamp =
+        predictionTimestamp != 0 ? Timestamps.fromMillis(predictionTimestamp) : null;
+    if (predictionBuilder != null) {
+      if (modelVersion != null) {
+        predictionBuilder.setModelVersion(modelVersion);
       }
-      if (predictionTimestamp != 0) {
-        actualBuilder.setTimestamp(Timestamps.fromMillis(predictionTimestamp));
+      RecordUtil.putFeatures(predictionBuilder, features, dictionary);
+      RecordUtil.putFeatures(predictionBuilder, embeddingFeatures, dictionary);
+      RecordUtil.putTags(predictionBuilder, tags, dictionary);
+      if (timestamp != null) {
+        predictionBuilder.setTimestamp(timestamp);
       }
-      // Added to support latent tags on actuals.
-      if (tags != null) {
-        actualBuilder.putAllTags(RecordUtil.convertTags(tags));
+      builder.setPrediction(predictionBuilder);
+    }
+    if (actualBuilder != null) {
+      if (timestamp != null) {
+        actualBuilder.setTimestamp(timestamp);
+      }
+      // Added to support latent tags on actuals. Converted values are shared with the prediction.
+      if (predictionBuilder != null) {
+        actualBuilder.putAllTags(predictionBuilder.getTagsMap());
+      } else {
+        RecordUtil.putTags(actualBuilder, tags, dictionary);
       }
       builder.setActual(actualBuilder);
     }
@@ -203,22 +953,49 @@ public class ArizeClient implements ArizeAPI {
       if (modelVersion != null) {
         featureImportancesBuilder.setModelVersion(modelVersion);
       }
-      if (predictionTimestamp != 0) {
-        featureImportancesBuilder.setTimestamp(Timestamps.fromMillis(predictionTimestamp));
+      if (timestamp != null) {
+        featureImportancesBuilder.setTimestamp(timestamp);
       }
       featureImportancesBuilder.putAllFeatureImportances(shapValues);
       builder.setFeatureImportances(featureImportancesBuilder);
     }
-    HttpPost req =
-        buildRequest(RecordUtil.toJSON(builder.build()), this.host, this.apiKey, this.spaceKey);
-    return new Response(client.execute(req, null));
+  }
+
+  /**
+   * Sends a prebuilt bulk record of production records to the bulk endpoint. If the circuit
+   * breaker refuses the request, its records go to the breaker's fallback.
+   *
+   * @param bulkRecord the records to send
+   * @param callback optional callback notified when the request completes
+   * @return {@link Response}
+   * @throws IOException if the record cannot be serialized
+   */
+  Response sendBulk(final BulkRecord bulkRecord, final FutureCallback<HttpResponse> callback)
+      throws IOException {
+    final Response response = sendBulk(RecordUtil.toJSON(bulkRecord), callback);
+    if (response == Response.CIRCUIT_OPEN) {
+      divert(bulkRecord.getModelId(), bulkRecord.getRecordsList());
+    }
+    return response;
+  }
+
+  /**
+   * Sends an already serialized bulk record to the bulk endpoint. Used by the {@link Drainable}
+   * components, so it keeps sending while {@link #shutdown} drains them.
+   *
+   * @param body JSON form of a {@link BulkRecord}
+   * @param callback optional callback notified when the request completes
+   * @return {@link Response}
+   */
+  Response sendBulk(final String body, final FutureCallback<HttpResponse> callback) {
+    return execute(bulkTemplate.newRequest(body), callback, false);
   }
 
   /**
    * {@inheritDoc}
    *
    * <p>bulkLog constructs a bulk record and executes the API call asynchronously returning a future
-   * response.
+   * response. Every row is checked before any is converted; see {@link #setDropInvalidRows}.
    */
   @Override
   public <T> Response bulkLog(
@@ -233,85 +1010,414 @@ public class ArizeClient implements ArizeAPI {
       List<Map<String, Double>> shapValues,
       List<Long> predictionTimestamps)
       throws IOException, IllegalArgumentException {
+    validateBulkLengths(
+        modelId,
+        predictionIds,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionLabels,
+        actualLabels,
+        shapValues,
+        predictionTimestamps);
+    long[] timestamps = null;
+    if (predictionTimestamps != null) {
+      timestamps = new long[predictionTimestamps.size()];
+      for (int i = 0; i < timestamps.length; i++) {
+        timestamps[i] = predictionTimestamps.get(i);
+      }
+    }
+    return bulkLogValidated(
+        modelId,
+        modelVersion,
+        predictionIds,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionLabels,
+        actualLabels,
+        shapValues,
+        timestamps);
+  }
+
+  /**
+   * Same as {@link #bulkLog(String, String, List, List, List, List, List, List, List, List)} with
+   * prediction timestamps as a primitive array, so large batches need not box one {@link Long}
+   * per row.
+   *
+   * @param predictionTimestamps unix epoch time in milliseconds per row, or null to use the time of
+   *     receipt
+   */
+  public <T> Response bulkLogWithTimestamps(
+      final String modelId,
+      final String modelVersion,
+      final List<String> predictionIds,
+      final List<Map<String, ?>> features,
+      final List<Map<String, Embedding>> embeddingFeatures,
+      final List<Map<String, ?>> tags,
+      final List<T> predictionLabels,
+      final List<T> actualLabels,
+      final List<Map<String, Double>> shapValues,
+      final long[] predictionTimestamps)
+      throws IOException, IllegalArgumentException {
+    validateBulkLengths(
+        modelId,
+        predictionIds,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionLabels,
+        actualLabels,
+        shapValues,
+        predictionTimestamps);
+    return bulkLogValidated(
+        modelId,
+        modelVersion,
+        predictionIds,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionLabels,
+        actualLabels,
+        shapValues,
+        predictionTimestamps);
+  }
+
+  /** Converts and sends the rows of a bulk call whose column lengths have been checked. */
+  private <T> Response bulkLogValidated(
+      final String modelId,
+      final String modelVersion,
+      final List<String> predictionIds,
+      final List<Map<String, ?>> features,
+      final List<Map<String, Embedding>> embeddingFeatures,
+      final List<Map<String, ?>> tags,
+      final List<T> predictionLabels,
+      final List<T> actualLabels,
+      final List<Map<String, Double>> shapValues,
+      final long[] predictionTimestamps)
+      throws IOException {
+    final LabelColumn predictions = LabelColumn.of(predictionLabels);
+    final LabelColumn actuals = LabelColumn.of(actualLabels);
+    RecordUtil.validateBulkLabelKinds(
+        predictions != null ? predictions.kind() : null, actuals != null ? actuals.kind() : null);
+    final BulkValidationReport report =
+        BulkValidator.validate(
+            predictionIds,
+            features,
+            embeddingFeatures,
+            tags,
+            predictionLabels,
+            actualLabels,
+            shapValues);
+    return bulkLogColumns(
+        modelId,
+        modelVersion,
+        predictionIds,
+        features,
+        embeddingFeatures,
+        tags,
+        predictions,
+        actuals,
+        shapValues,
+        predictionTimestamps,
+        null,
+        report);
+  }
+
+  /**
+   * Bulk logs the records of a regression model. Same as {@link #bulkLogWithTimestamps} with
+   * numeric labels passed as primitive arrays, so they are neither boxed nor converted through
+   * their string form.
+   *
+   * @param predictionLabels predicted values, or null if not sending predictions
+   * @param actualLabels actual values, or null if not sending actuals
+   * @param predictionTimestamps unix epoch time in milliseconds per row, or null to use the time of
+   *     receipt
+   */
+  public Response bulkLogNumeric(
+      final String modelId,
+      final String modelVersion,
+      final List<String> predictionIds,
+      final List<Map<String, ?>> features,
+      final List<Map<String, Embedding>> embeddingFeatures,
+      final List<Map<String, ?>> tags,
+      final double[] predictionLabels,
+      final double[] actualLabels,
+      final List<Map<String, Double>> shapValues,
+      final long[] predictionTimestamps)
+      throws IOException, IllegalArgumentException {
+    validateBulkLengths(
+        modelId,
+        predictionIds,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionLabels,
+        actualLabels,
+        shapValues,
+        predictionTimestamps);
+    final BulkValidationReport report =
+        BulkValidator.validate(
+            predictionIds, features, embeddingFeatures, tags, null, null, shapValues);
+    return bulkLogColumns(
+        modelId,
+        modelVersion,
+        predictionIds,
+        features,
+        embeddingFeatures,
+        tags,
+        LabelColumn.of(predictionLabels),
+        LabelColumn.of(actualLabels),
+        shapValues,
+        predictionTimestamps,
+        null,
+        report);
+  }
+
+  /**
+   * Bulk logs training records through the bulk endpoint, with the training environment set on
+   * every record. Unlike {@link #logTrainingRecords}, rows are keyed by prediction id and go
+   * through the same validation and bulk request as production records. Training records are never
+   * sampled or deduplicated.
+   *
+   * @param predictionIds unique identifier per row
+   * @param predictionLabels prediction label per row
+   * @param actualLabels actual label per row, of the same type as the prediction labels
+   */
+  public <T> Response bulkLogTraining(
+      final String modelId,
+      final String modelVersion,
+      final List<String> predictionIds,
+      final List<Map<String, ?>> features,
+      final List<Map<String, Embedding>> embeddingFeatures,
+      final List<Map<String, ?>> tags,
+      final List<T> predictionLabels,
+      final List<T> actualLabels)
+      throws IOException, IllegalArgumentException {
+    return bulkLogPreProduction(
+        modelId,
+        modelVersion,
+        ModelSession.Environment.TRAINING,
+        null,
+        predictionIds,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionLabels,
+        actualLabels);
+  }
+
+  /**
+   * Bulk logs validation records through the bulk endpoint, with the validation environment and
+   * batch id set on every record. Same as {@link #bulkLogTraining} otherwise.
+   *
+   * @param batchId id of the validation batch
+   */
+  public <T> Response bulkLogValidation(
+      final String modelId,
+      final String modelVersion,
+      final String batchId,
+      final List<String> predictionIds,
+      final List<Map<String, ?>> features,
+      final List<Map<String, Embedding>> embeddingFeatures,
+      final List<Map<String, ?>> tags,
+      final List<T> predictionLabels,
+      final List<T> actualLabels)
+      throws IOException, IllegalArgumentException {
+    if (batchId == null || batchId.isEmpty()) {
+      throw new IllegalArgumentException("batchId cannot be null or empty");
+    }
+    return bulkLogPreProduction(
+        modelId,
+        modelVersion,
+        ModelSession.Environment.VALIDATION,
+        batchId,
+        predictionIds,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionLabels,
+        actualLabels);
+  }
+
+  private <T> Response bulkLogPreProduction(
+      final String modelId,
+      final String modelVersion,
+      final ModelSession.Environment environment,
+      final String batchId,
+      final List<String> predictionIds,
+      final List<Map<String, ?>> features,
+      final List<Map<String, Embedding>> embeddingFeatures,
+      final List<Map<String, ?>> tags,
+      final List<T> predictionLabels,
+      final List<T> actualLabels)
+      throws IOException {
+    validateBulkLengths(
+        modelId, predictionIds, features, embeddingFeatures, tags, null, null, null, null);
+    if (predictionLabels == null || predictionIds.size() != predictionLabels.size()) {
+      throw new IllegalArgumentException(
+          "predictionLabels cannot be null and must be the same length as predictionIds");
+    }
+    if (actualLabels == null || predictionIds.size() != actualLabels.size()) {
+      throw new IllegalArgumentException(
+          "actualLabels cannot be null and must be the same length as predictionIds");
+    }
+    final LabelColumn predictions = LabelColumn.of(predictionLabels);
+    final LabelColumn actuals = LabelColumn.of(actualLabels);
+    RecordUtil.validateBulkLabelKinds(predictions.kind(), actuals.kind());
+    final BulkValidationReport report =
+        BulkValidator.validate(
+            predictionIds,
+            features,
+            embeddingFeatures,
+            tags,
+            predictionLabels,
+            actualLabels,
+            null);
+    return bulkLogColumns(
+        modelId,
+        modelVersion,
+        predictionIds,
+        features,
+        embeddingFeatures,
+        tags,
+        predictions,
+        actuals,
+        null,
+        null,
+        RecordUtil.environmentParams(environment, batchId),
+        report);
+  }
+
+  /**
+   * Checks the model and prediction ids of a bulk call, and that every column it was given has one
+   * entry per prediction id. Label and timestamp columns may be lists or primitive arrays; null
+   * columns are skipped.
+   */
+  private static void validateBulkLengths(
+      final String modelId,
+      final List<String> predictionIds,
+      final List<Map<String, ?>> features,
+      final List<Map<String, Embedding>> embeddingFeatures,
+      final List<Map<String, ?>> tags,
+      final Object predictionLabels,
+      final Object actualLabels,
+      final List<Map<String, Double>> shapValues,
+      final Object predictionTimestamps) {
     if (modelId == null || modelId.isEmpty()) {
       throw new IllegalArgumentException("modelId cannot be null or empty");
     }
     if (predictionIds == null || predictionIds.isEmpty()) {
       throw new IllegalArgumentException("predictionIds cannot be null or empty");
     }
-    if (predictionLabels != null && predictionIds.size() != predictionLabels.size()) {
-      throw new IllegalArgumentException("predictionIds.size() must equal predictionLabels.size()");
-    }
-    if (actualLabels != null && predictionIds.size() != actualLabels.size()) {
-      throw new IllegalArgumentException("predictionIds.size() must equal actualLabels.size()");
-    }
-    if (features != null && predictionIds.size() != features.size()) {
-      throw new IllegalArgumentException("predictionIds.size() must equal features.size()");
+    checkBulkLength(predictionIds, "predictionLabels", predictionLabels);
+    checkBulkLength(predictionIds, "actualLabels", actualLabels);
+    checkBulkLength(predictionIds, "features", features);
+    checkBulkLength(predictionIds, "embeddingFeatures", embeddingFeatures);
+    checkBulkLength(predictionIds, "tags", tags);
+    checkBulkLength(predictionIds, "shapValues", shapValues);
+    checkBulkLength(predictionIds, "predictionTimestamps", predictionTimestamps);
+  }
+
+  private static void checkBulkLength(
+      final List<String> predictionIds, final String name, final Object column) {
+    if (column == null) {
+      return;
     }
-    if (embeddingFeatures != null && predictionIds.size() != embeddingFeatures.size()) {
+    final boolean list = column instanceof List;
+    final int length = list ? ((List<?>) column).size() : Array.getLength(column);
+    if (length != predictionIds.size()) {
       throw new IllegalArgumentException(
-          "predictionIds.size() must equal embeddingFeatures.size()");
-    }
-    if (tags != null && predictionIds.size() != tags.size()) {
-      throw new IllegalArgumentException("predictionIds.size() must equal tags.size()");
-    }
-    if (shapValues != null && predictionIds.size() != shapValues.size()) {
-      throw new IllegalArgumentException("predictionIds.size() must equal shapValues.size()");
+          "predictionIds.size() must equal " + name + (list ? ".size()" : ".length"));
     }
-    if (predictionTimestamps != null && predictionIds.size() != predictionTimestamps.size()) {
-      throw new IllegalArgumentException(
-          "predictionIds.size() must equal predictionTimestamps.size()");
+  }
+
+  private Response bulkLogColumns(
+      final String modelId,
+      final String modelVersion,
+      final List<String> predictionIds,
+      final List<Map<String, ?>> features,
+      final List<Map<String, Embedding>> embeddingFeatures,
+      final List<Map<String, ?>> tags,
+      final LabelColumn predictionLabels,
+      final LabelColumn actualLabels,
+      final List<Map<String, Double>> shapValues,
+      final long[] predictionTimestamps,
+      final Record.EnvironmentParams environment,
+      final BulkValidationReport report)
+      throws IOException {
+    if (!report.isValid()
+        && (!dropInvalidRows || report.getInvalidRowCount() == report.getRowCount())) {
+      throw new IllegalArgumentException(report.toString());
     }
-    RecordUtil.validateBulkPredictionActualMatches(predictionLabels, actualLabels);
     BulkRecord.Builder builder = BulkRecord.newBuilder();
     builder.setModelId(modelId);
     builder.setSpaceKey(spaceKey);
     if (modelVersion != null) {
       builder.setModelVersion(modelVersion);
     }
+    final int rowParts =
+        (predictionLabels != null ? Deduplicator.PREDICTION : 0)
+            | (actualLabels != null ? Deduplicator.ACTUAL : 0)
+            | (shapValues != null ? Deduplicator.FEATURE_IMPORTANCES : 0);
+    final FeatureDictionary dictionary = featureDictionary(modelId);
+    final TimestampCache timestampCache =
+        predictionTimestamps != null ? new TimestampCache() : null;
+    // training and validation records are never sampled or deduplicated
+    final boolean screened = RecordUtil.isScreened(environment);
+    Response dropped = null;
+    // One record builder serves every row; addRecords copies it out before the next clear().
+    final Record.Builder recordBuilder = Record.newBuilder();
     for (int index = 0; index < predictionIds.size(); index++) {
-      Record.Builder recordBuilder = Record.newBuilder();
-      recordBuilder.setModelId(modelId);
+      if (!report.isRowValid(index)) {
+        continue;
+      }
       final String predictionId = predictionIds.get(index);
+      final Response screenedOut = screened ? screen(modelId, predictionId, rowParts) : null;
+      if (screenedOut != null) {
+        dropped = screenedOut;
+        continue;
+      }
+      recordBuilder.clear();
+      recordBuilder.setModelId(modelId);
       recordBuilder.setPredictionId(predictionId);
+      if (environment != null) {
+        recordBuilder.setEnvironmentParams(environment);
+      }
+      final Timestamp timestamp =
+          timestampCache != null ? timestampCache.fromMillis(predictionTimestamps[index]) : null;
+      Public.Prediction.Builder predictionBuilder = null;
       if (predictionLabels != null) {
-        Public.Prediction.Builder predictionBuilder = Public.Prediction.newBuilder();
-        if (predictionLabels.get(index) != null && predictionLabels.get(index).getClass() == Ranking.class) {
-          predictionBuilder.setPredictionLabel(RecordUtil.convertPredictionLabel(predictionLabels.get(index)));
-        }else{
-          predictionBuilder.setLabel(RecordUtil.convertLabel(predictionLabels.get(index)));
-        }
+        predictionBuilder = Public.Prediction.newBuilder();
+        predictionLabels.encodePrediction(predictionBuilder, index);
         if (modelVersion != null) {
           predictionBuilder.setModelVersion(modelVersion);
         }
         if (features != null) {
-          predictionBuilder.putAllFeatures(RecordUtil.convertFeatures(features.get(index)));
+          RecordUtil.putFeatures(predictionBuilder, features.get(index), dictionary);
         }
         if (embeddingFeatures != null) {
-          predictionBuilder.putAllFeatures(
-              RecordUtil.convertEmbeddingFeatures(embeddingFeatures.get(index)));
+          RecordUtil.putFeatures(predictionBuilder, embeddingFeatures.get(index), dictionary);
         }
         if (tags != null) {
-          predictionBuilder.putAllTags(RecordUtil.convertTags(tags.get(index)));
+          RecordUtil.putTags(predictionBuilder, tags.get(index), dictionary);
         }
-        if (predictionTimestamps != null) {
-          predictionBuilder.setTimestamp(Timestamps.fromMillis(predictionTimestamps.get(index)));
+        if (timestamp != null) {
+          predictionBuilder.setTimestamp(timestamp);
         }
         recordBuilder.setPrediction(predictionBuilder);
       }
       if (actualLabels != null) {
         Public.Actual.Builder actualBuilder = Public.Actual.newBuilder();
-        if (actualLabels.get(index) != null && actualLabels.get(index).getClass() == Ranking.class) {
-          actualBuilder.setActualLabel(RecordUtil.convertActualLabel(actualLabels.get(index)));
-        } else{
-          actualBuilder.setLabel(RecordUtil.convertLabel(actualLabels.get(index)));
+        actualLabels.encodeActual(actualBuilder, index);
+        if (timestamp != null) {
+          actualBuilder.setTimestamp(timestamp);
         }
-        if (predictionTimestamps != null) {
-          actualBuilder.setTimestamp(Timestamps.fromMillis(predictionTimestamps.get(index)));
-        }
-        // Added to support latent tags on actuals.
-        if (tags != null) {
-          actualBuilder.putAllTags(RecordUtil.convertTags(tags.get(index)));
+        // Added to support latent tags on actuals. Converted values are shared with the prediction.
+        if (predictionBuilder != null) {
+          actualBuilder.putAllTags(predictionBuilder.getTagsMap());
+        } else if (tags != null) {
+          RecordUtil.putTags(actualBuilder, tags.get(index), dictionary);
         }
         recordBuilder.setActual(actualBuilder);
       }
@@ -322,17 +1428,30 @@ public class ArizeClient implements ArizeAPI {
         if (modelVersion != null) {
           featureImportancesBuilder.setModelVersion(modelVersion);
         }
-        if (predictionTimestamps != null) {
-          featureImportancesBuilder.setTimestamp(
-              Timestamps.fromMillis(predictionTimestamps.get(index)));
+        if (timestamp != null) {
+          featureImportancesBuilder.setTimestamp(timestamp);
         }
         recordBuilder.setFeatureImportances(featureImportancesBuilder);
       }
       builder.addRecords(recordBuilder);
     }
-    final HttpPost request =
-        buildRequest(RecordUtil.toJSON(builder.build()), this.bulkHost, this.apiKey, this.spaceKey);
-    return new Response(client.execute(request, null));
+    final ForgetOnFailure marks = screened ? markSent(modelId, builder, rowParts) : null;
+    if (builder.getRecordsCount() == 0) {
+      return marks != null && dropped == null ? Response.DUPLICATE : dropped;
+    }
+    final Response response;
+    try {
+      response = execute(bulkTemplate.newRequest(RecordUtil.toJSON(builder.build())), marks, true);
+    } catch (IOException | RuntimeException e) {
+      if (marks != null) {
+        marks.forget();
+      }
+      throw e;
+    }
+    if (response == Response.CIRCUIT_OPEN && screened) {
+      divert(modelId, builder.getRecordsList());
+    }
+    return response;
   }
 
   /** {@inheritDoc} */
@@ -368,52 +1487,18 @@ public class ArizeClient implements ArizeAPI {
           "actualLabels cannot be null and must be the same length as predictionLabels");
     }
 
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < predictionLabels.size(); i++) {
-      Public.PreProductionRecord.Builder pprBuilder = Public.PreProductionRecord.newBuilder();
-      Public.PreProductionRecord.TrainingRecord.Builder trBuilder =
-          Public.PreProductionRecord.TrainingRecord.newBuilder();
-      Record.Builder recordBuilder = Record.newBuilder();
-      recordBuilder.setModelId(modelId);
-
-      Public.Prediction.Builder predictionBuilder = Public.Prediction.newBuilder();
-      if (predictionLabels.get(i) != null && predictionLabels.get(i).getClass() == Ranking.class) {
-        predictionBuilder.setPredictionLabel(RecordUtil.convertPredictionLabel(predictionLabels.get(i)));
-      } else{
-        predictionBuilder.setLabel(RecordUtil.convertLabel(predictionLabels.get(i)));
-      }
-      if (modelVersion != null) {
-        predictionBuilder.setModelVersion(modelVersion);
-      }
-      if (features != null) {
-        predictionBuilder.putAllFeatures(RecordUtil.convertFeatures(features.get(i)));
-      }
-      if (embeddingFeatures != null) {
-        predictionBuilder.putAllFeatures(
-            RecordUtil.convertEmbeddingFeatures(embeddingFeatures.get(i)));
-      }
-      if (tags != null) {
-        predictionBuilder.putAllTags(RecordUtil.convertTags(tags.get(i)));
-      }
-      recordBuilder.setPrediction(predictionBuilder);
-
-      Public.Actual.Builder actualBuilder = Public.Actual.newBuilder();
-      if (actualLabels.get(i) != null && actualLabels.get(i).getClass() == Ranking.class) {
-        actualBuilder.setActualLabel(RecordUtil.convertActualLabel(actualLabels.get(i)));
-      } else{
-        actualBuilder.setLabel(RecordUtil.convertLabel(actualLabels.get(i)));
-      }
-      recordBuilder.setActual(actualBuilder);
-
-      trBuilder.setRecord(recordBuilder);
-
-      pprBuilder.setTrainingRecord(trBuilder);
-      sb.append(RecordUtil.toJSON(pprBuilder.build()));
-      sb.append('\n');
-    }
     final HttpPost request =
-        buildRequest(sb.toString(), this.trainingValidationHost, this.apiKey, this.spaceKey);
-    return new Response(client.execute(request, null));
+        trainingValidationTemplate.newRequest(
+            encodePreProductionRecords(
+                modelId,
+                modelVersion,
+                null,
+                features,
+                embeddingFeatures,
+                tags,
+                predictionLabels,
+                actualLabels));
+    return execute(request, null, true);
   }
 
   /** {@inheritDoc} */
@@ -452,63 +1537,655 @@ public class ArizeClient implements ArizeAPI {
       throw new IllegalArgumentException(
           "actualLabels cannot be null and must be the same length as predictionLabels");
     }
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < predictionLabels.size(); i++) {
-      Public.PreProductionRecord.Builder pprBuilder = Public.PreProductionRecord.newBuilder();
-      Public.PreProductionRecord.ValidationRecord.Builder vrBuilder =
-          Public.PreProductionRecord.ValidationRecord.newBuilder();
-      vrBuilder.setBatchId(batchId);
+    final HttpPost request =
+        trainingValidationTemplate.newRequest(
+            encodePreProductionRecords(
+                modelId,
+                modelVersion,
+                batchId,
+                features,
+                embeddingFeatures,
+                tags,
+                predictionLabels,
+                actualLabels));
+    return execute(request, null, true);
+  }
 
-      Record.Builder recordBuilder = Record.newBuilder();
+  /**
+   * Encodes training or validation rows as newline delimited {@link
+   * Public.PreProductionRecord} JSON. The wrapper messages are never built: their constant JSON
+   * prefix is rendered once and each row's record is printed straight into the output, reusing a
+   * single {@link Record.Builder} across rows.
+   *
+   * <p>Prediction and actual builders are deliberately created per row. Once a protobuf builder
+   * has been built, clearing it copies its map fields before discarding them, so reusing builders
+   * that carry features or tags allocates more than starting afresh.
+   *
+   * @param batchId validation batch id, or null to encode training records
+   */
+  <T> String encodePreProductionRecords(
+      final String modelId,
+      final String modelVersion,
+      final String batchId,
+      final List<Map<String, ?>> features,
+      final List<Map<String, Embedding>> embeddingFeatures,
+      final List<Map<String, ?>> tags,
+      final List<T> predictionLabels,
+      final List<T> actualLabels)
+      throws IOException {
+    final String prefix;
+    if (batchId == null) {
+      prefix = "{\"trainingRecord\":{\"record\":";
+    } else {
+      final String validation =
+          RecordUtil.toJSON(
+              Public.PreProductionRecord.ValidationRecord.newBuilder().setBatchId(batchId));
+      prefix =
+          "{\"validationRecord\":"
+              + validation.substring(0, validation.length() - 1)
+              + ",\"record\":";
+    }
+    final FeatureDictionary dictionary = featureDictionary(modelId);
+    final LabelKind predictionKind = LabelKind.infer(predictionLabels);
+    final LabelKind actualKind = LabelKind.infer(actualLabels);
+    final Record.Builder recordBuilder = Record.newBuilder();
+    final StringBuilder sb = new StringBuilder(predictionLabels.size() * 256);
+    for (int i = 0; i < predictionLabels.size(); i++) {
+      recordBuilder.clear();
       recordBuilder.setModelId(modelId);
 
-      Public.Prediction.Builder predictionBuilder = Public.Prediction.newBuilder();
-      if (predictionLabels.get(i) != null && predictionLabels.get(i).getClass() == Ranking.class) {
-        predictionBuilder.setPredictionLabel(RecordUtil.convertPredictionLabel(predictionLabels.get(i)));
-      } else{
-        predictionBuilder.setLabel(RecordUtil.convertLabel(predictionLabels.get(i)));
-      }
+      final Public.Prediction.Builder predictionBuilder = Public.Prediction.newBuilder();
+      RecordUtil.putPredictionLabel(predictionBuilder, predictionKind, predictionLabels.get(i));
       if (modelVersion != null) {
         predictionBuilder.setModelVersion(modelVersion);
       }
       if (features != null) {
-        predictionBuilder.putAllFeatures(RecordUtil.convertFeatures(features.get(i)));
+        RecordUtil.putFeatures(predictionBuilder, features.get(i), dictionary);
       }
       if (embeddingFeatures != null) {
-        predictionBuilder.putAllFeatures(
-            RecordUtil.convertEmbeddingFeatures(embeddingFeatures.get(i)));
+        RecordUtil.putFeatures(predictionBuilder, embeddingFeatures.get(i), dictionary);
       }
       if (tags != null) {
-        predictionBuilder.putAllTags(RecordUtil.convertTags(tags.get(i)));
+        RecordUtil.putTags(predictionBuilder, tags.get(i), dictionary);
       }
       recordBuilder.setPrediction(predictionBuilder);
 
-      Public.Actual.Builder actualBuilder = Public.Actual.newBuilder();
-      if (actualLabels.get(i) != null && actualLabels.get(i).getClass() == Ranking.class) {
-        actualBuilder.setActualLabel(RecordUtil.convertActualLabel(actualLabels.get(i)));
-      } else{
-        actualBuilder.setLabel(RecordUtil.convertLabel(actualLabels.get(i)));
-      }
+      final Public.Actual.Builder actualBuilder = Public.Actual.newBuilder();
+      RecordUtil.putActualLabel(actualBuilder, actualKind, actualLabels.get(i));
       recordBuilder.setActual(actualBuilder);
 
-      vrBuilder.setRecord(recordBuilder);
+      sb.append(prefix);
+      RecordUtil.appendJSON(recordBuilder, sb);
+      sb.append("}}\n");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Issues a request, counting it in flight until its callback fires.
+   *
+   * @param checked whether to reject the request once the client is shut down; false for
+   *     requests of a {@link Drainable}, which keep being sent while it is drained and then block
+   *     on the {@link InFlightLimit} until the shutdown deadline
+   * @return the response, or {@link Response#CIRCUIT_OPEN} or {@link Response#REJECTED} if the
+   *     circuit breaker or the limit refused the request, in which case {@code callback} has been
+   *     notified of the failure
+   * @throws IllegalStateException if {@code checked} and the client is shut down
+   * @throws InFlightLimitException if the limit refused the request
+   */
+  private Response execute(
+      final HttpPost request, final FutureCallback<HttpResponse> callback, final boolean checked) {
+    return execute(request, callback, checked, null);
+  }
+
+  /**
+   * Issues a request like {@link #execute(HttpPost, FutureCallback, boolean)}.
+   *
+   * @param overflow what to do over the {@link InFlightLimit} instead of its configured overflow,
+   *     or null to apply that
+   */
+  private Response execute(
+      final HttpPost request,
+      final FutureCallback<HttpResponse> callback,
+      final boolean checked,
+      final InFlightLimit.Overflow overflow) {
+    final CircuitBreaker breaker = this.circuitBreaker;
+    final int permit = breaker == null ? -1 : breaker.tryAcquire();
+    if (breaker != null && permit < 0) {
+      if (callback != null) {
+        callback.failed(new IllegalStateException("circuit breaker is open"));
+      }
+      return Response.CIRCUIT_OPEN;
+    }
+    boolean issued = false;
+    try {
+      final Response response = issue(request, callback, checked, breaker, permit, overflow);
+      issued = response != Response.REJECTED;
+      return response;
+    } finally {
+      if (!issued && breaker != null) {
+        // a probe that was never sent must not hold up a half-open breaker
+        breaker.onCancelled(permit);
+      }
+    }
+  }
 
-      pprBuilder.setValidationRecord(vrBuilder);
-      sb.append(RecordUtil.toJSON(pprBuilder.build()));
-      sb.append('\n');
+  private Response issue(
+      final HttpPost request,
+      final FutureCallback<HttpResponse> callback,
+      final boolean checked,
+      final CircuitBreaker breaker,
+      final int permit,
+      final InFlightLimit.Overflow overflow) {
+    final long bytes = Math.max(0, request.getEntity().getContentLength());
+    final InFlightLimit limit = this.inFlightLimit;
+    if (limit == null) {
+      inFlight.incrementAndGet();
+      inFlightBytes.addAndGet(bytes);
+    } else if (!admit(
+        limit,
+        bytes,
+        overflow != null
+            ? overflow
+            : checked || !shutDown ? limit.getOverflow() : InFlightLimit.Overflow.BLOCK)) {
+      if (callback != null) {
+        callback.failed(
+            new InFlightLimitException("request rejected", inFlight.get(), inFlightBytes.get()));
+      }
+      return Response.REJECTED;
     }
-    final HttpPost request =
-        buildRequest(sb.toString(), this.trainingValidationHost, this.apiKey, this.spaceKey);
-    return new Response(client.execute(request, null));
+    // counted before checking, so shutdown either sees the request or the request sees shutdown
+    if (checked && shutDown) {
+      release(bytes);
+      throw new IllegalStateException("client is shut down");
+    }
+    final InFlightCallback inFlightCallback =
+        new InFlightCallback(callback, bytes, breaker, permit);
+    final Future<HttpResponse> future;
+    try {
+      future = client.execute(request, inFlightCallback);
+    } catch (RuntimeException e) {
+      release(bytes);
+      throw e;
+    }
+    final long timeoutNanos = this.requestTimeoutNanos;
+    if (timeoutNanos > 0) {
+      inFlightCallback.scheduleDeadline(future, timeoutNanos);
+    }
+    return new Response(future);
+  }
+
+  /**
+   * Counts a request in flight if the limit allows it, otherwise applies {@code overflow}. Once
+   * the client is shut down, blocking is bounded by the shutdown deadline.
+   *
+   * @return false if the request is rejected
+   */
+  private boolean admit(
+      final InFlightLimit limit, final long bytes, final InFlightLimit.Overflow overflow) {
+    synchronized (inFlight) {
+      InFlightLimit current = limit;
+      while (current != null && current.exceededBy(inFlight.get(), inFlightBytes.get(), bytes)) {
+        switch (overflow) {
+          case FAIL:
+            throw new InFlightLimitException(
+                "in-flight limit exceeded", inFlight.get(), inFlightBytes.get());
+          case REJECT:
+            return false;
+          default:
+            try {
+              if (!shutDown) {
+                inFlight.wait();
+              } else {
+                final long remaining = shutdownDeadlineNanos - System.nanoTime();
+                if (remaining <= 0) {
+                  return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(inFlight, remaining);
+              }
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new InFlightLimitException(
+                  "interrupted waiting for the in-flight limit",
+                  inFlight.get(),
+                  inFlightBytes.get());
+            }
+            current = this.inFlightLimit;
+        }
+      }
+      inFlightBytes.addAndGet(bytes);
+      inFlight.incrementAndGet();
+      return true;
+    }
+  }
+
+  private void release(final long bytes) {
+    inFlightBytes.addAndGet(-bytes);
+    if ((inFlight.decrementAndGet() == 0 && shutDown) || inFlightLimit != null) {
+      synchronized (inFlight) {
+        inFlight.notifyAll();
+      }
+    }
+  }
+
+  /** Marks the client shut down and bounds the wait of requests blocked on the limit. */
+  private void stopAdmitting(final long deadlineNanos) {
+    shutdownDeadlineNanos = deadlineNanos;
+    shutDown = true;
+    synchronized (inFlight) {
+      inFlight.notifyAll();
+    }
+  }
+
+  /**
+   * Registers a component holding records, to be drained on {@link #shutdown}.
+   *
+   * @throws IllegalStateException if the client is shut down
+   */
+  void register(final Drainable drainable) {
+    if (shutDown) {
+      throw new IllegalStateException("client is shut down");
+    }
+    drainables.add(drainable);
+  }
+
+  void unregister(final Drainable drainable) {
+    drainables.remove(drainable);
+  }
+
+  /**
+   * Shuts the client down gracefully. New records are rejected with an {@link
+   * IllegalStateException} from then on. Records held by this client's {@link
+   * PredictionActualJoiner}s, {@link RecordBatcher}s and {@link ModelSession}s are sent, joiners
+   * first since they may send through a batcher, and requests already issued are given until
+   * {@code timeout} to complete. Whatever is left at the deadline is dropped, and the connection
+   * is closed.
+   * Later calls return the first call's report without waiting.
+   *
+   * @param timeout how long to wait for queued records and requests in flight
+   * @return what was left undelivered
+   * @throws IOException in case of a network error while closing the connection
+   * @throws InterruptedException if interrupted while waiting; the connection is then left open
+   */
+  public synchronized ShutdownReport shutdown(final Duration timeout)
+      throws IOException, InterruptedException {
+    if (timeout == null || timeout.isNegative()) {
+      throw new IllegalArgumentException("timeout cannot be null or negative");
+    }
+    if (shutdownReport != null) {
+      return shutdownReport;
+    }
+    final long deadline = System.nanoTime() + timeout.toNanos();
+    stopAdmitting(deadline);
+    long recordsDropped = 0;
+    for (Drainable drainable : drainables) {
+      if (drainable.isUpstream()) {
+        recordsDropped += drainable.drainUntil(deadline);
+      }
+    }
+    for (Drainable drainable : drainables) {
+      if (!drainable.isUpstream()) {
+        recordsDropped += drainable.drainUntil(deadline);
+      }
+    }
+    drainables.clear();
+    synchronized (inFlight) {
+      long remaining;
+      while (inFlight.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+        TimeUnit.NANOSECONDS.timedWait(inFlight, remaining);
+      }
+    }
+    final int requestsAborted = inFlight.get();
+    client.close();
+    stopScheduler();
+    removeShutdownHook();
+    shutdownReport = new ShutdownReport(recordsDropped, requestsAborted);
+    return shutdownReport;
+  }
+
+  /**
+   * Registers a JVM shutdown hook calling {@link #shutdown} with {@code timeout}, so queued
+   * records are sent when the process is asked to stop. The hook is removed again by an explicit
+   * {@link #shutdown} or {@link #close}. Keep {@code timeout} within the grace period of the
+   * environment, such as the termination grace period of a Kubernetes pod.
+   *
+   * @throws IllegalStateException if a hook is already registered or the client is shut down
+   */
+  public synchronized void registerShutdownHook(final Duration timeout) {
+    if (timeout == null || timeout.isNegative()) {
+      throw new IllegalArgumentException("timeout cannot be null or negative");
+    }
+    if (shutDown) {
+      throw new IllegalStateException("client is shut down");
+    }
+    if (shutdownHook != null) {
+      throw new IllegalStateException("shutdown hook is already registered");
+    }
+    shutdownHook =
+        new Thread(
+            () -> {
+              try {
+                shutdown(timeout);
+              } catch (IOException e) {
+                // the process is exiting and nobody is left to tell
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            },
+            "arize-shutdown");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  /** Must hold the lock. */
+  private void removeShutdownHook() {
+    if (shutdownHook == null || Thread.currentThread() == shutdownHook) {
+      return;
+    }
+    try {
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    } catch (IllegalStateException e) {
+      // the JVM is already shutting down and will run the hook, which returns straight away
+    }
+    shutdownHook = null;
+  }
+
+  /** @return the number of requests issued and not yet completed */
+  public int getInFlightRequests() {
+    return inFlight.get();
+  }
+
+  /** @return the body bytes of the requests issued and not yet completed */
+  public long getInFlightBytes() {
+    return inFlightBytes.get();
   }
 
   /**
-   * Closes the http client.
+   * Closes the http client straight away, aborting requests in flight and dropping records queued
+   * in batchers. Use {@link #shutdown} to send them first.
    *
    * @throws IOException in case of a network error
    */
   public void close() throws IOException {
+    stopAdmitting(System.nanoTime());
     this.client.close();
+    synchronized (this) {
+      stopScheduler();
+      removeShutdownHook();
+    }
+  }
+
+  /** Must hold the lock. */
+  private void stopScheduler() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * A single-record request that is sent a second time once it has been outstanding for the
+   * policy's delay. The first attempt to succeed completes the result and the other is cancelled;
+   * if both fail, the result carries the last failure.
+   */
+  private final class HedgedRequest implements Runnable {
+    private static final int HEDGE_PENDING = 0;
+    private static final int HEDGE_SENT = 1;
+    private static final int HEDGE_NONE = 2;
+
+    private final String body;
+    private final HedgePolicy policy;
+    private final CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+
+    /** Attempts issued, or about to be, that have not completed. */
+    private final AtomicInteger outstanding = new AtomicInteger(1);
+
+    /** Moves from pending to sent when the timer fires, or to none once it no longer may. */
+    private final AtomicInteger hedgeState = new AtomicInteger(HEDGE_PENDING);
+
+    /** Set by the first attempt to succeed. */
+    private final AtomicBoolean won = new AtomicBoolean();
+
+    private volatile Response primary;
+    private volatile Response hedge;
+    private volatile ScheduledFuture<?> timer;
+
+    HedgedRequest(
+        final String body, final HedgePolicy policy, final FutureCallback<HttpResponse> callback) {
+      this.body = body;
+      this.policy = policy;
+      if (callback != null) {
+        result.whenComplete(
+            (response, error) -> {
+              if (response != null) {
+                callback.completed(response);
+              } else if (error instanceof CancellationException) {
+                callback.cancelled();
+              } else {
+                callback.failed(
+                    error instanceof Exception ? (Exception) error : new ExecutionException(error));
+              }
+            });
+      }
+    }
+
+    Response start() {
+      policy.onRequest();
+      final Response sent = execute(logTemplate.newRequest(body), new Attempt(false), true);
+      if (sent == Response.REJECTED || sent == Response.CIRCUIT_OPEN) {
+        // nothing was sent, so there is nothing to hedge
+        return sent;
+      }
+      primary = sent;
+      try {
+        timer = scheduler.schedule(this, policy.delayNanos(), TimeUnit.NANOSECONDS);
+      } catch (RejectedExecutionException e) {
+        // the client is closing; the request goes unhedged
+      }
+      result.whenComplete((response, error) -> cancelAttempts());
+      return new Response(result);
+    }
+
+    /** Sends the hedge, unless the request has completed meanwhile. */
+    @Override
+    public void run() {
+      if (result.isDone()) {
+        return;
+      }
+      // counted before claiming, so a failing primary cannot complete the result under the hedge
+      outstanding.incrementAndGet();
+      if (!hedgeState.compareAndSet(HEDGE_PENDING, HEDGE_SENT)) {
+        outstanding.decrementAndGet();
+        return;
+      }
+      final Response sent;
+      try {
+        // never wait on the in-flight limit here, as that would stall the scheduler thread
+        sent =
+            execute(
+                logTemplate.newRequest(body),
+                new Attempt(true),
+                true,
+                InFlightLimit.Overflow.REJECT);
+      } catch (RuntimeException e) {
+        onFailure(e, null);
+        return;
+      }
+      if (sent == Response.REJECTED || sent == Response.CIRCUIT_OPEN) {
+        // skipped; its attempt has already been failed
+        return;
+      }
+      policy.onHedge();
+      hedge = sent;
+      if (result.isDone()) {
+        hedge.cancel();
+      }
+    }
+
+    private void cancelAttempts() {
+      final ScheduledFuture<?> pendingTimer = timer;
+      if (pendingTimer != null) {
+        pendingTimer.cancel(false);
+      }
+      for (Response attempt : new Response[] {primary, hedge}) {
+        if (attempt != null) {
+          attempt.cancel();
+        }
+      }
+    }
+
+    /** Completes the result with this failure once no other attempt can still succeed. */
+    private void onFailure(final Exception error, final HttpResponse response) {
+      if (outstanding.decrementAndGet() > 0) {
+        return;
+      }
+      hedgeState.compareAndSet(HEDGE_PENDING, HEDGE_NONE);
+      if (response != null) {
+        result.complete(response);
+      } else {
+        result.completeExceptionally(error);
+      }
+    }
+
+    private final class Attempt implements FutureCallback<HttpResponse> {
+      private final boolean isHedge;
+      private final long startNanos = System.nanoTime();
+
+      Attempt(final boolean isHedge) {
+        this.isHedge = isHedge;
+      }
+
+      @Override
+      public void completed(final HttpResponse response) {
+        final int status = response.getStatusLine().getStatusCode();
+        if (status >= 500 || status == 429) {
+          onFailure(null, response);
+          return;
+        }
+        policy.recordLatency(System.nanoTime() - startNanos);
+        // claimed before completing, so the win is counted by the time the caller sees it
+        if (won.compareAndSet(false, true)) {
+          if (isHedge) {
+            policy.onHedgeWin();
+          }
+          result.complete(response);
+        }
+      }
+
+      @Override
+      public void failed(final Exception ex) {
+        onFailure(ex, null);
+      }
+
+      @Override
+      public void cancelled() {
+        onFailure(new CancellationException("attempt cancelled"), null);
+      }
+    }
+  }
+
+  /**
+   * Releases a request's in-flight slot once it completes and reports its outcome to the circuit
+   * breaker, then notifies the caller's callback.
+   */
+  private final class InFlightCallback implements FutureCallback<HttpResponse> {
+    private final FutureCallback<HttpResponse> delegate;
+    private final long bytes;
+    private final CircuitBreaker breaker;
+    private final int permit;
+    private final long startNanos;
+
+    private volatile ScheduledFuture<?> deadline;
+    private volatile boolean timedOut;
+
+    InFlightCallback(
+        final FutureCallback<HttpResponse> delegate,
+        final long bytes,
+        final CircuitBreaker breaker,
+        final int permit) {
+      this.delegate = delegate;
+      this.bytes = bytes;
+      this.breaker = breaker;
+      this.permit = permit;
+      this.startNanos = breaker == null ? 0 : System.nanoTime();
+    }
+
+    /** Cancels {@code future} if it has not completed within {@code timeoutNanos}. */
+    void scheduleDeadline(final Future<HttpResponse> future, final long timeoutNanos) {
+      try {
+        deadline =
+            scheduler.schedule(
+                () -> {
+                  timedOut = true;
+                  future.cancel(true);
+                },
+                timeoutNanos,
+                TimeUnit.NANOSECONDS);
+      } catch (RejectedExecutionException e) {
+        // the client is closing and aborts the request itself
+        return;
+      }
+      if (future.isDone()) {
+        deadline.cancel(false);
+      }
+    }
+
+    private void outcome(final boolean failed) {
+      final ScheduledFuture<?> pendingDeadline = deadline;
+      if (pendingDeadline != null) {
+        pendingDeadline.cancel(false);
+      }
+      if (breaker != null) {
+        breaker.onComplete(permit, System.nanoTime() - startNanos, failed);
+      }
+    }
+
+    @Override
+    public void completed(final HttpResponse response) {
+      final int status = response.getStatusLine().getStatusCode();
+      outcome(status >= 500 || status == 429);
+      try {
+        if (delegate != null) {
+          delegate.completed(response);
+        }
+      } finally {
+        release(bytes);
+      }
+    }
+
+    @Override
+    public void failed(final Exception ex) {
+      outcome(true);
+      try {
+        if (delegate != null) {
+          delegate.failed(ex);
+        }
+      } finally {
+        release(bytes);
+      }
+    }
+
+    @Override
+    public void cancelled() {
+      if (timedOut) {
+        // cancelled at its deadline, which is a failure of the endpoint
+        failed(new TimeoutException("request deadline exceeded"));
+        return;
+      }
+      // cancelled by the caller, which says nothing about the endpoint
+      final ScheduledFuture<?> pendingDeadline = deadline;
+      if (pendingDeadline != null) {
+        pendingDeadline.cancel(false);
+      }
+      if (breaker != null) {
+        breaker.onCancelled(permit);
+      }
+      try {
+        if (delegate != null) {
+          delegate.cancelled();
+        }
+      } finally {
+        release(bytes);
+      }
+    }
   }
 
   public static class ScoredCategorical {
@@ -0,0 +1,100 @@
+package com.arize;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Every problem found by a pre-conversion scan of a bulk batch, with the row each one was found
+ * in. A row with at least one violation would fail conversion; the rest of the batch is usable.
+ */
+public final class BulkValidationReport {
+
+  /** Violations listed in an exception message before the remainder is summarized. */
+  private static final int MAX_LISTED = 10;
+
+  private final int rowCount;
+  private final List<Violation> violations = new ArrayList<>();
+  private final BitSet invalidRows = new BitSet();
+
+  BulkValidationReport(final int rowCount) {
+    this.rowCount = rowCount;
+  }
+
+  void add(final int row, final String field, final String message) {
+    violations.add(new Violation(row, field, message));
+    invalidRows.set(row);
+  }
+
+  /** @return true if no violations were found */
+  public boolean isValid() {
+    return violations.isEmpty();
+  }
+
+  /** @return the number of rows scanned */
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /** @return every violation in row order */
+  public List<Violation> getViolations() {
+    return Collections.unmodifiableList(violations);
+  }
+
+  /** @return the number of rows with at least one violation */
+  public int getInvalidRowCount() {
+    return invalidRows.cardinality();
+  }
+
+  /** @return true if the row has no violations */
+  public boolean isRowValid(final int row) {
+    return !invalidRows.get(row);
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder();
+    sb.append(getInvalidRowCount()).append(" of ").append(rowCount).append(" rows are invalid");
+    final int listed = Math.min(MAX_LISTED, violations.size());
+    for (int i = 0; i < listed; i++) {
+      sb.append("; ").append(violations.get(i));
+    }
+    if (violations.size() > listed) {
+      sb.append("; and ").append(violations.size() - listed).append(" more");
+    }
+    return sb.toString();
+  }
+
+  /** A single problem in one row of a bulk batch. */
+  public static final class Violation {
+    private final int row;
+    private final String field;
+    private final String message;
+
+    Violation(final int row, final String field, final String message) {
+      this.row = row;
+      this.field = field;
+      this.message = message;
+    }
+
+    /** @return index of the offending row in the batch */
+    public int getRow() {
+      return row;
+    }
+
+    /** @return the argument the problem was found in, e.g. {@code features} */
+    public String getField() {
+      return field;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    @Override
+    public String toString() {
+      return "row " + row + " " + field + ": " + message;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package com.arize;
+
+import com.arize.types.Embedding;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single scan over a bulk batch that finds every row conversion would reject: unsupported label,
+ * feature and tag types, prediction and actual labels of different types, and incomplete ranking
+ * labels. Only types and required fields are inspected, nothing is converted, so the scan is cheap
+ * next to building the records. List lengths are checked by the caller beforehand.
+ */
+final class BulkValidator {
+
+  private BulkValidator() {}
+
+  static <T> BulkValidationReport validate(
+      final List<String> predictionIds,
+      final List<Map<String, ?>> features,
+      final List<Map<String, Embedding>> embeddingFeatures,
+      final List<Map<String, ?>> tags,
+      final List<T> predictionLabels,
+      final List<T> actualLabels,
+      final List<Map<String, Double>> shapValues) {
+    final int rows = predictionIds.size();
+    final BulkValidationReport report = new BulkValidationReport(rows);
+    for (int row = 0; row < rows; row++) {
+      final String predictionId = predictionIds.get(row);
+      if (predictionId == null || predictionId.isEmpty()) {
+        report.add(row, "predictionIds", "predictionId cannot be null or empty");
+      }
+      final T predictionLabel = predictionLabels != null ? predictionLabels.get(row) : null;
+      final T actualLabel = actualLabels != null ? actualLabels.get(row) : null;
+      if (predictionLabels != null) {
+        checkPredictionLabel(report, row, predictionLabel);
+      }
+      if (actualLabels != null) {
+        checkActualLabel(report, row, actualLabel);
+      }
+      if (predictionLabel != null
+          && actualLabel != null
+          && predictionLabel.getClass() != actualLabel.getClass()) {
+        report.add(
+            row,
+            "actualLabels",
+            "predictionLabel and actualLabel must be of the same type. predictionLabel: "
+                + predictionLabel.getClass()
+                + " actualLabel: "
+                + actualLabel.getClass());
+      }
+      if (features != null) {
+        checkDimensions(report, row, "features", features.get(row));
+      }
+      if (embeddingFeatures != null) {
+        checkDimensions(report, row, "embeddingFeatures", embeddingFeatures.get(row));
+      }
+      if (tags != null) {
+        checkDimensions(report, row, "tags", tags.get(row));
+      }
+      if (shapValues != null) {
+        checkShapValues(report, row, shapValues.get(row));
+      }
+    }
+    return report;
+  }
+
+  private static void checkPredictionLabel(
+      final BulkValidationReport report, final int row, final Object label) {
+    if (label instanceof ArizeClient.Ranking) {
+      final ArizeClient.Ranking ranking = (ArizeClient.Ranking) label;
+      if (ranking.getPredictionGroupId() == null) {
+        report.add(
+            row,
+            "predictionLabels",
+            "prediction group id for ranking prediction label cannot be null");
+      }
+      if (ranking.getRank() == 0) {
+        report.add(row, "predictionLabels", "rank for ranking prediction label cannot be 0");
+      }
+    } else if (!isSupportedLabel(label)) {
+      report.add(row, "predictionLabels", illegalLabel(label));
+    }
+  }
+
+  private static void checkActualLabel(
+      final BulkValidationReport report, final int row, final Object label) {
+    if (label instanceof ArizeClient.Ranking) {
+      final ArizeClient.Ranking ranking = (ArizeClient.Ranking) label;
+      if (ranking.getActualLabels() == null
+          && ranking.getScore() == null
+          && ranking.getRelevanceScoreScore() == null) {
+        report.add(
+            row,
+            "actualLabels",
+            "one of attributions or relevanceScore is needed for ranking actual label");
+      }
+    } else if (!isSupportedLabel(label)) {
+      report.add(row, "actualLabels", illegalLabel(label));
+    }
+  }
+
+  private static boolean isSupportedLabel(final Object label) {
+    return label instanceof Boolean
+        || label instanceof String
+        || label instanceof Integer
+        || label instanceof Long
+        || label instanceof Short
+        || label instanceof Float
+        || label instanceof Double
+        || label instanceof ArizeClient.ScoredCategorical
+        || label instanceof ObjectDetection;
+  }
+
+  private static String illegalLabel(final Object label) {
+    return "Illegal label "
+        + label
+        + ", must be oneof: boolean, String, int, long, short, float, double, ScoreCategorical,"
+        + " ObjectDetection";
+  }
+
+  private static void checkDimensions(
+      final BulkValidationReport report,
+      final int row,
+      final String field,
+      final Map<String, ?> dimensions) {
+    if (dimensions == null) {
+      return;
+    }
+    for (Map.Entry<String, ?> entry : dimensions.entrySet()) {
+      final Object value = entry.getValue();
+      if (value == null
+          || value instanceof String
+          || value instanceof Integer
+          || value instanceof Long
+          || value instanceof Short
+          || value instanceof Boolean
+          || value instanceof Double
+          || value instanceof Float
+          || value instanceof Embedding) {
+        continue;
+      }
+      if (value instanceof Collection) {
+        for (Object element : (Collection<?>) value) {
+          if (!(element instanceof String)) {
+            report.add(
+                row,
+                field,
+                "Elements of multivalue feature " + entry.getKey() + " must be Strings");
+            break;
+          }
+        }
+        continue;
+      }
+      report.add(
+          row,
+          field,
+          "Illegal feature type: "
+              + value.getClass().getSimpleName()
+              + " for feature: "
+              + entry.getKey());
+    }
+  }
+
+  private static void checkShapValues(
+      final BulkValidationReport report, final int row, final Map<String, Double> shapValues) {
+    if (shapValues == null) {
+      report.add(row, "shapValues", "shapValues cannot be null");
+      return;
+    }
+    for (Map.Entry<String, Double> entry : shapValues.entrySet()) {
+      if (entry.getKey() == null || entry.getValue() == null) {
+        report.add(row, "shapValues", "shap value for " + entry.getKey() + " cannot be null");
+      }
+    }
+  }
+}
@@ -0,0 +1,340 @@
+package com.arize;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stops an {@link ArizeClient} from converting and sending records while the Arize endpoint is
+ * failing. The outcomes of the last {@code windowSize} requests are kept in a sliding window; once
+ * it holds at least {@code minimumCalls} and the share of failed or slow requests reaches its
+ * threshold, the breaker opens. A failed request is one that could not be completed or was
+ * answered with a 5xx or 429 status.
+ *
+ * <p>While open, production records are handed to the {@link Fallback} and reported as {@link
+ * Response.ResponseCode#CIRCUIT_OPEN} before any conversion, and no requests are issued. After
+ * {@code openMillis} the breaker turns half-open and lets {@code halfOpenProbes} requests through:
+ * if they all succeed it closes again, otherwise it reopens. Once the probes are issued, records
+ * and requests are diverted and refused like those of an open breaker. Records of a request the
+ * breaker refuses after they were converted, such as a batch flushed as it opens, also go to the
+ * fallback, except those of {@link ModelSession}s, which only count them as failed.
+ *
+ * <pre>
+ *   client.setCircuitBreaker(
+ *       CircuitBreaker.newBuilder()
+ *           .setFailureRateThreshold(0.5)
+ *           .setSlowCallMillis(2000)
+ *           .setSlowCallRateThreshold(0.8)
+ *           .setFallback((modelId, predictionId) -> missed.add(predictionId))
+ *           .build());
+ * </pre>
+ *
+ * <p>A breaker tracks one endpoint, so give each client its own.
+ */
+public final class CircuitBreaker {
+
+  /** Whether requests are issued. */
+  public enum State {
+    /** Requests are issued and their outcomes recorded. */
+    CLOSED,
+    /** Records are diverted to the fallback and no requests are issued. */
+    OPEN,
+    /** A few probe requests are issued to decide whether to close again. */
+    HALF_OPEN
+  }
+
+  /**
+   * Receives the production records rejected while the breaker is open. Called on the logging
+   * thread before the record is converted, so it is given only the record's identity; the caller
+   * still holds the record's contents and can keep them, for example in a buffer or spool file
+   * keyed by prediction id, to log again once the breaker closes. Implementations must be
+   * thread-safe.
+   */
+  public interface Fallback {
+
+    /**
+     * Drops rejected records; they are only counted by {@link CircuitBreaker#getRecordsRejected}.
+     */
+    Fallback DROP = (modelId, predictionId) -> {};
+
+    /**
+     * @param modelId the model the record belongs to
+     * @param predictionId the record's prediction id, never null
+     */
+    void onRejected(String modelId, String predictionId);
+  }
+
+  private static final byte FAILED = 1;
+  private static final byte SLOW = 2;
+
+  private final int minimumCalls;
+  private final double failureRateThreshold;
+  private final long slowCallNanos;
+  private final double slowCallRateThreshold;
+  private final long openNanos;
+  private final int halfOpenProbes;
+  private final Fallback fallback;
+
+  private volatile State state = State.CLOSED;
+
+  /** When the breaker last opened; read without the lock by {@link #rejectRecord}. */
+  private volatile long openedAtNanos;
+
+  /** Guarded by this: outcome flags of the last calls, oldest overwritten first. */
+  private final byte[] window;
+  private int position;
+  private int calls;
+  private int failures;
+  private int slowCalls;
+
+  /**
+   * Bumped under the lock on every state change, so outcomes of permits granted before it are
+   * ignored. Volatile for the unlocked read of a closed breaker.
+   */
+  private volatile int generation;
+  private int probesIssued;
+  private int probesSucceeded;
+
+  private final AtomicLong recordsRejected = new AtomicLong();
+  private final AtomicLong requestsRejected = new AtomicLong();
+
+  private CircuitBreaker(final Builder builder) {
+    this.window = new byte[builder.windowSize];
+    this.minimumCalls = builder.minimumCalls;
+    this.failureRateThreshold = builder.failureRateThreshold;
+    this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(builder.slowCallMillis);
+    this.slowCallRateThreshold = builder.slowCallRateThreshold;
+    this.openNanos = TimeUnit.MILLISECONDS.toNanos(builder.openMillis);
+    this.halfOpenProbes = builder.halfOpenProbes;
+    this.fallback = builder.fallback;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** @return the current state; an open breaker reports OPEN until a request probes it */
+  public State getState() {
+    return state;
+  }
+
+  /** @return the number of records handed to the fallback */
+  public long getRecordsRejected() {
+    return recordsRejected.get();
+  }
+
+  /** @return the number of requests refused while open or half-open */
+  public long getRequestsRejected() {
+    return requestsRejected.get();
+  }
+
+  /**
+   * Diverts a production record to the fallback if the breaker is open and not yet due for a
+   * probe, or half-open with every probe issued. Lock free while closed, as it runs for every
+   * record.
+   *
+   * @return true if the record was rejected
+   */
+  boolean rejectRecord(final String modelId, final String predictionId) {
+    final State current = state;
+    if (current == State.CLOSED) {
+      return false;
+    }
+    if (current == State.OPEN
+        ? System.nanoTime() - openedAtNanos >= openNanos
+        : probeAvailable()) {
+      return false;
+    }
+    reject(modelId, predictionId);
+    return true;
+  }
+
+  /** Hands a production record to the fallback, for one whose request the breaker refused. */
+  void reject(final String modelId, final String predictionId) {
+    recordsRejected.incrementAndGet();
+    fallback.onRejected(modelId, predictionId);
+  }
+
+  private synchronized boolean probeAvailable() {
+    return state != State.HALF_OPEN || probesIssued < halfOpenProbes;
+  }
+
+  /**
+   * Asks to issue a request.
+   *
+   * @return the permit to pass to {@link #onComplete}, or -1 if the request must not be issued
+   */
+  int tryAcquire() {
+    if (state == State.CLOSED) {
+      // unlocked fast path; an outcome recorded against a stale generation is ignored
+      return generation;
+    }
+    synchronized (this) {
+      if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+        transition(State.HALF_OPEN);
+      }
+      if (state == State.CLOSED) {
+        return generation;
+      }
+      if (state == State.HALF_OPEN && probesIssued < halfOpenProbes) {
+        probesIssued++;
+        return generation;
+      }
+    }
+    requestsRejected.incrementAndGet();
+    return -1;
+  }
+
+  /**
+   * Records the outcome of a request issued with {@code permit}.
+   *
+   * @param failed whether the request could not be completed or failed on the server
+   */
+  synchronized void onComplete(final int permit, final long latencyNanos, final boolean failed) {
+    if (permit != generation) {
+      return;
+    }
+    final boolean slow = latencyNanos >= slowCallNanos;
+    if (state == State.HALF_OPEN) {
+      if (failed || slow) {
+        transition(State.OPEN);
+      } else if (++probesSucceeded >= halfOpenProbes) {
+        transition(State.CLOSED);
+      }
+      return;
+    }
+    if (state != State.CLOSED) {
+      return;
+    }
+    if (calls == window.length) {
+      final byte evicted = window[position];
+      failures -= evicted & FAILED;
+      slowCalls -= (evicted & SLOW) >> 1;
+    } else {
+      calls++;
+    }
+    window[position] = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+    position = position + 1 == window.length ? 0 : position + 1;
+    failures += failed ? 1 : 0;
+    slowCalls += slow ? 1 : 0;
+    if (calls >= minimumCalls
+        && (failures >= failureRateThreshold * calls
+            || slowCalls >= slowCallRateThreshold * calls)) {
+      transition(State.OPEN);
+    }
+  }
+
+  /** Returns the probe slot of a request issued with {@code permit} that reports no outcome. */
+  synchronized void onCancelled(final int permit) {
+    if (permit == generation && state == State.HALF_OPEN && probesIssued > 0) {
+      probesIssued--;
+    }
+  }
+
+  /** Must hold the lock. */
+  private void transition(final State next) {
+    generation++;
+    probesIssued = 0;
+    probesSucceeded = 0;
+    if (next == State.CLOSED) {
+      position = 0;
+      calls = 0;
+      failures = 0;
+      slowCalls = 0;
+    } else if (next == State.OPEN) {
+      openedAtNanos = System.nanoTime();
+    }
+    state = next;
+  }
+
+  public static final class Builder {
+    private int windowSize = 100;
+    private int minimumCalls = 20;
+    private double failureRateThreshold = 0.5;
+    private long slowCallMillis = 10_000;
+    private double slowCallRateThreshold = 1.0;
+    private long openMillis = 30_000;
+    private int halfOpenProbes = 3;
+    private Fallback fallback = Fallback.DROP;
+
+    private Builder() {}
+
+    /** Number of most recent requests whose outcomes are kept. Defaults to 100. */
+    public Builder setWindowSize(final int windowSize) {
+      this.windowSize = windowSize;
+      return this;
+    }
+
+    /** Requests the window must hold before the breaker may open. Defaults to 20. */
+    public Builder setMinimumCalls(final int minimumCalls) {
+      this.minimumCalls = minimumCalls;
+      return this;
+    }
+
+    /** Share of failed requests in the window that opens the breaker. Defaults to 0.5. */
+    public Builder setFailureRateThreshold(final double failureRateThreshold) {
+      this.failureRateThreshold = failureRateThreshold;
+      return this;
+    }
+
+    /** Latency from which a request counts as slow. Defaults to 10s. */
+    public Builder setSlowCallMillis(final long slowCallMillis) {
+      this.slowCallMillis = slowCallMillis;
+      return this;
+    }
+
+    /**
+     * Share of slow requests in the window that opens the breaker. Defaults to 1.0, opening only
+     * once every request in the window was slow.
+     */
+    public Builder setSlowCallRateThreshold(final double slowCallRateThreshold) {
+      this.slowCallRateThreshold = slowCallRateThreshold;
+      return this;
+    }
+
+    /** How long the breaker stays open before probing. Defaults to 30s. */
+    public Builder setOpenMillis(final long openMillis) {
+      this.openMillis = openMillis;
+      return this;
+    }
+
+    /** Requests let through while half-open; all must succeed to close. Defaults to 3. */
+    public Builder setHalfOpenProbes(final int halfOpenProbes) {
+      this.halfOpenProbes = halfOpenProbes;
+      return this;
+    }
+
+    /** Where records go while the breaker is open. Defaults to {@link Fallback#DROP}. */
+    public Builder setFallback(final Fallback fallback) {
+      this.fallback = fallback;
+      return this;
+    }
+
+    public CircuitBreaker build() {
+      if (windowSize < 1) {
+        throw new IllegalArgumentException("windowSize must be positive");
+      }
+      if (minimumCalls < 1 || minimumCalls > windowSize) {
+        throw new IllegalArgumentException("minimumCalls must be between 1 and windowSize");
+      }
+      if (!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+        throw new IllegalArgumentException("failureRateThreshold must be in (0, 1]");
+      }
+      if (slowCallMillis < 0) {
+        throw new IllegalArgumentException("slowCallMillis cannot be negative");
+      }
+      if (!(slowCallRateThreshold > 0 && slowCallRateThreshold <= 1)) {
+        throw new IllegalArgumentException("slowCallRateThreshold must be in (0, 1]");
+      }
+      if (openMillis < 0) {
+        throw new IllegalArgumentException("openMillis cannot be negative");
+      }
+      if (halfOpenProbes < 1) {
+        throw new IllegalArgumentException("halfOpenProbes must be positive");
+      }
+      if (fallback == null) {
+        throw new IllegalArgumentException("fallback cannot be null");
+      }
+      return new CircuitBreaker(this);
+    }
+  }
+}
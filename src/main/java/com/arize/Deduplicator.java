@@ -0,0 +1,195 @@
+package com.arize;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops records whose prediction id was already logged for the same model within a recent window,
+ * as happens when upstream retries call {@code log} several times for one prediction. Each model
+ * keeps a bounded set of recently seen prediction ids; the oldest ids are forgotten first.
+ *
+ * <p>A record is only a duplicate if every part it carries (prediction, actual, feature
+ * importances) was already sent for that id, so a latent actual logged after its prediction is
+ * never dropped. The check runs before any record conversion, but an id is only remembered once
+ * its record has been converted and handed off. It is forgotten again if the hand-off fails or
+ * the request carrying the record, single or batched, fails or is refused, so a retry goes
+ * through. Records without any of these parts are never duplicates. Instances are thread-safe.
+ */
+public class Deduplicator {
+
+  static final int PREDICTION = 1;
+  static final int ACTUAL = 1 << 1;
+  static final int FEATURE_IMPORTANCES = 1 << 2;
+
+  private final int maxIdsPerModel;
+  private final long windowNanos;
+  private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+  private final AtomicLong checked = new AtomicLong();
+  private final AtomicLong duplicates = new AtomicLong();
+
+  /**
+   * @param maxIdsPerModel how many recent prediction ids to remember per model
+   * @param windowMillis how long an id is remembered, 0 to remember until evicted
+   */
+  public Deduplicator(final int maxIdsPerModel, final long windowMillis) {
+    if (maxIdsPerModel < 1) {
+      throw new IllegalArgumentException("maxIdsPerModel must be positive");
+    }
+    if (windowMillis < 0) {
+      throw new IllegalArgumentException("windowMillis cannot be negative");
+    }
+    this.maxIdsPerModel = maxIdsPerModel;
+    this.windowNanos =
+        windowMillis == 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(windowMillis);
+  }
+
+  /**
+   * Checks whether the given parts of a prediction were all sent recently. Nothing is remembered
+   * until the record is converted and handed off, see {@link #markSent}.
+   *
+   * @param parts bitwise or of {@link #PREDICTION}, {@link #ACTUAL} and {@link
+   *     #FEATURE_IMPORTANCES}
+   * @return true if the record should be dropped; never for a record without parts
+   */
+  boolean isDuplicate(final String modelId, final String predictionId, final int parts) {
+    checked.incrementAndGet();
+    if (parts == 0) {
+      return false;
+    }
+    final Window window = windows.get(modelId);
+    if (window == null) {
+      return false;
+    }
+    final long now = System.nanoTime();
+    synchronized (window) {
+      final Seen seen = window.get(predictionId);
+      if (seen != null && now - seen.atNanos < windowNanos && (seen.parts & parts) == parts) {
+        duplicates.incrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Remembers the given parts of a prediction as sent. Called once the record carrying them has
+   * been converted, right before it is handed off.
+   *
+   * @return the parts newly remembered, to pass to {@link #forget} if the record is not sent after
+   *     all; 0 if another call sent all of them since {@link #isDuplicate}, in which case the
+   *     record is a duplicate and is counted as one
+   */
+  int markSent(final String modelId, final String predictionId, final int parts) {
+    if (parts == 0) {
+      return 0;
+    }
+    final Window window = windows.computeIfAbsent(modelId, id -> new Window(maxIdsPerModel));
+    final long now = System.nanoTime();
+    synchronized (window) {
+      final Seen seen = window.get(predictionId);
+      if (seen != null && now - seen.atNanos < windowNanos) {
+        final int added = parts & ~seen.parts;
+        if (added == 0) {
+          duplicates.incrementAndGet();
+        }
+        seen.parts |= added;
+        return added;
+      }
+      if (seen != null) {
+        // expired: re-insert so the id moves to the young end of the window
+        window.remove(predictionId);
+      }
+      window.put(predictionId, new Seen(parts, now));
+      return parts;
+    }
+  }
+
+  /**
+   * Forgets parts remembered by {@link #markSent} whose record could not be sent, so that a retry
+   * is not dropped.
+   */
+  void forget(final String modelId, final String predictionId, final int parts) {
+    final Window window = windows.get(modelId);
+    if (window == null || parts == 0) {
+      return;
+    }
+    synchronized (window) {
+      final Seen seen = window.get(predictionId);
+      if (seen != null) {
+        seen.parts &= ~parts;
+        if (seen.parts == 0) {
+          window.remove(predictionId);
+        }
+      }
+    }
+  }
+
+  /** @return the number of records checked */
+  public long getCheckedCount() {
+    return checked.get();
+  }
+
+  /** @return the number of records dropped as duplicates */
+  public long getDuplicateCount() {
+    return duplicates.get();
+  }
+
+  static <T> int parts(final T predictionLabel, final T actualLabel, final Map<?, ?> shapValues) {
+    int parts = 0;
+    if (predictionLabel != null) {
+      parts |= PREDICTION;
+    }
+    if (actualLabel != null) {
+      parts |= ACTUAL;
+    }
+    if (shapValues != null && !shapValues.isEmpty()) {
+      parts |= FEATURE_IMPORTANCES;
+    }
+    return parts;
+  }
+
+  /** Parts of a numeric record, where a NaN label means the label is absent. */
+  static int numericParts(
+      final double predictionLabel, final double actualLabel, final Map<?, ?> shapValues) {
+    int parts = 0;
+    if (!Double.isNaN(predictionLabel)) {
+      parts |= PREDICTION;
+    }
+    if (!Double.isNaN(actualLabel)) {
+      parts |= ACTUAL;
+    }
+    if (shapValues != null && !shapValues.isEmpty()) {
+      parts |= FEATURE_IMPORTANCES;
+    }
+    return parts;
+  }
+
+  private static final class Seen {
+    int parts;
+    final long atNanos;
+
+    Seen(final int parts, final long atNanos) {
+      this.parts = parts;
+      this.atNanos = atNanos;
+    }
+  }
+
+  /** Recently seen ids of one model in first-seen order, evicting the oldest beyond capacity. */
+  private static final class Window extends LinkedHashMap<String, Seen> {
+    private final int capacity;
+
+    Window(final int capacity) {
+      super(16, 0.75f, false);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(final Map.Entry<String, Seen> eldest) {
+      return size() > capacity;
+    }
+  }
+}
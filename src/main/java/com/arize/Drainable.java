@@ -0,0 +1,27 @@
+package com.arize;
+
+/**
+ * A component holding records on behalf of an {@link ArizeClient} until they are sent. Components
+ * register with their client when built so {@link ArizeClient#shutdown} can send what they hold
+ * before the connection is closed, and unregister when closed.
+ */
+interface Drainable {
+
+  /**
+   * Stops accepting records and sends everything held, giving up on what is left once {@code
+   * deadlineNanos} has passed.
+   *
+   * @param deadlineNanos the {@link System#nanoTime()} by which sending must have started
+   * @return the number of records that were never sent
+   * @throws InterruptedException if interrupted while waiting to send
+   */
+  long drainUntil(long deadlineNanos) throws InterruptedException;
+
+  /**
+   * @return true if the component hands its records to other components, as a joiner does to its
+   *     batcher, so that it is drained before them
+   */
+  default boolean isUpstream() {
+    return false;
+  }
+}
@@ -0,0 +1,42 @@
+package com.arize;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-model dictionary of feature and tag names. Callers often build a fresh key {@link String} for
+ * every row; interning them here means every record of a model refers to one canonical instance per
+ * name, which keeps the memory held by large batches down. The dictionary stops growing once it
+ * reaches its capacity, so high-cardinality keys pass through unchanged instead of leaking.
+ */
+final class FeatureDictionary {
+
+  static final int DEFAULT_CAPACITY = 4096;
+
+  private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+  private final int capacity;
+
+  FeatureDictionary() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  FeatureDictionary(final int capacity) {
+    this.capacity = capacity;
+  }
+
+  /** @return the canonical instance equal to {@code name} */
+  String intern(final String name) {
+    final String existing = names.get(name);
+    if (existing != null) {
+      return existing;
+    }
+    if (names.size() >= capacity) {
+      return name;
+    }
+    final String raced = names.putIfAbsent(name, name);
+    return raced == null ? name : raced;
+  }
+
+  int size() {
+    return names.size();
+  }
+}
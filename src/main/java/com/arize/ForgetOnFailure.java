@@ -0,0 +1,74 @@
+package com.arize;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prediction parts remembered by the client's {@link Deduplicator} for the records of one request,
+ * forgotten again if the request fails so that a retry is not dropped. Serves as the request's
+ * callback, or is called by a component's own callback once it knows the request failed.
+ */
+final class ForgetOnFailure implements FutureCallback<HttpResponse> {
+  private final ArizeClient client;
+  private final String modelId;
+
+  /** Guarded by this: the records added and the parts each of them marked. */
+  private List<String> predictionIds = new ArrayList<>();
+  private int[] marks = new int[8];
+
+  ForgetOnFailure(final ArizeClient client, final String modelId) {
+    this.client = client;
+    this.modelId = modelId;
+  }
+
+  /**
+   * Adds a record's parts as returned by {@link ArizeClient#markSent}; nothing is added unless
+   * some were marked.
+   */
+  synchronized void add(final String predictionId, final int marked) {
+    if (marked <= 0) {
+      return;
+    }
+    final int index = predictionIds.size();
+    if (index == marks.length) {
+      marks = Arrays.copyOf(marks, index * 2);
+    }
+    predictionIds.add(predictionId);
+    marks[index] = marked;
+  }
+
+  /** Forgets every part added so far. Further calls forget nothing more. */
+  void forget() {
+    final List<String> ids;
+    final int[] parts;
+    synchronized (this) {
+      ids = predictionIds;
+      parts = marks;
+      predictionIds = new ArrayList<>();
+    }
+    for (int index = 0; index < ids.size(); index++) {
+      client.forgetSent(modelId, ids.get(index), parts[index]);
+    }
+  }
+
+  @Override
+  public void completed(final HttpResponse response) {
+    if (response.getStatusLine().getStatusCode() != 200) {
+      forget();
+    }
+  }
+
+  @Override
+  public void failed(final Exception ex) {
+    forget();
+  }
+
+  @Override
+  public void cancelled() {
+    forget();
+  }
+}
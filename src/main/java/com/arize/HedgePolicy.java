@@ -0,0 +1,167 @@
+package com.arize;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedging of single-record {@code log} requests. When a request has not completed after a delay,
+ * a duplicate is sent on another pooled connection and the first success is taken; the other
+ * request is cancelled. The delay follows the observed latency: the {@code percentile} of the last
+ * {@code windowSize} successful requests, kept between {@code minDelayMillis} and {@code
+ * maxDelayMillis}. Until enough latencies are known it is {@code maxDelayMillis}.
+ *
+ * <pre>
+ *   HedgePolicy hedging = HedgePolicy.newBuilder().setPercentile(0.95).build();
+ *   client.setHedgePolicy(hedging);
+ *   ...
+ *   metrics.gauge("arize.hedge_rate", hedging.getHedgeRate());
+ * </pre>
+ *
+ * <p>A hedged record may reach Arize twice, so only enable hedging where that is acceptable. The
+ * default connection pool of {@link ArizeClient} keeps two connections per route, enough for a
+ * request and its hedge. A hedge never waits for the client's {@link InFlightLimit}: when the
+ * limit is full it is skipped and not counted. A policy keeps the latencies of one endpoint, so
+ * give each client its own.
+ */
+public final class HedgePolicy {
+
+  /** Latencies needed before the percentile replaces {@code maxDelayMillis}. */
+  static final int MIN_SAMPLES = 20;
+
+  /** Latencies recorded between recomputations of the delay. */
+  private static final int RECOMPUTE_INTERVAL = 16;
+
+  private final double percentile;
+  private final long minDelayNanos;
+  private final long maxDelayNanos;
+
+  /** Guarded by this: latencies of the last successful requests, oldest overwritten first. */
+  private final long[] latencies;
+  private int position;
+  private int count;
+  private int sinceRecompute;
+
+  private volatile long delayNanos;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong hedges = new AtomicLong();
+  private final AtomicLong hedgeWins = new AtomicLong();
+
+  private HedgePolicy(final Builder builder) {
+    this.percentile = builder.percentile;
+    this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(builder.minDelayMillis);
+    this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(builder.maxDelayMillis);
+    this.latencies = new long[builder.windowSize];
+    this.delayNanos = maxDelayNanos;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /** @return the number of requests that could be hedged */
+  public long getRequests() {
+    return requests.get();
+  }
+
+  /** @return the number of hedge requests sent */
+  public long getHedges() {
+    return hedges.get();
+  }
+
+  /** @return the number of hedge requests that completed first */
+  public long getHedgeWins() {
+    return hedgeWins.get();
+  }
+
+  /** @return the share of requests that were hedged, 0 before any request */
+  public double getHedgeRate() {
+    final long total = requests.get();
+    return total == 0 ? 0 : (double) hedges.get() / total;
+  }
+
+  /** @return how long a request currently waits before it is hedged */
+  public long getDelayMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(delayNanos);
+  }
+
+  long delayNanos() {
+    return delayNanos;
+  }
+
+  void onRequest() {
+    requests.incrementAndGet();
+  }
+
+  void onHedge() {
+    hedges.incrementAndGet();
+  }
+
+  void onHedgeWin() {
+    hedgeWins.incrementAndGet();
+  }
+
+  /** Records the latency of a successful request, recomputing the delay every few samples. */
+  synchronized void recordLatency(final long nanos) {
+    latencies[position] = nanos;
+    position = position + 1 == latencies.length ? 0 : position + 1;
+    if (count < latencies.length) {
+      count++;
+    }
+    if (count >= MIN_SAMPLES && ++sinceRecompute >= RECOMPUTE_INTERVAL) {
+      sinceRecompute = 0;
+      final long[] sorted = Arrays.copyOf(latencies, count);
+      Arrays.sort(sorted);
+      final long observed = sorted[(int) Math.ceil(percentile * count) - 1];
+      delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, observed));
+    }
+  }
+
+  public static final class Builder {
+    private double percentile = 0.95;
+    private long minDelayMillis = 10;
+    private long maxDelayMillis = 1000;
+    private int windowSize = 256;
+
+    private Builder() {}
+
+    /** Latency percentile after which a request is hedged. Defaults to 0.95. */
+    public Builder setPercentile(final double percentile) {
+      this.percentile = percentile;
+      return this;
+    }
+
+    /** Shortest hedge delay. Defaults to 10ms. */
+    public Builder setMinDelayMillis(final long minDelayMillis) {
+      this.minDelayMillis = minDelayMillis;
+      return this;
+    }
+
+    /** Longest hedge delay, also used until enough latencies are known. Defaults to 1s. */
+    public Builder setMaxDelayMillis(final long maxDelayMillis) {
+      this.maxDelayMillis = maxDelayMillis;
+      return this;
+    }
+
+    /** Number of recent latencies the percentile is taken over. Defaults to 256. */
+    public Builder setWindowSize(final int windowSize) {
+      this.windowSize = windowSize;
+      return this;
+    }
+
+    public HedgePolicy build() {
+      if (!(percentile > 0 && percentile <= 1)) {
+        throw new IllegalArgumentException("percentile must be in (0, 1]");
+      }
+      if (minDelayMillis < 0 || maxDelayMillis < minDelayMillis) {
+        throw new IllegalArgumentException(
+            "minDelayMillis cannot be negative or greater than maxDelayMillis");
+      }
+      if (windowSize < MIN_SAMPLES) {
+        throw new IllegalArgumentException("windowSize must be at least " + MIN_SAMPLES);
+      }
+      return new HedgePolicy(this);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.arize;
+
+/**
+ * Bounds the requests an {@link ArizeClient} has in flight, by count and by body size. Logging
+ * calls return before their request completes, so without a bound a slow backend lets callers
+ * queue requests in the I/O reactor until the heap runs out. What a call over the bound does is
+ * chosen by its {@link Overflow}.
+ *
+ * <pre>
+ *   client.setInFlightLimit(
+ *       InFlightLimit.newBuilder()
+ *           .setMaxRequests(256)
+ *           .setMaxBytes(64 << 20)
+ *           .setOverflow(InFlightLimit.Overflow.REJECT)
+ *           .build());
+ * </pre>
+ *
+ * <p>A request larger than {@code maxBytes} on its own is admitted once nothing else is in
+ * flight. The overflow applies to the bulk requests of {@link RecordBatcher}s and {@link
+ * ModelSession}s too: with {@link Overflow#BLOCK} they push back on the threads adding records,
+ * otherwise the batch is counted as failed, and a session's {@code add} or {@code flush} that sent
+ * it throws under {@link Overflow#FAIL}. While {@link ArizeClient#shutdown} drains them they block
+ * regardless, but no longer than the shutdown deadline.
+ */
+public final class InFlightLimit {
+
+  /** What a call does when sending its request would exceed the limit. */
+  public enum Overflow {
+    /** Wait until enough requests in flight complete. */
+    BLOCK,
+    /** Throw an {@link InFlightLimitException}. */
+    FAIL,
+    /**
+     * Return a {@link Response} with {@link Response.ResponseCode#REJECTED} without sending.
+     */
+    REJECT
+  }
+
+  private final int maxRequests;
+  private final long maxBytes;
+  private final Overflow overflow;
+
+  private InFlightLimit(final Builder builder) {
+    this.maxRequests = builder.maxRequests;
+    this.maxBytes = builder.maxBytes;
+    this.overflow = builder.overflow;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public int getMaxRequests() {
+    return maxRequests;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public Overflow getOverflow() {
+    return overflow;
+  }
+
+  /** @return true if one more request of {@code bytes} would exceed the limit */
+  boolean exceededBy(final int requests, final long inFlightBytes, final long bytes) {
+    return requests > 0 && (requests >= maxRequests || inFlightBytes + bytes > maxBytes);
+  }
+
+  public static final class Builder {
+    private int maxRequests = Integer.MAX_VALUE;
+    private long maxBytes = Long.MAX_VALUE;
+    private Overflow overflow = Overflow.BLOCK;
+
+    private Builder() {}
+
+    /** Maximum requests in flight. Unbounded by default. */
+    public Builder setMaxRequests(final int maxRequests) {
+      this.maxRequests = maxRequests;
+      return this;
+    }
+
+    /** Maximum request body bytes in flight. Unbounded by default. */
+    public Builder setMaxBytes(final long maxBytes) {
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /** What a call over the limit does. Defaults to {@link Overflow#BLOCK}. */
+    public Builder setOverflow(final Overflow overflow) {
+      this.overflow = overflow;
+      return this;
+    }
+
+    public InFlightLimit build() {
+      if (maxRequests < 1) {
+        throw new IllegalArgumentException("maxRequests must be positive");
+      }
+      if (maxBytes < 1) {
+        throw new IllegalArgumentException("maxBytes must be positive");
+      }
+      if (overflow == null) {
+        throw new IllegalArgumentException("overflow cannot be null");
+      }
+      return new InFlightLimit(this);
+    }
+  }
+}
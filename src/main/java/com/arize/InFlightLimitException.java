@@ -0,0 +1,31 @@
+package com.arize;
+
+/**
+ * Thrown by a logging call that would exceed the client's {@link InFlightLimit} when its overflow
+ * is {@link InFlightLimit.Overflow#FAIL}, or that was interrupted while blocked on the limit. The
+ * request was not sent.
+ */
+public class InFlightLimitException extends IllegalStateException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int inFlightRequests;
+  private final long inFlightBytes;
+
+  InFlightLimitException(
+      final String message, final int inFlightRequests, final long inFlightBytes) {
+    super(message + ": " + inFlightRequests + " requests, " + inFlightBytes + " bytes in flight");
+    this.inFlightRequests = inFlightRequests;
+    this.inFlightBytes = inFlightBytes;
+  }
+
+  /** @return the number of requests in flight when the call was refused */
+  public int getInFlightRequests() {
+    return inFlightRequests;
+  }
+
+  /** @return the request body bytes in flight when the call was refused */
+  public long getInFlightBytes() {
+    return inFlightBytes;
+  }
+}
@@ -0,0 +1,79 @@
+package com.arize;
+
+import com.arize.protocol.Public.Actual;
+import com.arize.protocol.Public.Prediction;
+
+import java.util.List;
+
+/**
+ * The prediction or actual labels of a bulk batch, one per row. Boxed labels are encoded through
+ * the {@link LabelKind} inferred for the whole column; primitive numeric labels are encoded
+ * directly without boxing.
+ */
+abstract class LabelColumn {
+
+  /** @return the kind shared by every label, or null if the column mixes kinds */
+  abstract LabelKind kind();
+
+  abstract void encodePrediction(Prediction.Builder builder, int row);
+
+  abstract void encodeActual(Actual.Builder builder, int row);
+
+  /** @return a column over boxed labels, or null if {@code labels} is null */
+  static LabelColumn of(final List<?> labels) {
+    return labels != null ? new Boxed(labels) : null;
+  }
+
+  /** @return a column over numeric labels, or null if {@code labels} is null */
+  static LabelColumn of(final double[] labels) {
+    return labels != null ? new Numeric(labels) : null;
+  }
+
+  private static final class Boxed extends LabelColumn {
+    private final List<?> labels;
+    private final LabelKind kind;
+
+    Boxed(final List<?> labels) {
+      this.labels = labels;
+      this.kind = LabelKind.infer(labels);
+    }
+
+    @Override
+    LabelKind kind() {
+      return kind;
+    }
+
+    @Override
+    void encodePrediction(final Prediction.Builder builder, final int row) {
+      RecordUtil.putPredictionLabel(builder, kind, labels.get(row));
+    }
+
+    @Override
+    void encodeActual(final Actual.Builder builder, final int row) {
+      RecordUtil.putActualLabel(builder, kind, labels.get(row));
+    }
+  }
+
+  private static final class Numeric extends LabelColumn {
+    private final double[] labels;
+
+    Numeric(final double[] labels) {
+      this.labels = labels;
+    }
+
+    @Override
+    LabelKind kind() {
+      return LabelKind.NUMERIC;
+    }
+
+    @Override
+    void encodePrediction(final Prediction.Builder builder, final int row) {
+      builder.setLabel(RecordUtil.numericLabel(labels[row]));
+    }
+
+    @Override
+    void encodeActual(final Actual.Builder builder, final int row) {
+      builder.setLabel(RecordUtil.numericLabel(labels[row]));
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package com.arize;
+
+import com.arize.protocol.Public.Actual;
+import com.arize.protocol.Public.ActualLabel;
+import com.arize.protocol.Public.Prediction;
+import com.arize.protocol.Public.PredictionLabel;
+
+import java.util.List;
+
+/**
+ * The kind of a label, inferred once per batch so every row can be encoded without dispatching on
+ * the label's type again. Integer and floating point labels are all {@link #NUMERIC}.
+ */
+enum LabelKind {
+  BINARY {
+    @Override
+    boolean accepts(final Object label) {
+      return label instanceof Boolean;
+    }
+
+    @Override
+    void encodePrediction(final Prediction.Builder builder, final Object label) {
+      builder.setLabel(RecordUtil.binaryLabel((Boolean) label));
+    }
+
+    @Override
+    void encodeActual(final Actual.Builder builder, final Object label) {
+      builder.setLabel(RecordUtil.binaryLabel((Boolean) label));
+    }
+  },
+
+  NUMERIC {
+    @Override
+    boolean accepts(final Object label) {
+      return label instanceof Double
+          || label instanceof Integer
+          || label instanceof Long
+          || label instanceof Float
+          || label instanceof Short;
+    }
+
+    @Override
+    void encodePrediction(final Prediction.Builder builder, final Object label) {
+      builder.setLabel(RecordUtil.numericLabel((Number) label));
+    }
+
+    @Override
+    void encodeActual(final Actual.Builder builder, final Object label) {
+      builder.setLabel(RecordUtil.numericLabel((Number) label));
+    }
+  },
+
+  CATEGORICAL {
+    @Override
+    boolean accepts(final Object label) {
+      return label instanceof String;
+    }
+
+    @Override
+    void encodePrediction(final Prediction.Builder builder, final Object label) {
+      builder.setLabel(RecordUtil.categoricalLabel((String) label));
+    }
+
+    @Override
+    void encodeActual(final Actual.Builder builder, final Object label) {
+      builder.setLabel(RecordUtil.categoricalLabel((String) label));
+    }
+  },
+
+  SCORE_CATEGORICAL {
+    @Override
+    boolean accepts(final Object label) {
+      return label instanceof ArizeClient.ScoredCategorical;
+    }
+
+    @Override
+    void encodePrediction(final Prediction.Builder builder, final Object label) {
+      builder.setLabel(RecordUtil.scoreCategoricalLabel((ArizeClient.ScoredCategorical) label));
+    }
+
+    @Override
+    void encodeActual(final Actual.Builder builder, final Object label) {
+      builder.setLabel(RecordUtil.scoreCategoricalLabel((ArizeClient.ScoredCategorical) label));
+    }
+  },
+
+  RANKING {
+    @Override
+    boolean accepts(final Object label) {
+      return label != null && label.getClass() == ArizeClient.Ranking.class;
+    }
+
+    @Override
+    void encodePrediction(final Prediction.Builder builder, final Object label) {
+      builder.setPredictionLabel(RecordUtil.convertPredictionLabel(label));
+    }
+
+    @Override
+    void encodeActual(final Actual.Builder builder, final Object label) {
+      builder.setActualLabel(RecordUtil.convertActualLabel(label));
+    }
+  },
+
+  OBJECT_DETECTION {
+    @Override
+    boolean accepts(final Object label) {
+      return label instanceof ObjectDetection;
+    }
+
+    @Override
+    void encodePrediction(final Prediction.Builder builder, final Object label) {
+      builder.setPredictionLabel(
+          PredictionLabel.newBuilder().setObjectDetection(((ObjectDetection) label).toProto()));
+    }
+
+    @Override
+    void encodeActual(final Actual.Builder builder, final Object label) {
+      builder.setActualLabel(
+          ActualLabel.newBuilder().setObjectDetection(((ObjectDetection) label).toProto()));
+    }
+  };
+
+  private static final LabelKind[] KINDS = values();
+
+  abstract boolean accepts(Object label);
+
+  /** Sets the label of a prediction; {@code label} must be {@linkplain #accepts accepted}. */
+  abstract void encodePrediction(Prediction.Builder builder, Object label);
+
+  /** Sets the label of an actual; {@code label} must be {@linkplain #accepts accepted}. */
+  abstract void encodeActual(Actual.Builder builder, Object label);
+
+  /** @return the kind of a single label, or null if it is null or of an unsupported type */
+  static LabelKind of(final Object label) {
+    for (LabelKind kind : KINDS) {
+      if (kind.accepts(label)) {
+        return kind;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Infers the kind shared by every label of a batch. Each label costs one type check against the
+   * kind of the first.
+   *
+   * @return the common kind, or null if the list is null or empty, holds a null or unsupported
+   *     label, or mixes kinds
+   */
+  static LabelKind infer(final List<?> labels) {
+    if (labels == null || labels.isEmpty()) {
+      return null;
+    }
+    final LabelKind kind = of(labels.get(0));
+    if (kind == null) {
+      return null;
+    }
+    for (int i = 1, n = labels.size(); i < n; i++) {
+      if (!kind.accepts(labels.get(i))) {
+        return null;
+      }
+    }
+    return kind;
+  }
+}
@@ -0,0 +1,136 @@
+package com.arize;
+
+import com.arize.protocol.Public;
+import com.google.protobuf.BoolValue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The generative LLM configuration of a prediction: the model called, its invocation parameters
+ * and the prompt template. These repeat for every call an inference gateway makes, so they are
+ * converted once when built and every record logged with the same instance shares one immutable
+ * message. Equal configurations built separately are interned to a single instance, so building
+ * one per call still leaves batches referring to one copy.
+ *
+ * <pre>
+ *   LlmFields gpt =
+ *       LlmFields.newBuilder()
+ *           .setModelName("gpt-4")
+ *           .setParams(params)
+ *           .setPromptTemplate("Answer the question: {{question}}")
+ *           .setPromptTemplateName("qa-v2")
+ *           .build();
+ *   event.setLlmFields(gpt);
+ * </pre>
+ */
+public final class LlmFields {
+
+  static final int INTERN_CAPACITY = 1024;
+
+  /** Held here rather than by the client so only LLM logging loads the wrapper types. */
+  static final BoolValue GENERATIVE_LLM_RECORD = BoolValue.of(true);
+
+  private static final ConcurrentHashMap<Public.LLMFields, LlmFields> INTERNED =
+      new ConcurrentHashMap<>();
+
+  private final Public.LLMFields message;
+
+  private LlmFields(final Public.LLMFields message) {
+    this.message = message;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  public String getModelName() {
+    return message.getLlmModelName();
+  }
+
+  public String getPromptTemplate() {
+    return message.getPromptTemplate();
+  }
+
+  public String getPromptTemplateName() {
+    return message.getPromptTemplateName();
+  }
+
+  Public.LLMFields message() {
+    return message;
+  }
+
+  /**
+   * @return the interned instance for {@code message}; once the intern table is full, new
+   *     configurations are returned unshared instead of growing it
+   */
+  private static LlmFields intern(final Public.LLMFields message) {
+    final LlmFields existing = INTERNED.get(message);
+    if (existing != null) {
+      return existing;
+    }
+    final LlmFields fields = new LlmFields(message);
+    if (INTERNED.size() >= INTERN_CAPACITY) {
+      return fields;
+    }
+    final LlmFields raced = INTERNED.putIfAbsent(message, fields);
+    return raced == null ? fields : raced;
+  }
+
+  public static final class Builder {
+    private final Public.LLMFields.Builder builder = Public.LLMFields.newBuilder();
+
+    private Builder() {}
+
+    public Builder setModelName(final String modelName) {
+      if (modelName == null) {
+        builder.clearLlmModelName();
+      } else {
+        builder.setLlmModelName(modelName);
+      }
+      return this;
+    }
+
+    /**
+     * Invocation parameters such as temperature or max tokens. Values follow the same rules as
+     * feature values of {@link ArizeAPI#log}; null values are left out.
+     *
+     * @throws IllegalArgumentException if a value is of an unsupported type
+     */
+    public Builder setParams(final Map<String, ?> params) {
+      builder.clearLlmParams();
+      if (params != null) {
+        for (Map.Entry<String, ?> param : params.entrySet()) {
+          if (param.getValue() != null) {
+            builder.putLlmParams(
+                param.getKey(), RecordUtil.convertValue(param.getKey(), param.getValue()));
+          }
+        }
+      }
+      return this;
+    }
+
+    public Builder setPromptTemplate(final String promptTemplate) {
+      if (promptTemplate == null) {
+        builder.clearPromptTemplate();
+      } else {
+        builder.setPromptTemplate(promptTemplate);
+      }
+      return this;
+    }
+
+    /** Identifier of the prompt template, distinguishing templates from one another. */
+    public Builder setPromptTemplateName(final String promptTemplateName) {
+      if (promptTemplateName == null) {
+        builder.clearPromptTemplateName();
+      } else {
+        builder.setPromptTemplateName(promptTemplateName);
+      }
+      return this;
+    }
+
+    public LlmFields build() {
+      return intern(builder.build());
+    }
+  }
+}
@@ -0,0 +1,504 @@
+package com.arize;
+
+import com.arize.protocol.Public.BulkRecord;
+import com.arize.protocol.Public.Record;
+import com.arize.types.Embedding;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logging handle bound to one model, version and environment. Everything constant across the
+ * session is prepared once: the bulk envelope carrying model id, version and space key is rendered
+ * to JSON when the session is built, and the environment is a single shared message. Records are
+ * serialized into the session's own buffer as they are added and sent to the bulk endpoint once
+ * {@code maxBatchSize} have accumulated, on {@link #flush()} and on {@link #close()}.
+ *
+ * <pre>
+ *   try (ModelSession session =
+ *       ModelSession.newBuilder(client, "modelId").setModelVersion("v1").build()) {
+ *     session.add("predictionId", features, null, tags, label, null, null, 0);
+ *   }
+ * </pre>
+ *
+ * <p>Sessions register with their client, so {@link ArizeClient#shutdown} sends what they hold.
+ * Sessions are thread-safe, but records are serialized while holding the session's lock, so
+ * threads logging heavily for the same model are better served by a session each.
+ */
+public class ModelSession implements Closeable {
+
+  /** Environment recorded on every record of a session. */
+  public enum Environment {
+    PRODUCTION,
+    TRAINING,
+    VALIDATION
+  }
+
+  private final ArizeClient client;
+  private final String modelId;
+  private final String modelVersion;
+  private final Record.EnvironmentParams environment;
+
+  /** Whether records go through the client's circuit breaker, sampler and deduplicator. */
+  private final boolean screened;
+  private final int maxBatchSize;
+
+  /** JSON of the bulk envelope up to and including the opening bracket of its records. */
+  private final String envelope;
+
+  /** Guarded by this. */
+  private final Record.Builder recordBuilder = Record.newBuilder();
+  private StringBuilder buffer;
+  private int buffered;
+
+  /** Deduplicator marks of the buffered records, null while none made any. Guarded by this. */
+  private ForgetOnFailure marks;
+  private volatile boolean closed;
+
+  private final AtomicLong recordsDropped = new AtomicLong();
+  private final AtomicLong recordsSent = new AtomicLong();
+  private final AtomicLong recordsFailed = new AtomicLong();
+  private final AtomicLong batchesSent = new AtomicLong();
+
+  /** Registered with the client, so a client shutdown sends the buffered records. */
+  private final Drainable drainable = this::drainUntil;
+
+  private ModelSession(final Builder builder) throws IOException {
+    this.client = builder.client;
+    this.modelId = builder.modelId;
+    this.modelVersion = builder.modelVersion;
+    this.environment = RecordUtil.environmentParams(builder.environment, builder.batchId);
+    this.screened = RecordUtil.isScreened(environment);
+    this.maxBatchSize = builder.maxBatchSize;
+    final BulkRecord.Builder bulk =
+        BulkRecord.newBuilder().setModelId(modelId).setSpaceKey(client.getSpaceKey());
+    if (modelVersion != null) {
+      bulk.setModelVersion(modelVersion);
+    }
+    final String json = RecordUtil.toJSON(bulk);
+    this.envelope = json.substring(0, json.length() - 1) + ",\"records\":[";
+    this.buffer = new StringBuilder(envelope);
+    client.register(drainable);
+  }
+
+  public static Builder newBuilder(final ArizeClient client, final String modelId) {
+    return new Builder(client, modelId);
+  }
+
+  public String getModelId() {
+    return modelId;
+  }
+
+  public String getModelVersion() {
+    return modelVersion;
+  }
+
+  /**
+   * Adds a record to the session's batch. Arguments and validation are the same as {@link
+   * ArizeAPI#log} without the model id and version, which come from the session.
+   *
+   * @throws IOException if the record cannot be serialized
+   * @throws IllegalArgumentException in case data type for features or label are not supported.
+   * @throws IllegalStateException if the session has been closed
+   */
+  public <T> void add(
+      final String predictionId,
+      final Map<String, ?> features,
+      final Map<String, Embedding> embeddingFeatures,
+      final Map<String, ?> tags,
+      final T predictionLabel,
+      final T actualLabel,
+      final Map<String, Double> shapValues,
+      final long predictionTimestamp)
+      throws IOException, IllegalArgumentException {
+    checkOpen();
+    final int parts = Deduplicator.parts(predictionLabel, actualLabel, shapValues);
+    if (screen(predictionId, parts)) {
+      return;
+    }
+    final Batch batch;
+    synchronized (this) {
+      checkOpen();
+      recordBuilder.clear();
+      client.buildRecord(
+          recordBuilder,
+          modelId,
+          modelVersion,
+          predictionId,
+          features,
+          embeddingFeatures,
+          tags,
+          predictionLabel,
+          actualLabel,
+          shapValues,
+          predictionTimestamp);
+      batch = appendScreened(predictionId, parts);
+    }
+    send(batch);
+  }
+
+  /**
+   * Adds a record of a regression model to the session's batch. Same as {@link
+   * ArizeClient#logNumeric} without the model id and version, which come from the session.
+   *
+   * @throws IOException if the record cannot be serialized
+   * @throws IllegalArgumentException in case data type for features or tags are not supported.
+   * @throws IllegalStateException if the session has been closed
+   */
+  public void addNumeric(
+      final String predictionId,
+      final Map<String, ?> features,
+      final Map<String, Embedding> embeddingFeatures,
+      final Map<String, ?> tags,
+      final double predictionLabel,
+      final double actualLabel,
+      final Map<String, Double> shapValues,
+      final long predictionTimestamp)
+      throws IOException, IllegalArgumentException {
+    checkOpen();
+    final int parts = Deduplicator.numericParts(predictionLabel, actualLabel, shapValues);
+    if (screen(predictionId, parts)) {
+      return;
+    }
+    final Batch batch;
+    synchronized (this) {
+      checkOpen();
+      recordBuilder.clear();
+      client.buildNumericRecord(
+          recordBuilder,
+          modelId,
+          modelVersion,
+          predictionId,
+          features,
+          embeddingFeatures,
+          tags,
+          predictionLabel,
+          actualLabel,
+          shapValues,
+          predictionTimestamp);
+      batch = appendScreened(predictionId, parts);
+    }
+    send(batch);
+  }
+
+  /**
+   * Adds a record described by a reusable event to the session's batch. The event's own model id
+   * and version are ignored in favour of the session's. The event may be reused once this returns.
+   *
+   * @throws IOException if the record cannot be serialized
+   * @throws IllegalArgumentException if the prediction id is missing or the labels differ in kind
+   * @throws IllegalStateException if the session has been closed
+   */
+  public void add(final PredictionEvent event) throws IOException, IllegalArgumentException {
+    if (event == null) {
+      throw new IllegalArgumentException("event cannot be null");
+    }
+    checkOpen();
+    if (screen(event.getPredictionId(), event.parts())) {
+      return;
+    }
+    final Batch batch;
+    synchronized (this) {
+      checkOpen();
+      recordBuilder.clear();
+      client.buildRecord(recordBuilder, modelId, modelVersion, event);
+      batch = appendScreened(event.getPredictionId(), event.parts());
+    }
+    send(batch);
+  }
+
+  /**
+   * Sends the records added since the last batch.
+   *
+   * @return the response of the bulk request, or null if there was nothing to send
+   */
+  public Response flush() {
+    final Batch batch;
+    synchronized (this) {
+      batch = drain();
+    }
+    return send(batch);
+  }
+
+  /** @return the number of records waiting to be sent */
+  public synchronized int size() {
+    return buffered;
+  }
+
+  /**
+   * @return the number of records dropped by the client's circuit breaker, sampler or deduplicator
+   */
+  public long getRecordsDropped() {
+    return recordsDropped.get();
+  }
+
+  /** @return the number of records acknowledged by the bulk endpoint */
+  public long getRecordsSent() {
+    return recordsSent.get();
+  }
+
+  /** @return the number of records whose bulk request failed */
+  public long getRecordsFailed() {
+    return recordsFailed.get();
+  }
+
+  /** @return the number of bulk requests issued */
+  public long getBatchesSent() {
+    return batchesSent.get();
+  }
+
+  /** Sends any remaining records and stops accepting new ones. */
+  @Override
+  public void close() {
+    send(closeAndDrain());
+  }
+
+  /**
+   * Sends any remaining records like {@link #close()}, for a client shutdown. See {@link
+   * Drainable#drainUntil}; the client bounds how long the batch may wait for its in-flight limit.
+   *
+   * @return the number of records in a batch the client did not accept
+   */
+  private long drainUntil(final long deadlineNanos) {
+    final Batch batch = closeAndDrain();
+    if (batch == null) {
+      return 0;
+    }
+    try {
+      final Response response = send(batch);
+      return response == Response.REJECTED || response == Response.CIRCUIT_OPEN ? batch.count : 0;
+    } catch (RuntimeException e) {
+      return batch.count;
+    }
+  }
+
+  /** @return the records buffered when the session closed, or null if none or already closed */
+  private Batch closeAndDrain() {
+    final Batch batch;
+    synchronized (this) {
+      if (closed) {
+        return null;
+      }
+      closed = true;
+      batch = drain();
+    }
+    client.unregister(drainable);
+    return batch;
+  }
+
+  private boolean screen(final String predictionId, final int parts) {
+    if (screened && client.screen(modelId, predictionId, parts) != null) {
+      recordsDropped.incrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("session is closed");
+    }
+  }
+
+  /**
+   * Remembers the built record with the client's deduplicator, then appends it. Must hold the
+   * lock.
+   *
+   * @return a batch to send if the buffer is now full, otherwise null
+   */
+  private Batch appendScreened(final String predictionId, final int parts) throws IOException {
+    final int marked = screened ? client.markSent(modelId, predictionId, parts) : 0;
+    if (marked < 0) {
+      // sent by another call since it was screened
+      recordsDropped.incrementAndGet();
+      return null;
+    }
+    try {
+      append();
+    } catch (IOException | RuntimeException e) {
+      client.forgetSent(modelId, predictionId, marked);
+      throw e;
+    }
+    if (marked > 0) {
+      if (marks == null) {
+        marks = new ForgetOnFailure(client, modelId);
+      }
+      marks.add(predictionId, marked);
+    }
+    return ++buffered >= maxBatchSize ? drain() : null;
+  }
+
+  /** Serializes the record builder into the buffer. Must hold the lock. */
+  private void append() throws IOException {
+    // the envelope carries the space key, model id and version for every record
+    recordBuilder.clearSpaceKey().clearModelId();
+    if (recordBuilder.hasPrediction()) {
+      recordBuilder.getPredictionBuilder().clearModelVersion();
+    }
+    if (recordBuilder.hasFeatureImportances()) {
+      recordBuilder.getFeatureImportancesBuilder().clearModelVersion();
+    }
+    if (environment != null) {
+      recordBuilder.setEnvironmentParams(environment);
+    }
+    final int mark = buffer.length();
+    try {
+      if (buffered > 0) {
+        buffer.append(',');
+      }
+      RecordUtil.appendJSON(recordBuilder, buffer);
+    } catch (IOException | RuntimeException e) {
+      buffer.setLength(mark);
+      throw e;
+    }
+  }
+
+  /** Takes the buffered batch, if any. Must hold the lock. */
+  private Batch drain() {
+    if (buffered == 0) {
+      return null;
+    }
+    final Batch batch = new Batch(buffer.append("]}").toString(), buffered, marks);
+    buffer = new StringBuilder(batch.body.length()).append(envelope);
+    buffered = 0;
+    marks = null;
+    return batch;
+  }
+
+  private Response send(final Batch batch) {
+    if (batch == null) {
+      return null;
+    }
+    final Response response;
+    try {
+      response = client.sendBulk(batch.body, new BatchCallback(batch.count, batch.marks));
+    } catch (RuntimeException e) {
+      // refused by the client's in-flight limit, or the client is closed
+      recordsFailed.addAndGet(batch.count);
+      batch.forget();
+      throw e;
+    }
+    if (response != Response.REJECTED && response != Response.CIRCUIT_OPEN) {
+      batchesSent.incrementAndGet();
+    }
+    return response;
+  }
+
+  private static final class Batch {
+    final String body;
+    final int count;
+
+    /** Deduplicator marks of the batch's records, or null if they made none. */
+    final ForgetOnFailure marks;
+
+    Batch(final String body, final int count, final ForgetOnFailure marks) {
+      this.body = body;
+      this.count = count;
+      this.marks = marks;
+    }
+
+    void forget() {
+      if (marks != null) {
+        marks.forget();
+      }
+    }
+  }
+
+  private final class BatchCallback implements FutureCallback<HttpResponse> {
+    private final int count;
+    private final ForgetOnFailure marks;
+
+    BatchCallback(final int count, final ForgetOnFailure marks) {
+      this.count = count;
+      this.marks = marks;
+    }
+
+    @Override
+    public void completed(final HttpResponse response) {
+      if (response.getStatusLine().getStatusCode() == 200) {
+        recordsSent.addAndGet(count);
+      } else {
+        onFailure();
+      }
+    }
+
+    @Override
+    public void failed(final Exception ex) {
+      onFailure();
+    }
+
+    @Override
+    public void cancelled() {
+      onFailure();
+    }
+
+    private void onFailure() {
+      recordsFailed.addAndGet(count);
+      if (marks != null) {
+        marks.forget();
+      }
+    }
+  }
+
+  public static final class Builder {
+    private final ArizeClient client;
+    private final String modelId;
+    private String modelVersion;
+    private Environment environment;
+    private String batchId;
+    private int maxBatchSize = 1000;
+
+    private Builder(final ArizeClient client, final String modelId) {
+      if (client == null) {
+        throw new IllegalArgumentException("client cannot be null");
+      }
+      if (modelId == null || modelId.isEmpty()) {
+        throw new IllegalArgumentException("modelId cannot be null or empty");
+      }
+      this.client = client;
+      this.modelId = modelId;
+    }
+
+    public Builder setModelVersion(final String modelVersion) {
+      this.modelVersion = modelVersion;
+      return this;
+    }
+
+    /**
+     * Environment recorded on every record. By default none is recorded and the platform treats
+     * records as production data. Records of training and validation sessions are never sampled,
+     * deduplicated or diverted by the client's circuit breaker.
+     */
+    public Builder setEnvironment(final Environment environment) {
+      this.environment = environment;
+      return this;
+    }
+
+    /** Batch id of validation records, required for {@link Environment#VALIDATION}. */
+    public Builder setBatchId(final String batchId) {
+      this.batchId = batchId;
+      return this;
+    }
+
+    /** Maximum records per bulk request. Defaults to 1000. */
+    public Builder setMaxBatchSize(final int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /** @throws IOException if the session's envelope cannot be serialized */
+    public ModelSession build() throws IOException {
+      if (maxBatchSize < 1) {
+        throw new IllegalArgumentException("maxBatchSize must be positive");
+      }
+      if (environment == Environment.VALIDATION && (batchId == null || batchId.isEmpty())) {
+        throw new IllegalArgumentException("batchId cannot be null or empty");
+      }
+      return new ModelSession(this);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.arize;
+
+import com.arize.protocol.Public;
+import com.google.protobuf.DoubleValue;
+
+/**
+ * Object detection label: the bounding boxes found in, or annotated on, one image. Boxes are held
+ * in packed primitive arrays rather than one object per box, so an image with hundreds of boxes
+ * costs a handful of arrays and is encoded straight into its {@code BoundingBox} entries. Use it
+ * as a prediction or actual label with {@link ArizeAPI#log}, {@link ArizeAPI#bulkLog} or {@link
+ * PredictionEvent}.
+ *
+ * <p>Box {@code i} spans {@code coordinates[4 * i]} to {@code coordinates[4 * i + 3]}, in the
+ * order the model uses (typically top-left x, y and bottom-right x, y). Its category is {@code
+ * categoryNames[categories[i]]} and its score, if scores are given, {@code scores[i]}. Arrays are
+ * not copied and must not be modified while the label is being logged.
+ *
+ * <pre>
+ *   String[] names = {"cat", "dog"};
+ *   ObjectDetection boxes =
+ *       ObjectDetection.of(
+ *           new float[] {10, 20, 50, 80, 60, 10, 90, 40}, new int[] {0, 1}, names, scores);
+ * </pre>
+ */
+public final class ObjectDetection {
+
+  private final float[] floatCoordinates;
+  private final double[] doubleCoordinates;
+  private final int[] categories;
+  private final String[] categoryNames;
+  private final float[] floatScores;
+  private final double[] doubleScores;
+
+  private ObjectDetection(
+      final float[] floatCoordinates,
+      final double[] doubleCoordinates,
+      final int[] categories,
+      final String[] categoryNames,
+      final float[] floatScores,
+      final double[] doubleScores) {
+    this.floatCoordinates = floatCoordinates;
+    this.doubleCoordinates = doubleCoordinates;
+    this.categories = categories;
+    this.categoryNames = categoryNames;
+    this.floatScores = floatScores;
+    this.doubleScores = doubleScores;
+  }
+
+  /**
+   * @param coordinates four coordinates per box
+   * @param categories index into {@code categoryNames} per box
+   * @param categoryNames category names, shared by every label of a model
+   * @param scores confidence per box, or null for actual labels
+   * @throws IllegalArgumentException if the arrays do not describe the same number of boxes or a
+   *     category index is out of range
+   */
+  public static ObjectDetection of(
+      final double[] coordinates,
+      final int[] categories,
+      final String[] categoryNames,
+      final double[] scores)
+      throws IllegalArgumentException {
+    if (coordinates == null) {
+      throw new IllegalArgumentException("coordinates cannot be null");
+    }
+    validate(coordinates.length, categories, categoryNames, scores != null ? scores.length : -1);
+    return new ObjectDetection(null, coordinates, categories, categoryNames, null, scores);
+  }
+
+  /**
+   * Same as {@link #of(double[], int[], String[], double[])} with single precision coordinates and
+   * scores, as produced by most vision models. Each value is widened to the double the protocol
+   * carries.
+   */
+  public static ObjectDetection of(
+      final float[] coordinates,
+      final int[] categories,
+      final String[] categoryNames,
+      final float[] scores)
+      throws IllegalArgumentException {
+    if (coordinates == null) {
+      throw new IllegalArgumentException("coordinates cannot be null");
+    }
+    validate(coordinates.length, categories, categoryNames, scores != null ? scores.length : -1);
+    return new ObjectDetection(coordinates, null, categories, categoryNames, scores, null);
+  }
+
+  private static void validate(
+      final int coordinateCount,
+      final int[] categories,
+      final String[] categoryNames,
+      final int scoreCount) {
+    if (categories == null) {
+      throw new IllegalArgumentException("categories cannot be null");
+    }
+    if (categoryNames == null) {
+      throw new IllegalArgumentException("categoryNames cannot be null");
+    }
+    if (coordinateCount != 4 * categories.length) {
+      throw new IllegalArgumentException("coordinates.length must equal 4 * categories.length");
+    }
+    if (scoreCount >= 0 && scoreCount != categories.length) {
+      throw new IllegalArgumentException("scores.length must equal categories.length");
+    }
+    for (int category : categories) {
+      if (category < 0 || category >= categoryNames.length || categoryNames[category] == null) {
+        throw new IllegalArgumentException(
+            "category " + category + " is not an index of a categoryNames entry");
+      }
+    }
+  }
+
+  /** @return the number of boxes */
+  public int size() {
+    return categories.length;
+  }
+
+  public String getCategory(final int box) {
+    return categoryNames[categories[box]];
+  }
+
+  public double getCoordinate(final int box, final int index) {
+    final int offset = 4 * box + index;
+    return floatCoordinates != null ? floatCoordinates[offset] : doubleCoordinates[offset];
+  }
+
+  public boolean hasScores() {
+    return floatScores != null || doubleScores != null;
+  }
+
+  public double getScore(final int box) {
+    return floatScores != null ? floatScores[box] : doubleScores[box];
+  }
+
+  /** Encodes every box, reusing one box builder across them. */
+  Public.ObjectDetection toProto() {
+    final Public.ObjectDetection.Builder detection = Public.ObjectDetection.newBuilder();
+    final Public.ObjectDetection.BoundingBox.Builder box =
+        Public.ObjectDetection.BoundingBox.newBuilder();
+    final boolean scored = hasScores();
+    for (int i = 0; i < categories.length; i++) {
+      box.clear();
+      for (int offset = 4 * i; offset < 4 * i + 4; offset++) {
+        box.addCoordinates(
+            floatCoordinates != null ? floatCoordinates[offset] : doubleCoordinates[offset]);
+      }
+      box.setCategory(categoryNames[categories[i]]);
+      if (scored) {
+        box.setScore(DoubleValue.of(getScore(i)));
+      }
+      detection.addBoundingBoxes(box);
+    }
+    return detection.build();
+  }
+}
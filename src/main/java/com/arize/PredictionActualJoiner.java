@@ -0,0 +1,442 @@
+package com.arize;
+
+import com.arize.protocol.Public.PredictionAndActual;
+import com.arize.protocol.Public.Record;
+import com.arize.types.Embedding;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side join of predictions with actuals that arrive shortly afterwards. Prediction-only
+ * records are held for a short window keyed by model and prediction id. If the actual for the same
+ * id is logged within the window, a single record carrying a {@link PredictionAndActual} is sent
+ * instead of two. Predictions whose window expires, or that are evicted because the buffer is full,
+ * are sent on their own, so nothing is lost by joining.
+ *
+ * <p>Records are sent through the client's single record endpoint, or through a {@link
+ * RecordBatcher} when one is configured. Joiners register with their client, so {@link
+ * ArizeClient#shutdown} sends the predictions they hold.
+ *
+ * <pre>
+ *   PredictionActualJoiner joiner =
+ *       PredictionActualJoiner.newBuilder(client).setWindowMillis(5000).build();
+ *   joiner.log("modelId", "v1", "id", features, null, tags, prediction, null, null, 0);
+ *   joiner.log("modelId", "v1", "id", null, null, null, null, actual, null, 0);
+ * </pre>
+ */
+public class PredictionActualJoiner implements Closeable {
+
+  private final ArizeClient client;
+  private final RecordBatcher batcher;
+  private final long windowNanos;
+  private final int maxEntries;
+  private final long maxBytes;
+  private final ScheduledExecutorService sweeper;
+
+  /** Held predictions in arrival order, which is also expiry order. Guarded by itself. */
+  private final LinkedHashMap<String, Held> held = new LinkedHashMap<>();
+
+  private long heldBytes;
+  private volatile boolean closed;
+
+  private final AtomicLong joined = new AtomicLong();
+  private final AtomicLong expired = new AtomicLong();
+  private final AtomicLong evicted = new AtomicLong();
+  private final AtomicLong sendFailures = new AtomicLong();
+  private final FutureCallback<HttpResponse> sendCallback = new SendCallback(null);
+
+  /** Registered with the client ahead of its batchers, so a client shutdown sends what is held. */
+  private final Drainable drainable =
+      new Drainable() {
+        @Override
+        public long drainUntil(final long deadlineNanos) {
+          return PredictionActualJoiner.this.drainUntil();
+        }
+
+        @Override
+        public boolean isUpstream() {
+          return true;
+        }
+      };
+
+  private PredictionActualJoiner(final Builder builder) {
+    this.client = builder.client;
+    this.batcher = builder.batcher;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(builder.windowMillis);
+    this.maxEntries = builder.maxEntries;
+    this.maxBytes = builder.maxBytes;
+    client.register(drainable);
+    this.sweeper =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "arize-join-sweeper");
+              thread.setDaemon(true);
+              return thread;
+            });
+    final long period = Math.max(1, builder.windowMillis / 4);
+    this.sweeper.scheduleWithFixedDelay(this::expire, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  public static Builder newBuilder(final ArizeClient client) {
+    return new Builder(client);
+  }
+
+  /**
+   * Logs a record, joining predictions with later actuals where possible. Arguments and validation
+   * are the same as {@link ArizeAPI#log}.
+   *
+   * @throws IOException if a record sent immediately cannot be serialized
+   * @throws IllegalArgumentException in case data type for features or label are not supported.
+   * @throws IllegalStateException if the joiner has been closed
+   */
+  public <T> void log(
+      final String modelId,
+      final String modelVersion,
+      final String predictionId,
+      final Map<String, ?> features,
+      final Map<String, Embedding> embeddingFeatures,
+      final Map<String, ?> tags,
+      final T predictionLabel,
+      final T actualLabel,
+      final Map<String, Double> shapValues,
+      final long predictionTimestamp)
+      throws IOException, IllegalArgumentException {
+    if (closed) {
+      throw new IllegalStateException("joiner is closed");
+    }
+    final int parts = Deduplicator.parts(predictionLabel, actualLabel, shapValues);
+    if (client.screen(modelId, predictionId, parts) != null) {
+      return;
+    }
+    final Record.Builder builder = Record.newBuilder();
+    client.buildRecord(
+        builder,
+        modelId,
+        modelVersion,
+        predictionId,
+        features,
+        embeddingFeatures,
+        tags,
+        predictionLabel,
+        actualLabel,
+        shapValues,
+        predictionTimestamp);
+    final int marked = client.markSent(modelId, predictionId, parts);
+    if (marked < 0) {
+      // sent by another call since it was screened
+      return;
+    }
+    final String key = modelId + '\u0000' + predictionId;
+    final List<Held> ready = new ArrayList<>(2);
+    if (builder.hasPrediction() && !builder.hasActual() && !builder.hasFeatureImportances()) {
+      final Record prediction = builder.build();
+      final int size = prediction.getSerializedSize();
+      synchronized (held) {
+        final Held previous = held.remove(key);
+        if (previous != null) {
+          heldBytes -= previous.size;
+          ready.add(previous);
+        }
+        held.put(key, new Held(prediction, size, System.nanoTime() + windowNanos, marked));
+        heldBytes += size;
+        evictOverflow(ready);
+      }
+    } else if (builder.hasActual() && !builder.hasPrediction()) {
+      final Held prediction;
+      synchronized (held) {
+        prediction = held.remove(key);
+        if (prediction != null) {
+          heldBytes -= prediction.size;
+        }
+      }
+      int joinedMarks = marked;
+      if (prediction != null) {
+        builder.setPredictionAndActual(
+            PredictionAndActual.newBuilder()
+                .setPrediction(prediction.record.getPrediction())
+                .setActual(builder.getActual()));
+        builder.clearActual();
+        joinedMarks |= prediction.marked;
+        joined.incrementAndGet();
+      }
+      ready.add(new Held(builder.build(), 0, 0, joinedMarks));
+    } else {
+      ready.add(new Held(builder.build(), 0, 0, marked));
+    }
+    for (int index = 0; index < ready.size(); index++) {
+      try {
+        emit(ready.get(index), true);
+      } catch (IOException | RuntimeException e) {
+        // the others were logged by earlier calls and are still sent
+        for (Held rest : ready.subList(index + 1, ready.size())) {
+          emitQuietly(rest, true);
+        }
+        throw e;
+      }
+    }
+  }
+
+  /** @return the number of predictions currently held */
+  public int size() {
+    synchronized (held) {
+      return held.size();
+    }
+  }
+
+  /** @return the number of prediction/actual pairs sent as a single record */
+  public long getJoinedCount() {
+    return joined.get();
+  }
+
+  /** @return the number of predictions sent alone because their window expired */
+  public long getExpiredCount() {
+    return expired.get();
+  }
+
+  /** @return the number of predictions sent alone early because the buffer was full */
+  public long getEvictedCount() {
+    return evicted.get();
+  }
+
+  /**
+   * @return the number of records sent directly through the client that could not be sent or were
+   *     not accepted, counted when their request completes; records handed to a {@link
+   *     RecordBatcher} are counted by its {@link RecordBatcher#getRecordsFailed}
+   */
+  public long getSendFailureCount() {
+    return sendFailures.get();
+  }
+
+  /** Sends every held prediction on its own and stops the expiry sweeper. */
+  @Override
+  public void close() throws IOException {
+    for (Held entry : closeAndTake()) {
+      emitQuietly(entry, true);
+    }
+  }
+
+  /**
+   * Sends every held prediction like {@link #close()}, for a client shutdown. See {@link
+   * Drainable#drainUntil}; the client bounds how long each request may wait for its in-flight
+   * limit.
+   *
+   * @return the number of held predictions that were not sent
+   */
+  private long drainUntil() {
+    long dropped = 0;
+    for (Held entry : closeAndTake()) {
+      if (!emitQuietly(entry, false)) {
+        dropped++;
+      }
+    }
+    return dropped;
+  }
+
+  /** Stops the joiner and takes the held predictions. */
+  private List<Held> closeAndTake() {
+    closed = true;
+    sweeper.shutdownNow();
+    client.unregister(drainable);
+    final List<Held> ready;
+    synchronized (held) {
+      ready = new ArrayList<>(held.values());
+      held.clear();
+      heldBytes = 0;
+    }
+    return ready;
+  }
+
+  /** Must be called while holding the lock on {@link #held}. */
+  private void evictOverflow(final List<Held> ready) {
+    final Iterator<Held> it = held.values().iterator();
+    while ((held.size() > maxEntries || heldBytes > maxBytes) && it.hasNext()) {
+      final Held entry = it.next();
+      it.remove();
+      heldBytes -= entry.size;
+      ready.add(entry);
+      evicted.incrementAndGet();
+    }
+  }
+
+  private void expire() {
+    final long now = System.nanoTime();
+    final List<Held> ready = new ArrayList<>();
+    synchronized (held) {
+      final Iterator<Held> it = held.values().iterator();
+      while (it.hasNext()) {
+        final Held entry = it.next();
+        if (entry.expiresAtNanos - now > 0) {
+          break;
+        }
+        it.remove();
+        heldBytes -= entry.size;
+        ready.add(entry);
+      }
+    }
+    expired.addAndGet(ready.size());
+    for (Held entry : ready) {
+      emitQuietly(entry, true);
+    }
+  }
+
+  /**
+   * Sends a record, forgetting its deduplicator marks if it cannot be sent. A record whose request
+   * the circuit breaker refuses goes to the breaker's fallback.
+   *
+   * @param checked false while the client's shutdown drains the joiner, see {@link
+   *     ArizeClient#send(Record, FutureCallback, boolean)}
+   * @return false if the client refused the record's request
+   */
+  private boolean emit(final Held entry, final boolean checked) throws IOException {
+    final Record record = entry.record;
+    if (batcher != null) {
+      try {
+        batcher.submit(record, entry.marked);
+      } catch (RuntimeException e) {
+        client.forgetSent(record.getModelId(), record.getPredictionId(), entry.marked);
+        throw e;
+      }
+      return true;
+    }
+    final Response response;
+    if (entry.marked <= 0) {
+      response = client.send(record, sendCallback, checked);
+    } else {
+      final ForgetOnFailure marks = new ForgetOnFailure(client, record.getModelId());
+      marks.add(record.getPredictionId(), entry.marked);
+      try {
+        response = client.send(record, new SendCallback(marks), checked);
+      } catch (IOException | RuntimeException e) {
+        marks.forget();
+        throw e;
+      }
+    }
+    if (response == Response.CIRCUIT_OPEN) {
+      client.divert(record.getModelId(), Collections.singletonList(record));
+    }
+    return response != Response.REJECTED && response != Response.CIRCUIT_OPEN;
+  }
+
+  /** @return false if the record could not be sent, which is counted as a send failure */
+  private boolean emitQuietly(final Held entry, final boolean checked) {
+    try {
+      return emit(entry, checked);
+    } catch (IOException | RuntimeException e) {
+      sendFailures.incrementAndGet();
+      return false;
+    }
+  }
+
+  private final class SendCallback implements FutureCallback<HttpResponse> {
+    private final ForgetOnFailure marks;
+
+    SendCallback(final ForgetOnFailure marks) {
+      this.marks = marks;
+    }
+
+    @Override
+    public void completed(final HttpResponse response) {
+      if (response.getStatusLine().getStatusCode() != 200) {
+        onFailure();
+      }
+    }
+
+    @Override
+    public void failed(final Exception ex) {
+      onFailure();
+    }
+
+    @Override
+    public void cancelled() {
+      onFailure();
+    }
+
+    private void onFailure() {
+      sendFailures.incrementAndGet();
+      if (marks != null) {
+        marks.forget();
+      }
+    }
+  }
+
+  /**
+   * A prediction waiting for its actual, or a record ready to be sent, with the parts it marked
+   * with the client's deduplicator.
+   */
+  private static final class Held {
+    final Record record;
+    final int size;
+    final long expiresAtNanos;
+    final int marked;
+
+    Held(final Record record, final int size, final long expiresAtNanos, final int marked) {
+      this.record = record;
+      this.size = size;
+      this.expiresAtNanos = expiresAtNanos;
+      this.marked = marked;
+    }
+  }
+
+  public static final class Builder {
+    private final ArizeClient client;
+    private RecordBatcher batcher;
+    private long windowMillis = 10_000;
+    private int maxEntries = 100_000;
+    private long maxBytes = 64L * 1024 * 1024;
+
+    private Builder(final ArizeClient client) {
+      if (client == null) {
+        throw new IllegalArgumentException("client cannot be null");
+      }
+      this.client = client;
+    }
+
+    /** Send records through a batcher instead of one request per record. */
+    public Builder setBatcher(final RecordBatcher batcher) {
+      this.batcher = batcher;
+      return this;
+    }
+
+    /** How long a prediction waits for its actual. Defaults to 10 seconds. */
+    public Builder setWindowMillis(final long windowMillis) {
+      this.windowMillis = windowMillis;
+      return this;
+    }
+
+    /** Maximum number of held predictions. Defaults to 100,000. */
+    public Builder setMaxEntries(final int maxEntries) {
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /** Maximum serialized size of held predictions. Defaults to 64 MiB. */
+    public Builder setMaxBytes(final long maxBytes) {
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    public PredictionActualJoiner build() {
+      if (windowMillis <= 0) {
+        throw new IllegalArgumentException("windowMillis must be positive");
+      }
+      if (maxEntries < 1 || maxBytes < 1) {
+        throw new IllegalArgumentException("maxEntries and maxBytes must be positive");
+      }
+      return new PredictionActualJoiner(this);
+    }
+  }
+}
@@ -0,0 +1,471 @@
+package com.arize;
+
+import com.arize.protocol.Public;
+import com.arize.protocol.Public.Actual;
+import com.arize.protocol.Public.Prediction;
+import com.arize.protocol.Public.Value;
+import com.arize.types.Embedding;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A single prediction and/or actual to log, filled in through typed setters instead of the
+ * positional maps of {@link ArizeAPI#log}. Values are converted as they are set and the client
+ * writes them straight into the record, so no intermediate maps are built.
+ *
+ * <p>An event is meant to be reused: call {@link #clear()} and fill it in again for the next
+ * prediction. Logging copies everything out of the event before returning, so it may be cleared
+ * as soon as {@code log} returns. Instances are not thread-safe; keep one per thread.
+ *
+ * <pre>
+ *   PredictionEvent event = new PredictionEvent();
+ *   event.clear()
+ *       .setModelId("modelId")
+ *       .setPredictionId(id)
+ *       .setFeature("age", 42)
+ *       .setFeature("state", "CA")
+ *       .setEmbedding("image", vector)
+ *       .setTag("region", "us-west")
+ *       .setPredictionLabel(0.87);
+ *   client.log(event);
+ * </pre>
+ */
+public class PredictionEvent {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private String modelId;
+  private String modelVersion;
+  private String predictionId;
+  private long timestamp;
+
+  private LabelKind predictionKind;
+  private Object predictionLabel;
+  private double predictionNumeric;
+
+  private LabelKind actualKind;
+  private Object actualLabel;
+  private double actualNumeric;
+
+  private final Dimensions features = new Dimensions();
+  private final Dimensions tags = new Dimensions();
+
+  private String[] shapNames = new String[0];
+  private double[] shapValues = new double[0];
+  private int shapCount;
+
+  private LlmFields llmFields;
+  private String[] documentIds = new String[0];
+  private int documentCount;
+
+  /**
+   * Resets every field so the event can be filled in for another prediction. Internal arrays are
+   * kept for reuse.
+   *
+   * @return this event
+   */
+  public PredictionEvent clear() {
+    modelId = null;
+    modelVersion = null;
+    predictionId = null;
+    timestamp = 0;
+    predictionKind = null;
+    predictionLabel = null;
+    actualKind = null;
+    actualLabel = null;
+    features.clear();
+    tags.clear();
+    Arrays.fill(shapNames, 0, shapCount, null);
+    shapCount = 0;
+    llmFields = null;
+    Arrays.fill(documentIds, 0, documentCount, null);
+    documentCount = 0;
+    return this;
+  }
+
+  public PredictionEvent setModelId(final String modelId) {
+    this.modelId = modelId;
+    return this;
+  }
+
+  public PredictionEvent setModelVersion(final String modelVersion) {
+    this.modelVersion = modelVersion;
+    return this;
+  }
+
+  public PredictionEvent setPredictionId(final String predictionId) {
+    this.predictionId = predictionId;
+    return this;
+  }
+
+  /** @param timestamp unix epoch time in milliseconds, 0 to use the time of receipt */
+  public PredictionEvent setTimestamp(final long timestamp) {
+    this.timestamp = timestamp;
+    return this;
+  }
+
+  public PredictionEvent setFeature(final String name, final double value) {
+    features.put(name, Value.newBuilder().setDouble(value).build());
+    return this;
+  }
+
+  public PredictionEvent setFeature(final String name, final long value) {
+    features.put(name, RecordUtil.VALUE_CACHE.integer(value));
+    return this;
+  }
+
+  public PredictionEvent setFeature(final String name, final boolean value) {
+    features.put(name, RecordUtil.VALUE_CACHE.bool(value));
+    return this;
+  }
+
+  /** A null value leaves the feature out, as with {@link ArizeAPI#log}. */
+  public PredictionEvent setFeature(final String name, final String value) {
+    if (value != null) {
+      features.put(name, RecordUtil.VALUE_CACHE.string(value));
+    }
+    return this;
+  }
+
+  /** Sets a multivalue feature. A null value leaves the feature out. */
+  public PredictionEvent setFeature(final String name, final List<String> values) {
+    if (values != null) {
+      features.put(
+          name,
+          Value.newBuilder()
+              .setMultiValue(Public.MultiValue.newBuilder().addAllValues(values))
+              .build());
+    }
+    return this;
+  }
+
+  /** Sets an embedding feature from its vector. The vector is copied. */
+  public PredictionEvent setEmbedding(final String name, final float[] vector) {
+    final Public.Embedding.Builder embedding = Public.Embedding.newBuilder();
+    for (float element : vector) {
+      embedding.addVector(element);
+    }
+    features.put(name, Value.newBuilder().setEmbedding(embedding).build());
+    return this;
+  }
+
+  /** Sets an embedding feature from its vector. The vector is copied. */
+  public PredictionEvent setEmbedding(final String name, final double[] vector) {
+    final Public.Embedding.Builder embedding = Public.Embedding.newBuilder();
+    for (double element : vector) {
+      embedding.addVector(element);
+    }
+    features.put(name, Value.newBuilder().setEmbedding(embedding).build());
+    return this;
+  }
+
+  /**
+   * Sets an embedding feature from its vector and the text it embeds, such as the prompt or
+   * response of a generative model. The vector is copied.
+   */
+  public PredictionEvent setEmbedding(final String name, final float[] vector, final String text) {
+    final Public.Embedding.Builder embedding = Public.Embedding.newBuilder();
+    for (float element : vector) {
+      embedding.addVector(element);
+    }
+    if (text != null) {
+      embedding.setRawData(
+          Public.Embedding.RawData.newBuilder()
+              .setTokenArray(Public.Embedding.TokenArray.newBuilder().addTokens(text)));
+    }
+    features.put(name, Value.newBuilder().setEmbedding(embedding).build());
+    return this;
+  }
+
+  /** Sets an embedding feature with raw data or a link to data. A null value leaves it out. */
+  public PredictionEvent setEmbedding(final String name, final Embedding embedding) {
+    if (embedding != null) {
+      features.put(name, RecordUtil.convertValue(name, embedding));
+    }
+    return this;
+  }
+
+  public PredictionEvent setTag(final String name, final double value) {
+    tags.put(name, Value.newBuilder().setDouble(value).build());
+    return this;
+  }
+
+  public PredictionEvent setTag(final String name, final long value) {
+    tags.put(name, RecordUtil.VALUE_CACHE.integer(value));
+    return this;
+  }
+
+  public PredictionEvent setTag(final String name, final boolean value) {
+    tags.put(name, RecordUtil.VALUE_CACHE.bool(value));
+    return this;
+  }
+
+  /** A null value leaves the tag out, as with {@link ArizeAPI#log}. */
+  public PredictionEvent setTag(final String name, final String value) {
+    if (value != null) {
+      tags.put(name, RecordUtil.VALUE_CACHE.string(value));
+    }
+    return this;
+  }
+
+  /** Sets a feature to an already converted value. */
+  void putFeature(final String name, final Value value) {
+    features.put(name, value);
+  }
+
+  /** Sets a tag to an already converted value. */
+  void putTag(final String name, final Value value) {
+    tags.put(name, value);
+  }
+
+  public PredictionEvent setShapValue(final String name, final double value) {
+    if (name == null) {
+      throw new IllegalArgumentException("name cannot be null");
+    }
+    if (shapCount == shapNames.length) {
+      final int capacity = Math.max(INITIAL_CAPACITY, shapCount * 2);
+      shapNames = Arrays.copyOf(shapNames, capacity);
+      shapValues = Arrays.copyOf(shapValues, capacity);
+    }
+    shapNames[shapCount] = name;
+    shapValues[shapCount++] = value;
+    return this;
+  }
+
+  /**
+   * Marks the record as coming from a generative LLM and attaches the model, parameters and prompt
+   * template of the call. A prediction is logged even without a prediction label. Null clears it.
+   */
+  public PredictionEvent setLlmFields(final LlmFields llmFields) {
+    this.llmFields = llmFields;
+    return this;
+  }
+
+  /** Adds the id of a document retrieved to answer the prompt. Null ids are ignored. */
+  public PredictionEvent addRetrievedDocumentId(final String documentId) {
+    if (documentId == null) {
+      return this;
+    }
+    if (documentCount == documentIds.length) {
+      documentIds = Arrays.copyOf(documentIds, Math.max(INITIAL_CAPACITY, documentCount * 2));
+    }
+    documentIds[documentCount++] = documentId;
+    return this;
+  }
+
+  /** Sets a numeric prediction label. */
+  public PredictionEvent setPredictionLabel(final double label) {
+    predictionKind = LabelKind.NUMERIC;
+    predictionLabel = null;
+    predictionNumeric = label;
+    return this;
+  }
+
+  /** Sets a binary prediction label. */
+  public PredictionEvent setPredictionLabel(final boolean label) {
+    return setPredictionLabel(LabelKind.BINARY, label);
+  }
+
+  /** Sets a categorical prediction label, or clears the prediction label if null. */
+  public PredictionEvent setPredictionLabel(final String label) {
+    return setPredictionLabel(LabelKind.CATEGORICAL, label);
+  }
+
+  /** Sets a score categorical prediction label, or clears the prediction label if null. */
+  public PredictionEvent setPredictionLabel(final ArizeClient.ScoredCategorical label) {
+    return setPredictionLabel(LabelKind.SCORE_CATEGORICAL, label);
+  }
+
+  /** Sets a ranking prediction label, or clears the prediction label if null. */
+  public PredictionEvent setPredictionLabel(final ArizeClient.Ranking label) {
+    return setPredictionLabel(LabelKind.RANKING, label);
+  }
+
+  /** Sets an object detection prediction label, or clears the prediction label if null. */
+  public PredictionEvent setPredictionLabel(final ObjectDetection label) {
+    return setPredictionLabel(LabelKind.OBJECT_DETECTION, label);
+  }
+
+  /** Sets a numeric actual label. */
+  public PredictionEvent setActualLabel(final double label) {
+    actualKind = LabelKind.NUMERIC;
+    actualLabel = null;
+    actualNumeric = label;
+    return this;
+  }
+
+  /** Sets a binary actual label. */
+  public PredictionEvent setActualLabel(final boolean label) {
+    return setActualLabel(LabelKind.BINARY, label);
+  }
+
+  /** Sets a categorical actual label, or clears the actual label if null. */
+  public PredictionEvent setActualLabel(final String label) {
+    return setActualLabel(LabelKind.CATEGORICAL, label);
+  }
+
+  /** Sets a score categorical actual label, or clears the actual label if null. */
+  public PredictionEvent setActualLabel(final ArizeClient.ScoredCategorical label) {
+    return setActualLabel(LabelKind.SCORE_CATEGORICAL, label);
+  }
+
+  /** Sets a ranking actual label, or clears the actual label if null. */
+  public PredictionEvent setActualLabel(final ArizeClient.Ranking label) {
+    return setActualLabel(LabelKind.RANKING, label);
+  }
+
+  /** Sets an object detection actual label, or clears the actual label if null. */
+  public PredictionEvent setActualLabel(final ObjectDetection label) {
+    return setActualLabel(LabelKind.OBJECT_DETECTION, label);
+  }
+
+  private PredictionEvent setPredictionLabel(final LabelKind kind, final Object label) {
+    predictionKind = label != null ? kind : null;
+    predictionLabel = label;
+    return this;
+  }
+
+  private PredictionEvent setActualLabel(final LabelKind kind, final Object label) {
+    actualKind = label != null ? kind : null;
+    actualLabel = label;
+    return this;
+  }
+
+  public String getModelId() {
+    return modelId;
+  }
+
+  public String getModelVersion() {
+    return modelVersion;
+  }
+
+  public String getPredictionId() {
+    return predictionId;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public boolean hasPredictionLabel() {
+    return predictionKind != null;
+  }
+
+  public boolean hasActualLabel() {
+    return actualKind != null;
+  }
+
+  public LlmFields getLlmFields() {
+    return llmFields;
+  }
+
+  /** @return whether a prediction is logged, with a label or with LLM fields or documents */
+  boolean hasPrediction() {
+    return predictionKind != null || llmFields != null || documentCount > 0;
+  }
+
+  /** @return the parts this event carries, see {@link Deduplicator#parts} */
+  int parts() {
+    return (hasPrediction() ? Deduplicator.PREDICTION : 0)
+        | (actualKind != null ? Deduplicator.ACTUAL : 0)
+        | (shapCount > 0 ? Deduplicator.FEATURE_IMPORTANCES : 0);
+  }
+
+  /** @throws IllegalArgumentException if the prediction and actual labels differ in kind */
+  void validateLabels() {
+    if (predictionKind != null && actualKind != null && predictionKind != actualKind) {
+      throw new IllegalArgumentException(
+          "predictionLabel and actualLabel must be of the same type. predictionLabel: "
+              + predictionKind
+              + " actualLabel: "
+              + actualKind);
+    }
+  }
+
+  void encodePredictionLabel(final Prediction.Builder builder) {
+    if (predictionKind == null) {
+      return;
+    }
+    if (predictionKind == LabelKind.NUMERIC) {
+      builder.setLabel(RecordUtil.numericLabel(predictionNumeric));
+    } else {
+      predictionKind.encodePrediction(builder, predictionLabel);
+    }
+  }
+
+  void encodeActualLabel(final Actual.Builder builder) {
+    if (actualKind == LabelKind.NUMERIC) {
+      builder.setLabel(RecordUtil.numericLabel(actualNumeric));
+    } else {
+      actualKind.encodeActual(builder, actualLabel);
+    }
+  }
+
+  /** Sets the LLM fields and retrieved documents of the prediction, if any. */
+  void encodeLlm(final Prediction.Builder builder) {
+    if (llmFields != null) {
+      // shared immutable message, no copy
+      builder.setLlmFields(llmFields.message());
+    }
+    for (int i = 0; i < documentCount; i++) {
+      builder.addRetrievedDocumentIds(documentIds[i]);
+    }
+  }
+
+  void encodeFeatures(final Prediction.Builder builder, final FeatureDictionary dictionary) {
+    for (int i = 0; i < features.count; i++) {
+      builder.putFeatures(dictionary.intern(features.names[i]), features.values[i]);
+    }
+  }
+
+  void encodeTags(final Prediction.Builder builder, final FeatureDictionary dictionary) {
+    for (int i = 0; i < tags.count; i++) {
+      builder.putTags(dictionary.intern(tags.names[i]), tags.values[i]);
+    }
+  }
+
+  void encodeTags(final Actual.Builder builder, final FeatureDictionary dictionary) {
+    for (int i = 0; i < tags.count; i++) {
+      builder.putTags(dictionary.intern(tags.names[i]), tags.values[i]);
+    }
+  }
+
+  boolean hasShapValues() {
+    return shapCount > 0;
+  }
+
+  void encodeShapValues(final Public.FeatureImportances.Builder builder) {
+    for (int i = 0; i < shapCount; i++) {
+      builder.putFeatureImportances(shapNames[i], shapValues[i]);
+    }
+  }
+
+  /**
+   * Converted values by name in insertion order. A name set twice is stored twice; the later entry
+   * replaces the earlier one when both are put into the record, so setters stay constant time.
+   */
+  private static final class Dimensions {
+    String[] names = new String[INITIAL_CAPACITY];
+    Value[] values = new Value[INITIAL_CAPACITY];
+    int count;
+
+    void put(final String name, final Value value) {
+      if (name == null) {
+        throw new IllegalArgumentException("name cannot be null");
+      }
+      if (count == names.length) {
+        names = Arrays.copyOf(names, count * 2);
+        values = Arrays.copyOf(values, count * 2);
+      }
+      names[count] = name;
+      values[count++] = value;
+    }
+
+    void clear() {
+      Arrays.fill(names, 0, count, null);
+      Arrays.fill(values, 0, count, null);
+      count = 0;
+    }
+  }
+}
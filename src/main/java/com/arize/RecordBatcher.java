@@ -0,0 +1,471 @@
+package com.arize;
+
+import com.arize.protocol.Public.BulkRecord;
+import com.arize.protocol.Public.Record;
+import com.arize.types.Embedding;
+import org.apache.http.HttpResponse;
+import org.apache.http.concurrent.FutureCallback;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batching front end for {@link ArizeClient}. Request threads hand single records to a lock-free
+ * {@link RecordRingBuffer}; one background thread drains the ring, groups records by model into
+ * {@link BulkRecord}s and sends them to the bulk endpoint once a batch is full or has lingered long
+ * enough.
+ *
+ * <pre>
+ *   RecordBatcher batcher = RecordBatcher.newBuilder(client).setMaxBatchSize(500).build();
+ *   batcher.log("modelId", "v1", "predictionId", features, null, tags, label, null, null, 0);
+ *   ...
+ *   batcher.close();
+ * </pre>
+ *
+ * <p>Batchers register with their client, so {@link ArizeClient#shutdown} sends what they hold.
+ */
+public class RecordBatcher implements Closeable {
+
+  private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final ArizeClient client;
+  private final RecordRingBuffer ring;
+  private final int maxBatchSize;
+  private final long lingerNanos;
+  private final Thread worker;
+
+  private volatile boolean running = true;
+
+  /** Set when a drain deadline passes; the worker then drops what is left instead of sending. */
+  private volatile boolean abandoned;
+
+  /**
+   * Producers between checking {@link #running} and publishing their slot. The worker keeps
+   * draining until this is zero, so a record claimed while the batcher closes is still sent.
+   */
+  private final AtomicInteger producers = new AtomicInteger();
+
+  /** Consumer-thread state: records pending per model and when the current batch was started. */
+  private final Map<String, Batch> pending = new HashMap<>();
+  private int pendingCount;
+  private long batchStartNanos;
+
+  private final AtomicLong recordsSent = new AtomicLong();
+  private final AtomicLong recordsFailed = new AtomicLong();
+  private final AtomicLong batchesSent = new AtomicLong();
+  private final AtomicLong recordsDropped = new AtomicLong();
+
+  /** Records in batches the client did not accept, reported as dropped by a drain. */
+  private final AtomicLong recordsRefused = new AtomicLong();
+
+  /** Registered with the client; kept so the same instance can be unregistered. */
+  private final Drainable drainable = this::drainUntil;
+
+  private RecordBatcher(final Builder builder) {
+    this.client = builder.client;
+    this.ring = new RecordRingBuffer(builder.capacity, builder.waitStrategy);
+    this.maxBatchSize = builder.maxBatchSize;
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(builder.lingerMillis);
+    this.worker = new Thread(this::run, "arize-record-batcher");
+    this.worker.setDaemon(true);
+    client.register(drainable);
+    this.worker.start();
+  }
+
+  public static Builder newBuilder(final ArizeClient client) {
+    return new Builder(client);
+  }
+
+  /**
+   * Queues a record for batched delivery. Arguments and validation are the same as {@link
+   * ArizeAPI#log}; the record is converted on the calling thread directly into a preallocated ring
+   * slot. Blocks according to the configured {@link WaitStrategy} while the ring is full. Records
+   * rejected by the client's {@link Sampler} or {@link Deduplicator} are dropped without being
+   * queued.
+   *
+   * @throws IllegalArgumentException in case data type for features or label are not supported.
+   * @throws IllegalStateException if the batcher has been closed
+   */
+  public <T> void log(
+      final String modelId,
+      final String modelVersion,
+      final String predictionId,
+      final Map<String, ?> features,
+      final Map<String, Embedding> embeddingFeatures,
+      final Map<String, ?> tags,
+      final T predictionLabel,
+      final T actualLabel,
+      final Map<String, Double> shapValues,
+      final long predictionTimestamp)
+      throws IllegalArgumentException {
+    enter();
+    try {
+      final int parts = Deduplicator.parts(predictionLabel, actualLabel, shapValues);
+      if (client.screen(modelId, predictionId, parts) != null) {
+        return;
+      }
+      final long sequence = ring.next();
+      final Record.Builder record = ring.get(sequence);
+      try {
+        client.buildRecord(
+            record,
+            modelId,
+            modelVersion,
+            predictionId,
+            features,
+            embeddingFeatures,
+            tags,
+            predictionLabel,
+            actualLabel,
+            shapValues,
+            predictionTimestamp);
+        final int marked = client.markSent(modelId, predictionId, parts);
+        if (marked < 0) {
+          // sent by another call since it was screened
+          record.clear();
+        } else {
+          ring.setMark(sequence, marked);
+        }
+      } catch (RuntimeException e) {
+        // the slot must still be published; an empty record is skipped by the consumer
+        record.clear();
+        throw e;
+      } finally {
+        ring.publish(sequence);
+      }
+    } finally {
+      producers.decrementAndGet();
+    }
+  }
+
+  /**
+   * Queues a record described by a reusable event. The event is copied into a ring slot before
+   * this returns, so it may be cleared and reused straight away.
+   *
+   * @throws IllegalArgumentException if the model or prediction id is missing or the labels differ
+   *     in kind
+   * @throws IllegalStateException if the batcher has been closed
+   */
+  public void log(final PredictionEvent event) throws IllegalArgumentException {
+    if (event == null) {
+      throw new IllegalArgumentException("event cannot be null");
+    }
+    enter();
+    try {
+      if (client.screen(event.getModelId(), event.getPredictionId(), event.parts()) != null) {
+        return;
+      }
+      final long sequence = ring.next();
+      final Record.Builder record = ring.get(sequence);
+      try {
+        client.buildRecord(record, event);
+        final int marked =
+            client.markSent(event.getModelId(), event.getPredictionId(), event.parts());
+        if (marked < 0) {
+          record.clear();
+        } else {
+          ring.setMark(sequence, marked);
+        }
+      } catch (RuntimeException e) {
+        // the slot must still be published; an empty record is skipped by the consumer
+        record.clear();
+        throw e;
+      } finally {
+        ring.publish(sequence);
+      }
+    } finally {
+      producers.decrementAndGet();
+    }
+  }
+
+  /**
+   * Queues an already built record, copying it into a ring slot.
+   *
+   * @param marked the parts the record marked with the client's deduplicator, forgotten if it is
+   *     not sent
+   * @throws IllegalStateException if the batcher has been closed
+   */
+  void submit(final Record record, final int marked) {
+    enter();
+    try {
+      final long sequence = ring.next();
+      try {
+        ring.get(sequence).mergeFrom(record);
+        ring.setMark(sequence, marked);
+      } finally {
+        ring.publish(sequence);
+      }
+    } finally {
+      producers.decrementAndGet();
+    }
+  }
+
+  /**
+   * Counts the calling producer in before checking the batcher is open, so that {@link #run} sees
+   * either the producer or the closed flag; checking first would let a record be claimed after the
+   * worker's last look at the ring. Callers must decrement {@link #producers} when done.
+   */
+  private void enter() {
+    producers.incrementAndGet();
+    if (!running) {
+      producers.decrementAndGet();
+      throw new IllegalStateException("batcher is closed");
+    }
+  }
+
+  /** @return the number of records waiting in the ring */
+  public int size() {
+    return ring.size();
+  }
+
+  /** @return the number of records acknowledged by the bulk endpoint */
+  public long getRecordsSent() {
+    return recordsSent.get();
+  }
+
+  /** @return the number of records whose bulk request failed or could not be serialized */
+  public long getRecordsFailed() {
+    return recordsFailed.get();
+  }
+
+  /** @return the number of bulk requests issued */
+  public long getBatchesSent() {
+    return batchesSent.get();
+  }
+
+  /** @return the number of queued records dropped because a shutdown deadline passed */
+  public long getRecordsDropped() {
+    return recordsDropped.get();
+  }
+
+  /**
+   * Stops accepting records, sends everything already queued and waits for the background thread
+   * to exit. Does not close the underlying {@link ArizeClient}.
+   */
+  @Override
+  public void close() throws IOException {
+    running = false;
+    try {
+      worker.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while draining batcher", e);
+    } finally {
+      client.unregister(drainable);
+    }
+  }
+
+  /**
+   * Stops accepting records and sends everything queued, like {@link #close()}, but drops what is
+   * still queued once {@code deadlineNanos} has passed. See {@link Drainable#drainUntil}.
+   *
+   * @return the records dropped, including those of batches the client did not accept
+   */
+  private long drainUntil(final long deadlineNanos) throws InterruptedException {
+    final long refusedBefore = recordsRefused.get();
+    running = false;
+    final long millis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    if (millis > 0) {
+      worker.join(millis);
+    }
+    if (worker.isAlive()) {
+      abandoned = true;
+      worker.join();
+    }
+    client.unregister(drainable);
+    return recordsDropped.get() + recordsRefused.get() - refusedBefore;
+  }
+
+  private void run() {
+    final RecordRingBuffer.Handler handler = this::add;
+    while (!abandoned && (running || producers.get() > 0 || ring.size() > 0)) {
+      final int drained = ring.drain(handler, maxBatchSize - pendingCount);
+      if (pendingCount >= maxBatchSize
+          || (pendingCount > 0
+              && (!running || System.nanoTime() - batchStartNanos >= lingerNanos))) {
+        flush();
+      } else if (drained == 0) {
+        // bounded rather than waiting out the linger, so a close is acted on promptly
+        ring.awaitPublished(Math.min(lingerNanos, IDLE_WAIT_NANOS));
+      }
+    }
+    if (abandoned) {
+      drop();
+    } else {
+      flush();
+    }
+  }
+
+  /**
+   * Counts everything pending or still in the ring as dropped, including late producers, and
+   * forgets it with the deduplicator.
+   */
+  private void drop() {
+    recordsDropped.addAndGet(pendingCount);
+    for (Batch batch : pending.values()) {
+      batch.forget();
+    }
+    pending.clear();
+    pendingCount = 0;
+    final RecordRingBuffer.Handler discard =
+        (record, mark) -> {
+          if (!record.getModelId().isEmpty()) {
+            recordsDropped.incrementAndGet();
+            client.forgetSent(record.getModelId(), record.getPredictionId(), mark);
+          }
+        };
+    while (producers.get() > 0 || ring.size() > 0) {
+      if (ring.drain(discard, Integer.MAX_VALUE) == 0) {
+        ring.awaitPublished(TimeUnit.MILLISECONDS.toNanos(1));
+      }
+    }
+  }
+
+  private void add(final Record.Builder record, final int mark) {
+    final String modelId = record.getModelId();
+    if (modelId.isEmpty()) {
+      return;
+    }
+    Batch batch = pending.get(modelId);
+    if (batch == null) {
+      batch = new Batch(modelId);
+      pending.put(modelId, batch);
+    }
+    batch.bulk.addRecords(record.build());
+    if (mark > 0) {
+      if (batch.marks == null) {
+        batch.marks = new ForgetOnFailure(client, modelId);
+      }
+      batch.marks.add(record.getPredictionId(), mark);
+    }
+    if (pendingCount++ == 0) {
+      batchStartNanos = System.nanoTime();
+    }
+  }
+
+  private void flush() {
+    for (Batch batch : pending.values()) {
+      final int count = batch.bulk.getRecordsCount();
+      try {
+        final Response response =
+            client.sendBulk(batch.bulk.build(), new BatchCallback(count, batch.marks));
+        batchesSent.incrementAndGet();
+        if (response == Response.REJECTED || response == Response.CIRCUIT_OPEN) {
+          recordsRefused.addAndGet(count);
+        }
+      } catch (IOException | RuntimeException e) {
+        recordsFailed.addAndGet(count);
+        recordsRefused.addAndGet(count);
+        batch.forget();
+      }
+    }
+    pending.clear();
+    pendingCount = 0;
+  }
+
+  /** Records pending for one model, with the deduplicator marks to forget if they are not sent. */
+  private final class Batch {
+    final BulkRecord.Builder bulk;
+    ForgetOnFailure marks;
+
+    Batch(final String modelId) {
+      this.bulk = BulkRecord.newBuilder().setModelId(modelId).setSpaceKey(client.getSpaceKey());
+    }
+
+    void forget() {
+      if (marks != null) {
+        marks.forget();
+      }
+    }
+  }
+
+  private final class BatchCallback implements FutureCallback<HttpResponse> {
+    private final int count;
+    private final ForgetOnFailure marks;
+
+    BatchCallback(final int count, final ForgetOnFailure marks) {
+      this.count = count;
+      this.marks = marks;
+    }
+
+    @Override
+    public void completed(final HttpResponse response) {
+      if (response.getStatusLine().getStatusCode() == 200) {
+        recordsSent.addAndGet(count);
+      } else {
+        onFailure();
+      }
+    }
+
+    @Override
+    public void failed(final Exception ex) {
+      onFailure();
+    }
+
+    @Override
+    public void cancelled() {
+      onFailure();
+    }
+
+    private void onFailure() {
+      recordsFailed.addAndGet(count);
+      if (marks != null) {
+        marks.forget();
+      }
+    }
+  }
+
+  public static final class Builder {
+    private final ArizeClient client;
+    private int capacity = 8192;
+    private int maxBatchSize = 1000;
+    private long lingerMillis = 200;
+    private WaitStrategy waitStrategy = WaitStrategy.PARK;
+
+    private Builder(final ArizeClient client) {
+      if (client == null) {
+        throw new IllegalArgumentException("client cannot be null");
+      }
+      this.client = client;
+    }
+
+    /** Number of ring slots, must be a power of 2. Defaults to 8192. */
+    public Builder setCapacity(final int capacity) {
+      this.capacity = capacity;
+      return this;
+    }
+
+    /** Maximum records per bulk request. Defaults to 1000. */
+    public Builder setMaxBatchSize(final int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /** How long a partially filled batch may wait before it is sent. Defaults to 200ms. */
+    public Builder setLingerMillis(final long lingerMillis) {
+      this.lingerMillis = lingerMillis;
+      return this;
+    }
+
+    /** How producers and the sender thread wait on the ring. Defaults to {@link WaitStrategy#PARK}. */
+    public Builder setWaitStrategy(final WaitStrategy waitStrategy) {
+      this.waitStrategy = waitStrategy;
+      return this;
+    }
+
+    public RecordBatcher build() {
+      if (maxBatchSize < 1) {
+        throw new IllegalArgumentException("maxBatchSize must be positive");
+      }
+      if (lingerMillis < 0) {
+        throw new IllegalArgumentException("lingerMillis cannot be negative");
+      }
+      return new RecordBatcher(this);
+    }
+  }
+}
@@ -0,0 +1,214 @@
+package com.arize;
+
+import com.arize.protocol.Public.Record;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded multi-producer, single-consumer ring of preallocated {@link Record.Builder} slots.
+ *
+ * <p>Producers claim a sequence with a single CAS, populate the slot's builder in place and then
+ * publish it. The consumer drains published slots in sequence order and clears each builder so the
+ * next lap can reuse it. No locks are taken on either side; when a thread cannot make progress it
+ * backs off according to the configured {@link WaitStrategy}. Each slot also carries an int mark
+ * set by its producer, which the consumer receives with the record; it is 0 unless set.
+ *
+ * <p>Usage by a producer:
+ *
+ * <pre>
+ *   long sequence = ring.next();
+ *   try {
+ *     populate(ring.get(sequence));
+ *   } finally {
+ *     ring.publish(sequence);
+ *   }
+ * </pre>
+ *
+ * A claimed sequence must always be published, otherwise the consumer stalls on it.
+ */
+final class RecordRingBuffer {
+
+  /** Callback invoked by {@link #drain} for each published record. */
+  interface Handler {
+    void onRecord(Record.Builder record, int mark);
+  }
+
+  private final Record.Builder[] slots;
+
+  /** Written by a slot's producer before it publishes and read by the consumer after. */
+  private final int[] marks;
+  private final int mask;
+  private final int indexShift;
+  private final WaitStrategy waitStrategy;
+
+  /** Lap number of the last publish for each slot, -1 until first published. */
+  private final AtomicIntegerArray published;
+
+  /** Highest sequence claimed by a producer. */
+  private final PaddedSequence claimed = new PaddedSequence(-1L);
+
+  /** Highest sequence released by the consumer. */
+  private final PaddedSequence consumed = new PaddedSequence(-1L);
+
+  /** Producer-side cache of {@link #consumed} to avoid reading the contended line on every claim. */
+  private final PaddedSequence consumedCache = new PaddedSequence(-1L);
+
+  /**
+   * @param capacity number of slots, must be a power of two
+   * @param waitStrategy how waiting producers and the consumer back off
+   */
+  RecordRingBuffer(final int capacity, final WaitStrategy waitStrategy) {
+    if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("capacity must be a positive power of 2");
+    }
+    if (waitStrategy == null) {
+      throw new IllegalArgumentException("waitStrategy cannot be null");
+    }
+    this.slots = new Record.Builder[capacity];
+    this.marks = new int[capacity];
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = Record.newBuilder();
+    }
+    this.mask = capacity - 1;
+    this.indexShift = Integer.numberOfTrailingZeros(capacity);
+    this.waitStrategy = waitStrategy;
+    this.published = new AtomicIntegerArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      published.set(i, -1);
+    }
+  }
+
+  int capacity() {
+    return slots.length;
+  }
+
+  /** @return approximate number of claimed but not yet consumed slots */
+  int size() {
+    return (int) (claimed.get() - consumed.get());
+  }
+
+  /**
+   * Claims the next slot, waiting for the consumer to free one if the ring is full.
+   *
+   * @return the claimed sequence
+   */
+  long next() {
+    int attempt = 0;
+    while (true) {
+      final long current = claimed.get();
+      final long next = current + 1;
+      if (hasCapacity(next)) {
+        if (claimed.compareAndSet(current, next)) {
+          return next;
+        }
+      } else {
+        waitStrategy.idle(attempt++);
+      }
+    }
+  }
+
+  /**
+   * Claims the next slot without waiting.
+   *
+   * @return the claimed sequence, or -1 if the ring is full
+   */
+  long tryNext() {
+    while (true) {
+      final long current = claimed.get();
+      final long next = current + 1;
+      if (!hasCapacity(next)) {
+        return -1L;
+      }
+      if (claimed.compareAndSet(current, next)) {
+        return next;
+      }
+    }
+  }
+
+  private boolean hasCapacity(final long sequence) {
+    final long wrapPoint = sequence - slots.length;
+    if (wrapPoint <= consumedCache.get()) {
+      return true;
+    }
+    final long min = consumed.get();
+    consumedCache.lazySet(min);
+    return wrapPoint <= min;
+  }
+
+  /** @return the builder backing a claimed sequence */
+  Record.Builder get(final long sequence) {
+    return slots[(int) sequence & mask];
+  }
+
+  /** Sets the mark of a claimed slot, before it is published. */
+  void setMark(final long sequence, final int mark) {
+    marks[(int) sequence & mask] = mark;
+  }
+
+  /** Makes a claimed and populated slot visible to the consumer. */
+  void publish(final long sequence) {
+    published.lazySet((int) sequence & mask, (int) (sequence >>> indexShift));
+  }
+
+  private boolean isPublished(final long sequence) {
+    return published.get((int) sequence & mask) == (int) (sequence >>> indexShift);
+  }
+
+  /**
+   * Hands up to {@code limit} published records and their marks to {@code handler} in sequence
+   * order and then releases their slots. Must only be called from the single consumer thread.
+   *
+   * @return the number of records handled
+   */
+  int drain(final Handler handler, final int limit) {
+    final long first = consumed.get() + 1;
+    long sequence = first;
+    try {
+      while (sequence - first < limit && isPublished(sequence)) {
+        final int index = (int) sequence++ & mask;
+        final Record.Builder record = slots[index];
+        try {
+          handler.onRecord(record, marks[index]);
+        } finally {
+          record.clear();
+          marks[index] = 0;
+        }
+      }
+    } finally {
+      if (sequence != first) {
+        consumed.lazySet(sequence - 1);
+      }
+    }
+    return (int) (sequence - first);
+  }
+
+  /**
+   * Waits until the next record is published or the timeout elapses. Must only be called from the
+   * single consumer thread.
+   *
+   * @return true if a record is available
+   */
+  boolean awaitPublished(final long timeoutNanos) {
+    final long next = consumed.get() + 1;
+    final long deadline = System.nanoTime() + timeoutNanos;
+    int attempt = 0;
+    while (!isPublished(next)) {
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      waitStrategy.idle(attempt++);
+    }
+    return true;
+  }
+
+  /** Sequence counter padded onto its own cache line to avoid false sharing. */
+  @SuppressWarnings("unused")
+  private static final class PaddedSequence extends AtomicLong {
+    private long p1, p2, p3, p4, p5, p6, p7;
+
+    PaddedSequence(final long initialValue) {
+      super(initialValue);
+    }
+  }
+}
@@ -1,12 +1,15 @@
 package com.arize;
 
 import com.arize.protocol.Public;
+import com.arize.protocol.Public.Actual;
 import com.arize.protocol.Public.Label;
 import com.arize.protocol.Public.PredictionLabel;
 import com.arize.protocol.Public.RankingPrediction;
 import com.arize.protocol.Public.RankingActual;
 import com.arize.protocol.Public.ActualLabel;
 import com.arize.protocol.Public.MultiValue;
+import com.arize.protocol.Public.Prediction;
+import com.arize.protocol.Public.Record;
 import com.arize.protocol.Public.ScoreCategorical;
 import com.arize.protocol.Public.Value;
 import com.arize.types.Embedding;
@@ -23,14 +26,63 @@ import java.util.Map;
 
 public class RecordUtil {
 
+    /** Shared by every client; cached values are immutable. */
+    static final ValueCache VALUE_CACHE = new ValueCache(ValueCache.DEFAULT_CAPACITY);
+
+    /** Printers are immutable and thread-safe; building one per call costs several objects. */
+    private static final JsonFormat.Printer PRINTER =
+            JsonFormat.printer().omittingInsignificantWhitespace();
+
     protected static String toJSON(final MessageOrBuilder record) throws IOException {
         try {
-            return JsonFormat.printer().omittingInsignificantWhitespace().print(record);
+            return PRINTER.print(record);
+        } catch (InvalidProtocolBufferException e) {
+            throw new IOException("Exception serializing record: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends the JSON form of a message to an existing buffer without materializing an
+     * intermediate String.
+     */
+    protected static void appendJSON(final MessageOrBuilder record, final StringBuilder out)
+            throws IOException {
+        try {
+            PRINTER.appendTo(record, out);
         } catch (InvalidProtocolBufferException e) {
             throw new IOException("Exception serializing record: " + e.getMessage());
         }
     }
 
+    /** @return the environment to record, or null if {@code environment} is null */
+    static Record.EnvironmentParams environmentParams(
+            final ModelSession.Environment environment, final String batchId) {
+        if (environment == null) {
+            return null;
+        }
+        final Record.EnvironmentParams.Builder params = Record.EnvironmentParams.newBuilder();
+        switch (environment) {
+            case TRAINING:
+                params.setTraining(Record.EnvironmentParams.Training.getDefaultInstance());
+                break;
+            case VALIDATION:
+                params.setValidation(
+                        Record.EnvironmentParams.Validation.newBuilder().setBatchId(batchId));
+                break;
+            default:
+                params.setProduction(Record.EnvironmentParams.Production.getDefaultInstance());
+        }
+        return params.build();
+    }
+
+    /**
+     * @return whether records with this environment are production records, the only ones the
+     *     client's circuit breaker, sampler and deduplicator see
+     */
+    static boolean isScreened(final Record.EnvironmentParams environment) {
+        return environment == null || environment.hasProduction();
+    }
+
     protected static <T> Map<String, Value> convertFeatures(final Map<String, T> features)
             throws IllegalArgumentException {
         return convertDimensions(features);
@@ -48,39 +100,85 @@ public class RecordUtil {
 
     private static <T> Map<String, Value> convertDimensions(final Map<String, T> dimensions)
             throws IllegalArgumentException {
-        Map<String, Value> converted = new HashMap<>();
-        dimensions.forEach(
-                (k, v) -> {
-                    if (v != null) {
-                        converted.put(k, convertValue(k, v));
-                    }
-                });
+        Map<String, Value> converted = new HashMap<>((int) (dimensions.size() / 0.75f) + 1);
+        for (Map.Entry<String, T> entry : dimensions.entrySet()) {
+            if (entry.getValue() != null) {
+                converted.put(entry.getKey(), convertValue(entry.getKey(), entry.getValue()));
+            }
+        }
         return converted;
     }
 
+    /**
+     * Converts features (or embedding features) and writes them straight into the prediction
+     * builder, interning each name through the model's dictionary. A null map adds nothing.
+     */
+    protected static void putFeatures(
+            final Prediction.Builder builder,
+            final Map<String, ?> features,
+            final FeatureDictionary dictionary) throws IllegalArgumentException {
+        if (features == null) {
+            return;
+        }
+        for (Map.Entry<String, ?> entry : features.entrySet()) {
+            if (entry.getValue() != null) {
+                final String name = dictionary.intern(entry.getKey());
+                builder.putFeatures(name, convertValue(name, entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Converts tags and writes them straight into the prediction builder, interning each name
+     * through the model's dictionary. A null map adds nothing.
+     */
+    protected static void putTags(
+            final Prediction.Builder builder,
+            final Map<String, ?> tags,
+            final FeatureDictionary dictionary) throws IllegalArgumentException {
+        if (tags == null) {
+            return;
+        }
+        for (Map.Entry<String, ?> entry : tags.entrySet()) {
+            if (entry.getValue() != null) {
+                final String name = dictionary.intern(entry.getKey());
+                builder.putTags(name, convertValue(name, entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Converts tags and writes them straight into the actual builder, interning each name through
+     * the model's dictionary. A null map adds nothing.
+     */
+    protected static void putTags(
+            final Actual.Builder builder,
+            final Map<String, ?> tags,
+            final FeatureDictionary dictionary) throws IllegalArgumentException {
+        if (tags == null) {
+            return;
+        }
+        for (Map.Entry<String, ?> entry : tags.entrySet()) {
+            if (entry.getValue() != null) {
+                final String name = dictionary.intern(entry.getKey());
+                builder.putTags(name, convertValue(name, entry.getValue()));
+            }
+        }
+    }
+
     protected static <T> Label convertLabel(final T rawLabel) throws IllegalArgumentException {
-        Label.Builder label = Label.newBuilder();
         if (rawLabel instanceof Boolean) {
-            return label.setBinary((Boolean) rawLabel).build();
+            return binaryLabel((Boolean) rawLabel);
         } else if (rawLabel instanceof String) {
-            return label.setCategorical((String) rawLabel).build();
+            return categoricalLabel((String) rawLabel);
         } else if (rawLabel instanceof Integer
                 || rawLabel instanceof Long
                 || rawLabel instanceof Short
                 || rawLabel instanceof Float
                 || rawLabel instanceof Double) {
-            return label.setNumeric(Double.parseDouble(String.valueOf(rawLabel))).build();
+            return numericLabel((Number) rawLabel);
         } else if (rawLabel instanceof ArizeClient.ScoredCategorical) {
-            ArizeClient.ScoredCategorical sc = (ArizeClient.ScoredCategorical) rawLabel;
-            ScoreCategorical.Builder builder = ScoreCategorical.newBuilder();
-            ScoreCategorical.ScoreCategory.Builder scb = ScoreCategorical.ScoreCategory.newBuilder();
-            scb.setScore(sc.getScore());
-            scb.setCategory(sc.getCategory());
-            if (sc.getNumericSequence() != null && sc.getNumericSequence().size() > 0) {
-                scb.addAllNumericSequence(sc.getNumericSequence());
-            }
-            builder.setScoreCategory(scb);
-            return label.setScoreCategorical(builder).build();
+            return scoreCategoricalLabel((ArizeClient.ScoredCategorical) rawLabel);
         }
         throw new IllegalArgumentException(
                 "Illegal label "
@@ -88,6 +186,70 @@ public class RecordUtil {
                         + ", must be oneof: boolean, String, int, long, short, float, double, ScoreCategorical");
     }
 
+    /**
+     * Sets a prediction's label using the kind inferred for its batch, falling back to
+     * dispatching on the label itself when the batch has no single kind.
+     */
+    static void putPredictionLabel(
+            final Prediction.Builder builder, final LabelKind batchKind, final Object rawLabel)
+            throws IllegalArgumentException {
+        final LabelKind kind = batchKind != null ? batchKind : LabelKind.of(rawLabel);
+        if (kind == null) {
+            builder.setLabel(convertLabel(rawLabel));
+        } else {
+            kind.encodePrediction(builder, rawLabel);
+        }
+    }
+
+    /**
+     * Sets an actual's label using the kind inferred for its batch, falling back to dispatching
+     * on the label itself when the batch has no single kind.
+     */
+    static void putActualLabel(
+            final Actual.Builder builder, final LabelKind batchKind, final Object rawLabel)
+            throws IllegalArgumentException {
+        final LabelKind kind = batchKind != null ? batchKind : LabelKind.of(rawLabel);
+        if (kind == null) {
+            builder.setLabel(convertLabel(rawLabel));
+        } else {
+            kind.encodeActual(builder, rawLabel);
+        }
+    }
+
+    static Label binaryLabel(final Boolean rawLabel) {
+        return Label.newBuilder().setBinary(rawLabel).build();
+    }
+
+    static Label categoricalLabel(final String rawLabel) {
+        return Label.newBuilder().setCategorical(rawLabel).build();
+    }
+
+    static Label numericLabel(final Number rawLabel) {
+        if (rawLabel instanceof Float) {
+            // widening a float exposes binary noise (0.1f -> 0.10000000149011612); keep its
+            // shortest decimal form as before
+            return numericLabel(Double.parseDouble(rawLabel.toString()));
+        }
+        // exact for Double, Short and Integer; Long rounds the same way parseDouble would
+        return numericLabel(rawLabel.doubleValue());
+    }
+
+    static Label numericLabel(final double rawLabel) {
+        return Label.newBuilder().setNumeric(rawLabel).build();
+    }
+
+    static Label scoreCategoricalLabel(final ArizeClient.ScoredCategorical sc) {
+        ScoreCategorical.Builder builder = ScoreCategorical.newBuilder();
+        ScoreCategorical.ScoreCategory.Builder scb = ScoreCategorical.ScoreCategory.newBuilder();
+        scb.setScore(sc.getScore());
+        scb.setCategory(sc.getCategory());
+        if (sc.getNumericSequence() != null && sc.getNumericSequence().size() > 0) {
+            scb.addAllNumericSequence(sc.getNumericSequence());
+        }
+        builder.setScoreCategory(scb);
+        return Label.newBuilder().setScoreCategorical(builder).build();
+    }
+
     protected static <T> PredictionLabel convertPredictionLabel(final T rawLabel) throws IllegalArgumentException {
         PredictionLabel.Builder labelBuilder = PredictionLabel.newBuilder();
         ArizeClient.Ranking r = (ArizeClient.Ranking) rawLabel;
@@ -146,14 +308,22 @@ public class RecordUtil {
     protected static <T> void validateBulkPredictionActualMatches(
             final List<T> predictionLabels, final List<T> actualLabels) throws IllegalArgumentException {
         if (predictionLabels != null && actualLabels != null) {
-            if (predictionLabels.getClass().getComponentType()
-                    != actualLabels.getClass().getComponentType()) {
-                throw new IllegalArgumentException(
-                        "predictionLabel and actualLabel must be of the same type. predictionLabel: "
-                                + predictionLabels.getClass().getComponentType()
-                                + " actualLabel: "
-                                + actualLabels.getClass().getComponentType());
-            }
+            validateBulkLabelKinds(LabelKind.infer(predictionLabels), LabelKind.infer(actualLabels));
+        }
+    }
+
+    /**
+     * Rejects a batch whose prediction and actual labels are each of a single kind but not the
+     * same one. Batches of mixed kinds are left to the per-row checks.
+     */
+    static void validateBulkLabelKinds(final LabelKind predictionKind, final LabelKind actualKind)
+            throws IllegalArgumentException {
+        if (predictionKind != null && actualKind != null && predictionKind != actualKind) {
+            throw new IllegalArgumentException(
+                    "predictionLabel and actualLabel must be of the same type. predictionLabel: "
+                            + predictionKind
+                            + " actualLabel: "
+                            + actualKind);
         }
     }
 
@@ -179,21 +349,22 @@ public class RecordUtil {
     }
 
     @SuppressWarnings({"unchecked"})
-    private static <T> Value convertValue(final String name, final T rawValue)
+    static <T> Value convertValue(final String name, final T rawValue)
             throws IllegalArgumentException {
-        Value.Builder val = Value.newBuilder();
         if (rawValue instanceof String) {
-            return val.setString((String) rawValue).build();
+            return VALUE_CACHE.string((String) rawValue);
         } else if (rawValue instanceof Integer
                 || rawValue instanceof Long
                 || rawValue instanceof Short) {
-            return val.setInt(((Number) rawValue).longValue()).build();
-        } else if (rawValue instanceof Double) {
+            return VALUE_CACHE.integer(((Number) rawValue).longValue());
+        } else if (rawValue instanceof Boolean) {
+            return VALUE_CACHE.bool((Boolean) rawValue);
+        }
+        Value.Builder val = Value.newBuilder();
+        if (rawValue instanceof Double) {
             return val.setDouble((Double) rawValue).build();
         } else if (rawValue instanceof Float) {
             return val.setDouble(((Float) rawValue).doubleValue()).build();
-        } else if (rawValue instanceof Boolean) {
-            return val.setString(((Boolean) rawValue).toString()).build();
         } else if (rawValue instanceof Collection) {
             MultiValue.Builder values = MultiValue.newBuilder();
             for (T value : (List<T>) rawValue) {
@@ -0,0 +1,48 @@
+package com.arize;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Immutable, prebuilt request shape for a single Arize endpoint. The URI and headers never change
+ * for the lifetime of a client, so they are computed once and shared by every request stamped from
+ * the template; only the {@link HttpPost} and its body are allocated per call.
+ */
+final class RequestTemplate {
+
+  static final ContentType CONTENT_TYPE =
+      ContentType.create(ContentType.TEXT_PLAIN.getMimeType(), StandardCharsets.UTF_8);
+
+  /** The endpoint URI. */
+  private final URI uri;
+
+  /** Headers shared by every request. Never handed out, so callers cannot mutate them. */
+  private final Header[] headers;
+
+  RequestTemplate(final URI uri, final Header[] headers) {
+    this.uri = uri;
+    this.headers = headers.clone();
+  }
+
+  /**
+   * Stamp a new request carrying the given body.
+   *
+   * @param body the serialized payload
+   * @return a request ready to be executed
+   */
+  HttpPost newRequest(final String body) {
+    final HttpPost request = new HttpPost(uri);
+    request.setHeaders(headers);
+    request.setEntity(new StringEntity(body, CONTENT_TYPE));
+    return request;
+  }
+
+  URI getUri() {
+    return uri;
+  }
+}
@@ -6,6 +6,7 @@ import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -14,9 +15,24 @@ import java.util.concurrent.TimeoutException;
 /** Wrapper class holding future response */
 public class Response {
 
+  /** Returned for records dropped by the client's {@link Sampler}. */
+  static final Response SAMPLED_OUT = new Response(ResponseCode.SAMPLED_OUT);
+
+  /** Returned for records dropped by the client's {@link Deduplicator}. */
+  static final Response DUPLICATE = new Response(ResponseCode.DUPLICATE);
+
+  /** Returned for requests rejected by the client's {@link InFlightLimit}. */
+  static final Response REJECTED = new Response(ResponseCode.REJECTED);
+
+  /** Returned for records and requests refused by the client's open {@link CircuitBreaker}. */
+  static final Response CIRCUIT_OPEN = new Response(ResponseCode.CIRCUIT_OPEN);
+
   /** Private store for properties */
   private final Future<HttpResponse> future;
 
+  /** Set when the call was settled locally and never reached the network. */
+  private final ResponseCode localCode;
+
   private HttpResponse response;
 
   /**
@@ -26,6 +42,17 @@ public class Response {
    */
   protected Response(final Future<HttpResponse> future) {
     this.future = future;
+    this.localCode = null;
+  }
+
+  /**
+   * A response for a call the client settled without issuing a request.
+   *
+   * @param localCode the outcome reported by {@link #getResponseCode()}
+   */
+  private Response(final ResponseCode localCode) {
+    this.future = CompletableFuture.completedFuture(null);
+    this.localCode = localCode;
   }
 
   /**
@@ -60,6 +87,9 @@ public class Response {
    * @throws ExecutionException
    */
   public ResponseCode getResponseCode() throws InterruptedException, ExecutionException {
+    if (this.localCode != null) {
+      return this.localCode;
+    }
     if (this.response == null) {
       this.response = future.get();
     }
@@ -86,6 +116,9 @@ public class Response {
    * @throws ExecutionException
    */
   public String getResponseBody() throws IOException, InterruptedException, ExecutionException {
+    if (this.localCode != null) {
+      return null;
+    }
     if (this.response == null) {
       this.response = future.get();
     }
@@ -125,6 +158,14 @@ public class Response {
     NOT_FOUND,
     AUTHENTICATION_ERROR,
     BAD_REQUEST,
-    UNEXPECTED_FAILURE
+    UNEXPECTED_FAILURE,
+    /** The record was dropped by the client's {@link Sampler} and never sent. */
+    SAMPLED_OUT,
+    /** The record repeated a recently sent prediction id and was dropped by the {@link Deduplicator}. */
+    DUPLICATE,
+    /** Too many requests were in flight and the client's {@link InFlightLimit} rejected it. */
+    REJECTED,
+    /** The client's {@link CircuitBreaker} was open, so nothing was converted or sent. */
+    CIRCUIT_OPEN
   }
 }
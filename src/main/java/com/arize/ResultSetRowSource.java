@@ -0,0 +1,53 @@
+package com.arize;
+
+import java.io.IOException;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** {@link RowSource} over a JDBC result set. SQL arrays are read as Java arrays. */
+final class ResultSetRowSource implements RowSource {
+
+  private final ResultSet resultSet;
+
+  ResultSetRowSource(final ResultSet resultSet) {
+    this.resultSet = resultSet;
+  }
+
+  @Override
+  public List<String> getColumnNames() throws IOException {
+    try {
+      final ResultSetMetaData metaData = resultSet.getMetaData();
+      final List<String> names = new ArrayList<>(metaData.getColumnCount());
+      for (int column = 1; column <= metaData.getColumnCount(); column++) {
+        names.add(metaData.getColumnLabel(column));
+      }
+      return Collections.unmodifiableList(names);
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public boolean next() throws IOException {
+    try {
+      return resultSet.next();
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public Object get(final int column) throws IOException {
+    try {
+      final Object value = resultSet.getObject(column + 1);
+      return value instanceof Array ? ((Array) value).getArray() : value;
+    } catch (SQLException e) {
+      throw new IOException(e);
+    }
+  }
+}
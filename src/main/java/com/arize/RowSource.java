@@ -0,0 +1,38 @@
+package com.arize;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * A forward-only cursor over tabular data, read column by column so rows never need to be
+ * materialized as maps. Implementations wrap CSV readers, columnar file readers or JDBC result
+ * sets; {@link #of(ResultSet)} adapts the latter.
+ *
+ * <p>Values are returned as their natural Java type: {@link String}, {@link Boolean}, a {@link
+ * Number}, a {@link java.util.Date} for timestamps, or a {@code float[]}, {@code double[]} or
+ * {@link List} for vectors. Missing values are null.
+ */
+public interface RowSource {
+
+  /** @return the names of the columns, in the order of their indices */
+  List<String> getColumnNames() throws IOException;
+
+  /**
+   * Moves to the next row; the cursor starts before the first row.
+   *
+   * @return false once every row has been read
+   */
+  boolean next() throws IOException;
+
+  /** @return the value of {@code column} in the current row, or null if it is missing */
+  Object get(int column) throws IOException;
+
+  /** @return a source reading the remaining rows of {@code resultSet} */
+  static RowSource of(final ResultSet resultSet) {
+    if (resultSet == null) {
+      throw new IllegalArgumentException("resultSet cannot be null");
+    }
+    return new ResultSetRowSource(resultSet);
+  }
+}
@@ -0,0 +1,17 @@
+package com.arize;
+
+/**
+ * Decides whether a record is sent to Arize. Evaluated before any record conversion, so a record
+ * that is not sampled costs only the sampling decision itself. Implementations must be thread-safe.
+ *
+ * <p>See {@link Samplers} for the built-in policies.
+ */
+public interface Sampler {
+
+  /**
+   * @param modelId the model the record belongs to
+   * @param predictionId the record's prediction id, never null
+   * @return true to keep the record, false to drop it
+   */
+  boolean sample(String modelId, String predictionId);
+}
@@ -0,0 +1,126 @@
+package com.arize;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+/** Built-in {@link Sampler} policies. */
+public final class Samplers {
+
+  private static final Sampler ALWAYS = (modelId, predictionId) -> true;
+
+  private Samplers() {}
+
+  /** @return a sampler that keeps every record */
+  public static Sampler always() {
+    return ALWAYS;
+  }
+
+  /**
+   * Keeps each record independently with probability {@code rate}. Predictions and their latent
+   * actuals are sampled independently; use {@link #predictionIdHash(double)} to keep them together.
+   *
+   * @param rate fraction of records to keep, between 0 and 1
+   */
+  public static Sampler fixedRate(final double rate) {
+    validateRate(rate);
+    if (rate >= 1.0) {
+      return ALWAYS;
+    }
+    return (modelId, predictionId) -> ThreadLocalRandom.current().nextDouble() < rate;
+  }
+
+  /**
+   * Keeps a deterministic {@code rate} fraction of prediction ids. A given prediction id is always
+   * either kept or dropped, so actuals and feature importances logged later for the same id follow
+   * the decision made for the prediction.
+   *
+   * @param rate fraction of prediction ids to keep, between 0 and 1
+   */
+  public static Sampler predictionIdHash(final double rate) {
+    validateRate(rate);
+    if (rate >= 1.0) {
+      return ALWAYS;
+    }
+    final int threshold = threshold(rate);
+    return (modelId, predictionId) -> bucket(predictionId) < threshold;
+  }
+
+  /**
+   * Delegates to a per-model sampler, falling back to {@code fallback} for models without one.
+   *
+   * @param samplers sampler by model id
+   * @param fallback sampler for all other models
+   */
+  public static Sampler perModel(final Map<String, Sampler> samplers, final Sampler fallback) {
+    if (samplers == null || fallback == null) {
+      throw new IllegalArgumentException("samplers and fallback cannot be null");
+    }
+    final Map<String, Sampler> copy = new HashMap<>(samplers);
+    return (modelId, predictionId) ->
+        copy.getOrDefault(modelId, fallback).sample(modelId, predictionId);
+  }
+
+  /**
+   * Sheds load as pressure rises. While {@code load} is at or below {@code lowWatermark} every
+   * record is kept; above it the kept fraction falls linearly, reaching {@code minRate} at {@code
+   * highWatermark}. The load is typically a queue depth such as {@link RecordBatcher#size()} or a
+   * recent send latency in milliseconds. Decisions are made on the prediction id hash, so at any
+   * given rate the same ids are kept as with {@link #predictionIdHash(double)}.
+   *
+   * @param load current load, read once per decision
+   * @param lowWatermark load at which shedding starts
+   * @param highWatermark load at which the minimum rate is reached
+   * @param minRate fraction of records kept at or above the high watermark
+   */
+  public static Sampler adaptive(
+      final LongSupplier load,
+      final long lowWatermark,
+      final long highWatermark,
+      final double minRate) {
+    if (load == null) {
+      throw new IllegalArgumentException("load cannot be null");
+    }
+    if (highWatermark <= lowWatermark) {
+      throw new IllegalArgumentException("highWatermark must be greater than lowWatermark");
+    }
+    validateRate(minRate);
+    return (modelId, predictionId) -> {
+      final long current = load.getAsLong();
+      if (current <= lowWatermark) {
+        return true;
+      }
+      final double rate;
+      if (current >= highWatermark) {
+        rate = minRate;
+      } else {
+        final double pressure = (current - lowWatermark) / (double) (highWatermark - lowWatermark);
+        rate = 1.0 - pressure * (1.0 - minRate);
+      }
+      return bucket(predictionId) < threshold(rate);
+    };
+  }
+
+  /** Maps a prediction id to a well mixed, non-negative int. */
+  static int bucket(final String predictionId) {
+    int h = predictionId.hashCode();
+    // murmur3 finalizer
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h & Integer.MAX_VALUE;
+  }
+
+  private static int threshold(final double rate) {
+    return (int) (rate * Integer.MAX_VALUE);
+  }
+
+  private static void validateRate(final double rate) {
+    if (!(rate >= 0.0 && rate <= 1.0)) {
+      throw new IllegalArgumentException("rate must be between 0 and 1");
+    }
+  }
+}
@@ -0,0 +1,512 @@
+package com.arize;
+
+import com.arize.protocol.Public;
+import com.arize.protocol.Public.Schema.GenericSchema;
+import com.arize.protocol.Public.Value;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Maps the columns of a {@link RowSource} to Arize records as described by a {@link
+ * GenericSchema}. The schema is compiled once against the source's column names: every descriptor
+ * is resolved to a column index, and group descriptors have their capture groups applied to the
+ * column names up front, so converting a row is a fixed sequence of column reads with no per-row
+ * name matching or maps. Rows are streamed through a reused {@link PredictionEvent} into a {@link
+ * ModelSession}, which batches them into bulk requests.
+ *
+ * <pre>
+ *   SchemaMapper mapper = SchemaMapper.compile(schema, source.getColumnNames());
+ *   try (ModelSession session = ModelSession.newBuilder(client, "modelId").build()) {
+ *     mapper.log(source, session);
+ *   }
+ * </pre>
+ *
+ * <p>Supported descriptors are prediction id, timestamp, prediction and actual labels and scores,
+ * features, tags, shap values, embedding features and exclude. Model id, version and environment
+ * come from the session. Embedding features map each name to the {@code vector}, {@code data} and
+ * {@code link_to_data} columns of its property map. A group descriptor without properties ranges
+ * over every column not used elsewhere; its capture group, if any, selects the columns whose names
+ * it matches and the matched text becomes the dimension name. Mappers are immutable and may be
+ * shared across threads.
+ */
+public final class SchemaMapper {
+
+  private static final int NONE = -1;
+
+  private final int predictionId;
+  private final int timestamp;
+  private final int predictionLabel;
+  private final int predictionScore;
+  private final int actualLabel;
+  private final int actualScore;
+  private final Dimension[] features;
+  private final Dimension[] tags;
+  private final Dimension[] shapValues;
+  private final EmbeddingColumns[] embeddings;
+
+  private SchemaMapper(final Compiler compiler) {
+    this.predictionId = compiler.predictionId;
+    this.timestamp = compiler.timestamp;
+    this.predictionLabel = compiler.predictionLabel;
+    this.predictionScore = compiler.predictionScore;
+    this.actualLabel = compiler.actualLabel;
+    this.actualScore = compiler.actualScore;
+    this.features = compiler.features;
+    this.tags = compiler.tags;
+    this.shapValues = compiler.shapValues;
+    this.embeddings = compiler.embeddings;
+  }
+
+  /**
+   * Resolves {@code schema} against a source's columns.
+   *
+   * @param columnNames the source's columns, see {@link RowSource#getColumnNames()}
+   * @throws IllegalArgumentException if the schema has no prediction id, names a column the source
+   *     lacks, has an invalid capture group or uses a descriptor this mapper does not support
+   */
+  public static SchemaMapper compile(final GenericSchema schema, final List<String> columnNames)
+      throws IllegalArgumentException {
+    if (schema == null) {
+      throw new IllegalArgumentException("schema cannot be null");
+    }
+    if (columnNames == null || columnNames.isEmpty()) {
+      throw new IllegalArgumentException("columnNames cannot be null or empty");
+    }
+    return new SchemaMapper(new Compiler(schema, columnNames));
+  }
+
+  /**
+   * Converts every remaining row of {@code source} and adds it to {@code session}. Records still
+   * buffered by the session when this returns are sent on its next flush or close.
+   *
+   * @return the number of rows read
+   * @throws IOException if the source cannot be read or a record cannot be serialized
+   * @throws IllegalArgumentException if a row holds a value of an unsupported type; the message
+   *     names the row, counting from 0
+   */
+  public long log(final RowSource source, final ModelSession session)
+      throws IOException, IllegalArgumentException {
+    if (source == null) {
+      throw new IllegalArgumentException("source cannot be null");
+    }
+    if (session == null) {
+      throw new IllegalArgumentException("session cannot be null");
+    }
+    final PredictionEvent event = new PredictionEvent();
+    long row = 0;
+    while (source.next()) {
+      try {
+        fill(event.clear(), source);
+        session.add(event);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("row " + row + ": " + e.getMessage(), e);
+      }
+      row++;
+    }
+    return row;
+  }
+
+  private void fill(final PredictionEvent event, final RowSource source) throws IOException {
+    final Object id = source.get(predictionId);
+    event.setPredictionId(id != null ? id.toString() : null);
+    if (timestamp != NONE) {
+      event.setTimestamp(toMillis(source.get(timestamp)));
+    }
+    if (predictionLabel != NONE) {
+      setPredictionLabel(event, source.get(predictionLabel), score(source, predictionScore));
+    }
+    if (actualLabel != NONE) {
+      setActualLabel(event, source.get(actualLabel), score(source, actualScore));
+    }
+    for (Dimension feature : features) {
+      final Object value = source.get(feature.column);
+      if (value != null) {
+        event.putFeature(feature.name, RecordUtil.convertValue(feature.name, value));
+      }
+    }
+    for (Dimension tag : tags) {
+      final Object value = source.get(tag.column);
+      if (value != null) {
+        event.putTag(tag.name, RecordUtil.convertValue(tag.name, value));
+      }
+    }
+    for (Dimension shap : shapValues) {
+      final Object value = source.get(shap.column);
+      if (value != null) {
+        event.setShapValue(shap.name, toDouble(shap.name, value));
+      }
+    }
+    for (EmbeddingColumns embedding : embeddings) {
+      final Value value = embedding.read(source);
+      if (value != null) {
+        event.putFeature(embedding.name, value);
+      }
+    }
+  }
+
+  private static Object score(final RowSource source, final int column) throws IOException {
+    return column != NONE ? source.get(column) : null;
+  }
+
+  private static void setPredictionLabel(
+      final PredictionEvent event, final Object label, final Object score) {
+    if (label == null) {
+      return;
+    }
+    if (score != null) {
+      event.setPredictionLabel(scored(label, score));
+    } else if (label instanceof Boolean) {
+      event.setPredictionLabel((boolean) (Boolean) label);
+    } else if (label instanceof Number) {
+      event.setPredictionLabel(((Number) label).doubleValue());
+    } else if (label instanceof String) {
+      event.setPredictionLabel((String) label);
+    } else {
+      throw new IllegalArgumentException(illegalLabel(label));
+    }
+  }
+
+  private static void setActualLabel(
+      final PredictionEvent event, final Object label, final Object score) {
+    if (label == null) {
+      return;
+    }
+    if (score != null) {
+      event.setActualLabel(scored(label, score));
+    } else if (label instanceof Boolean) {
+      event.setActualLabel((boolean) (Boolean) label);
+    } else if (label instanceof Number) {
+      event.setActualLabel(((Number) label).doubleValue());
+    } else if (label instanceof String) {
+      event.setActualLabel((String) label);
+    } else {
+      throw new IllegalArgumentException(illegalLabel(label));
+    }
+  }
+
+  private static ArizeClient.ScoredCategorical scored(final Object label, final Object score) {
+    return new ArizeClient.ScoredCategorical(label.toString(), toDouble("score", score));
+  }
+
+  private static String illegalLabel(final Object label) {
+    return "Illegal label " + label + ", must be oneof: boolean, String, number";
+  }
+
+  private static long toMillis(final Object value) {
+    if (value == null) {
+      return 0;
+    }
+    if (value instanceof Date) {
+      return ((Date) value).getTime();
+    }
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    throw new IllegalArgumentException(
+        "timestamp must be a Date or epoch milliseconds, found " + value.getClass());
+  }
+
+  private static double toDouble(final String name, final Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    throw new IllegalArgumentException(name + " must be numeric, found " + value.getClass());
+  }
+
+  /** A column read as a feature, tag or shap value under its dimension name. */
+  private static final class Dimension {
+    final String name;
+    final int column;
+
+    Dimension(final String name, final int column) {
+      this.name = name;
+      this.column = column;
+    }
+  }
+
+  /** The columns of one embedding feature; absent columns are {@link #NONE}. */
+  private static final class EmbeddingColumns {
+    final String name;
+    final int vector;
+    final int data;
+    final int linkToData;
+
+    EmbeddingColumns(final String name, final int vector, final int data, final int linkToData) {
+      this.name = name;
+      this.vector = vector;
+      this.data = data;
+      this.linkToData = linkToData;
+    }
+
+    /** @return the embedding of the current row, or null if all of its columns are missing */
+    Value read(final RowSource source) throws IOException {
+      final Object vectorValue = vector != NONE ? source.get(vector) : null;
+      final Object dataValue = data != NONE ? source.get(data) : null;
+      final Object link = linkToData != NONE ? source.get(linkToData) : null;
+      if (vectorValue == null && dataValue == null && link == null) {
+        return null;
+      }
+      final Public.Embedding.Builder embedding = Public.Embedding.newBuilder();
+      if (vectorValue != null) {
+        addVector(embedding, vectorValue);
+      }
+      if (dataValue != null) {
+        final Public.Embedding.TokenArray.Builder tokens = Public.Embedding.TokenArray.newBuilder();
+        if (dataValue instanceof List) {
+          for (Object token : (List<?>) dataValue) {
+            tokens.addTokens(String.valueOf(token));
+          }
+        } else if (dataValue instanceof Object[]) {
+          for (Object token : (Object[]) dataValue) {
+            tokens.addTokens(String.valueOf(token));
+          }
+        } else {
+          tokens.addTokens(dataValue.toString());
+        }
+        embedding.setRawData(Public.Embedding.RawData.newBuilder().setTokenArray(tokens));
+      }
+      if (link != null) {
+        embedding.setLinkToData(com.google.protobuf.StringValue.of(link.toString()));
+      }
+      return Value.newBuilder().setEmbedding(embedding).build();
+    }
+
+    private void addVector(final Public.Embedding.Builder embedding, final Object value) {
+      if (value instanceof float[]) {
+        for (float element : (float[]) value) {
+          embedding.addVector(element);
+        }
+      } else if (value instanceof double[]) {
+        for (double element : (double[]) value) {
+          embedding.addVector(element);
+        }
+      } else if (value instanceof List) {
+        for (Object element : (List<?>) value) {
+          embedding.addVector(toDouble(name, element));
+        }
+      } else if (value instanceof Object[]) {
+        for (Object element : (Object[]) value) {
+          embedding.addVector(toDouble(name, element));
+        }
+      } else {
+        throw new IllegalArgumentException(
+            "embedding vector " + name + " must be an array or list, found " + value.getClass());
+      }
+    }
+  }
+
+  /** Resolves a schema against column names; used once per {@link #compile} call. */
+  private static final class Compiler {
+    final Map<String, Integer> columns = new HashMap<>();
+    final Set<Integer> claimed = new HashSet<>();
+    final List<String> columnNames;
+
+    int predictionId;
+    int timestamp;
+    int predictionLabel;
+    int predictionScore;
+    int actualLabel;
+    int actualScore;
+    Dimension[] features;
+    Dimension[] tags;
+    Dimension[] shapValues;
+    EmbeddingColumns[] embeddings;
+
+    Compiler(final GenericSchema schema, final List<String> columnNames) {
+      this.columnNames = columnNames;
+      for (int i = 0; i < columnNames.size(); i++) {
+        columns.putIfAbsent(columnNames.get(i), i);
+      }
+      rejectUnsupported(schema);
+      if (!schema.hasPredictionId()) {
+        throw new IllegalArgumentException("schema must map prediction_id");
+      }
+      predictionId = field(schema.getPredictionId(), "prediction_id");
+      timestamp = schema.hasTimestamp() ? field(schema.getTimestamp(), "timestamp") : NONE;
+      predictionLabel =
+          schema.hasPredictionLabel()
+              ? field(schema.getPredictionLabel(), "prediction_label")
+              : NONE;
+      predictionScore =
+          schema.hasPredictionScore()
+              ? field(schema.getPredictionScore(), "prediction_score")
+              : NONE;
+      actualLabel =
+          schema.hasActualLabel() ? field(schema.getActualLabel(), "actual_label") : NONE;
+      actualScore =
+          schema.hasActualScore() ? field(schema.getActualScore(), "actual_score") : NONE;
+      if (schema.hasExclude()) {
+        for (String column : schema.getExclude().getPropertiesList()) {
+          final Integer index = columns.get(column);
+          if (index != null) {
+            claimed.add(index);
+          }
+        }
+      }
+      final List<EmbeddingColumns> embeddingColumns = new ArrayList<>();
+      if (schema.hasEmbeddingFeatures()) {
+        for (Map.Entry<String, GenericSchema.EmbeddingFieldDescriptor.EmbeddingPropertyMap> entry :
+            schema.getEmbeddingFeatures().getPropertiesMap().entrySet()) {
+          final Map<String, String> properties = entry.getValue().getPropertiesMapMap();
+          embeddingColumns.add(
+              new EmbeddingColumns(
+                  entry.getKey(),
+                  optionalColumn(properties.get("vector")),
+                  optionalColumn(properties.get("data")),
+                  optionalColumn(properties.get("link_to_data"))));
+        }
+      }
+      embeddings = embeddingColumns.toArray(new EmbeddingColumns[0]);
+      // explicit columns of every group are claimed before any open group ranges over the rest
+      claimExplicit(schema.hasFeatures() ? schema.getFeatures() : null);
+      claimExplicit(schema.hasTags() ? schema.getTags() : null);
+      claimExplicit(schema.hasShapValues() ? schema.getShapValues() : null);
+      final Set<Integer> openGroupSeen = new HashSet<>(claimed);
+      features =
+          group(schema.hasFeatures() ? schema.getFeatures() : null, openGroupSeen, "features");
+      tags = group(schema.hasTags() ? schema.getTags() : null, openGroupSeen, "tags");
+      shapValues = shapGroup(schema, openGroupSeen);
+    }
+
+    private static void rejectUnsupported(final GenericSchema schema) {
+      for (com.google.protobuf.Descriptors.FieldDescriptor field :
+          schema.getAllFields().keySet()) {
+        switch (field.getName()) {
+          case "prediction_id":
+          case "timestamp":
+          case "prediction_label":
+          case "prediction_score":
+          case "actual_label":
+          case "actual_score":
+          case "features":
+          case "tags":
+          case "shap_values":
+          case "embedding_features":
+          case "exclude":
+            break;
+          default:
+            throw new IllegalArgumentException(field.getName() + " is not supported");
+        }
+      }
+    }
+
+    private int field(final GenericSchema.FieldDescriptor descriptor, final String name) {
+      if (descriptor.getPropertiesCount() != 1) {
+        throw new IllegalArgumentException(name + " must name exactly one column");
+      }
+      return claim(descriptor.getProperties(0));
+    }
+
+    private int optionalColumn(final String column) {
+      if (column == null || column.isEmpty()) {
+        return NONE;
+      }
+      return claim(column);
+    }
+
+    private int claim(final String column) {
+      final Integer index = columns.get(column);
+      if (index == null) {
+        throw new IllegalArgumentException("column " + column + " is not in the source");
+      }
+      claimed.add(index);
+      return index;
+    }
+
+    private void claimExplicit(final GenericSchema.GroupFieldDescriptor group) {
+      if (group != null) {
+        for (String column : group.getPropertiesList()) {
+          claim(column);
+        }
+      }
+    }
+
+    /**
+     * Resolves a group to its columns. A group listing properties uses exactly those columns; one
+     * without ranges over every column no other descriptor or open group has taken.
+     */
+    private Dimension[] group(
+        final GenericSchema.GroupFieldDescriptor group,
+        final Set<Integer> openGroupSeen,
+        final String name) {
+      if (group == null) {
+        return new Dimension[0];
+      }
+      final Pattern captureGroup = captureGroup(group.getCaptureGroup(), name);
+      final List<Dimension> dimensions = new ArrayList<>();
+      if (group.getPropertiesCount() > 0) {
+        for (String column : group.getPropertiesList()) {
+          addDimension(dimensions, captureGroup, column, columns.get(column));
+        }
+      } else {
+        for (int i = 0; i < columnNames.size(); i++) {
+          if (!openGroupSeen.contains(i)
+              && addDimension(dimensions, captureGroup, columnNames.get(i), i)) {
+            openGroupSeen.add(i);
+          }
+        }
+      }
+      return dimensions.toArray(new Dimension[0]);
+    }
+
+    /** Shap values are only kept for dimensions that are also features. */
+    private Dimension[] shapGroup(final GenericSchema schema, final Set<Integer> openGroupSeen) {
+      final Dimension[] shap =
+          group(schema.hasShapValues() ? schema.getShapValues() : null, openGroupSeen, "shap");
+      final Set<String> featureNames = new HashSet<>();
+      for (Dimension feature : features) {
+        featureNames.add(feature.name);
+      }
+      final List<Dimension> kept = new ArrayList<>(shap.length);
+      for (Dimension dimension : shap) {
+        if (featureNames.contains(dimension.name)) {
+          kept.add(dimension);
+        }
+      }
+      return kept.toArray(new Dimension[0]);
+    }
+
+    private static Pattern captureGroup(final String captureGroup, final String name) {
+      if (captureGroup.isEmpty()) {
+        return null;
+      }
+      try {
+        return Pattern.compile(captureGroup);
+      } catch (PatternSyntaxException e) {
+        throw new IllegalArgumentException(
+            "capture_group of " + name + " is not a valid pattern: " + captureGroup, e);
+      }
+    }
+
+    /** @return whether the column matched the capture group and was added */
+    private static boolean addDimension(
+        final List<Dimension> dimensions,
+        final Pattern captureGroup,
+        final String column,
+        final int index) {
+      String name = column;
+      if (captureGroup != null) {
+        final Matcher matcher = captureGroup.matcher(column);
+        if (!matcher.find() || matcher.group().isEmpty()) {
+          return false;
+        }
+        name =
+            matcher.groupCount() > 0 && matcher.group(1) != null
+                ? matcher.group(1)
+                : matcher.group();
+      }
+      dimensions.add(new Dimension(name, index));
+      return true;
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.arize;
+
+/**
+ * What a {@link ArizeClient#shutdown} left undelivered: records still queued in a {@link
+ * RecordBatcher} when the deadline passed or held by a batcher, {@link ModelSession} or {@link
+ * PredictionActualJoiner} whose request the client did not accept, and requests that had not
+ * completed and were aborted when the connection closed. An aborted bulk request may carry many
+ * records.
+ */
+public final class ShutdownReport {
+
+  private final long recordsDropped;
+  private final int requestsAborted;
+
+  ShutdownReport(final long recordsDropped, final int requestsAborted) {
+    this.recordsDropped = recordsDropped;
+    this.requestsAborted = requestsAborted;
+  }
+
+  /** @return true if every held record was sent and every request completed */
+  public boolean isComplete() {
+    return recordsDropped == 0 && requestsAborted == 0;
+  }
+
+  /** @return the number of held records that were never sent */
+  public long getRecordsDropped() {
+    return recordsDropped;
+  }
+
+  /** @return the number of requests still in flight when the connection was closed */
+  public int getRequestsAborted() {
+    return requestsAborted;
+  }
+
+  @Override
+  public String toString() {
+    return recordsDropped + " records dropped, " + requestsAborted + " requests aborted";
+  }
+}
@@ -0,0 +1,32 @@
+package com.arize;
+
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.Timestamps;
+
+/**
+ * Converts epoch milliseconds to {@link Timestamp} messages for one batch, handing out the same
+ * immutable instance for rows that share a timestamp. Batches logged from a single clock read, or
+ * from data bucketed to the second, usually repeat a few values many times over; a small
+ * direct-mapped table catches those repeats even when rows are interleaved. Not thread-safe; create
+ * one per batch.
+ */
+final class TimestampCache {
+
+  private static final int SLOTS = 64;
+
+  private final long[] millis = new long[SLOTS];
+  private final Timestamp[] timestamps = new Timestamp[SLOTS];
+
+  /** @throws IllegalArgumentException if {@code epochMillis} is outside the protobuf range */
+  Timestamp fromMillis(final long epochMillis) {
+    final int slot = (int) (epochMillis ^ (epochMillis >>> 32)) & (SLOTS - 1);
+    final Timestamp cached = timestamps[slot];
+    if (cached != null && millis[slot] == epochMillis) {
+      return cached;
+    }
+    final Timestamp timestamp = Timestamps.fromMillis(epochMillis);
+    millis[slot] = epochMillis;
+    timestamps[slot] = timestamp;
+    return timestamp;
+  }
+}
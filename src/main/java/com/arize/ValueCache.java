@@ -0,0 +1,101 @@
+package com.arize;
+
+import com.arize.protocol.Public.Value;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of prebuilt {@link Value} messages for low-cardinality feature and tag values: short
+ * strings, booleans and small integers. Protobuf messages are immutable, so one instance can be
+ * shared by every record that carries the same value.
+ *
+ * <p>Strings live in a fixed-size, direct-mapped table: each string hashes to one slot, and a miss
+ * replaces whatever the slot held. The cache therefore never grows, needs no locks, and keeps the
+ * values that recur most often. Small integers and booleans are held in dedicated tables.
+ */
+public final class ValueCache {
+
+  /** Longer strings are assumed to be free text and are not cached. */
+  static final int MAX_STRING_LENGTH = 64;
+
+  static final int DEFAULT_CAPACITY = 4096;
+
+  private static final int SMALL_INT_MIN = -128;
+  private static final int SMALL_INT_MAX = 1023;
+
+  private static final Value TRUE = Value.newBuilder().setString("true").build();
+  private static final Value FALSE = Value.newBuilder().setString("false").build();
+
+  private final AtomicReferenceArray<Value> strings;
+  private final AtomicReferenceArray<Value> smallInts =
+      new AtomicReferenceArray<>(SMALL_INT_MAX - SMALL_INT_MIN + 1);
+  private final int mask;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  ValueCache(final int capacity) {
+    if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("capacity must be a positive power of 2");
+    }
+    this.strings = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+  }
+
+  Value string(final String value) {
+    if (value.length() > MAX_STRING_LENGTH) {
+      return Value.newBuilder().setString(value).build();
+    }
+    int h = value.hashCode();
+    h ^= h >>> 16;
+    final int slot = h & mask;
+    final Value cached = strings.get(slot);
+    if (cached != null && cached.getString().equals(value)) {
+      hits.increment();
+      return cached;
+    }
+    misses.increment();
+    final Value built = Value.newBuilder().setString(value).build();
+    strings.lazySet(slot, built);
+    return built;
+  }
+
+  Value integer(final long value) {
+    if (value < SMALL_INT_MIN || value > SMALL_INT_MAX) {
+      return Value.newBuilder().setInt(value).build();
+    }
+    final int slot = (int) value - SMALL_INT_MIN;
+    final Value cached = smallInts.get(slot);
+    if (cached != null) {
+      hits.increment();
+      return cached;
+    }
+    misses.increment();
+    final Value built = Value.newBuilder().setInt(value).build();
+    smallInts.lazySet(slot, built);
+    return built;
+  }
+
+  Value bool(final boolean value) {
+    hits.increment();
+    return value ? TRUE : FALSE;
+  }
+
+  /** @return lookups answered from the cache */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /** @return cacheable lookups that had to build a new value */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /** @return fraction of cacheable lookups answered from the cache, 0 before any lookup */
+  public double getHitRate() {
+    final long h = hits.sum();
+    final long total = h + misses.sum();
+    return total == 0 ? 0.0 : h / (double) total;
+  }
+}
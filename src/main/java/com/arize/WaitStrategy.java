@@ -0,0 +1,51 @@
+package com.arize;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waits on the record ring buffer when it cannot make progress: a producer waiting for
+ * a free slot, or the consumer waiting for a published record.
+ */
+public enum WaitStrategy {
+
+  /** Spin without yielding. Lowest hand-off latency, burns a core per waiting thread. */
+  BUSY_SPIN {
+    @Override
+    void idle(final int attempt) {
+      // spin
+    }
+  },
+
+  /** Spin briefly, then yield the processor to other runnable threads. */
+  YIELD {
+    @Override
+    void idle(final int attempt) {
+      if (attempt > SPIN_TRIES) {
+        Thread.yield();
+      }
+    }
+  },
+
+  /** Spin briefly, yield for a while, then park for short intervals. Friendliest to shared hosts. */
+  PARK {
+    @Override
+    void idle(final int attempt) {
+      if (attempt > SPIN_TRIES + YIELD_TRIES) {
+        LockSupport.parkNanos(PARK_NANOS);
+      } else if (attempt > SPIN_TRIES) {
+        Thread.yield();
+      }
+    }
+  };
+
+  private static final int SPIN_TRIES = 100;
+  private static final int YIELD_TRIES = 100;
+  private static final long PARK_NANOS = 50_000L;
+
+  /**
+   * Waits once.
+   *
+   * @param attempt how many times the caller has already waited for the current condition
+   */
+  abstract void idle(int attempt);
+}
@@ -0,0 +1,72 @@
+package com.arize;
+
+import com.arize.protocol.Public;
+import com.arize.protocol.Public.Record;
+import com.arize.protocol.Public.Value;
+import com.google.protobuf.util.Timestamps;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Pays the one-time costs of the record path ahead of the first request: static initialization of
+ * the generated protocol file and its descriptors, the well-known types and printer state {@link
+ * com.google.protobuf.util.JsonFormat} sets up on first use, and the field accessors of every
+ * message a typical record carries. See {@link ArizeClient#warmUp()}.
+ */
+final class WarmUp {
+
+  private static volatile boolean done;
+
+  private WarmUp() {}
+
+  static void run() {
+    if (done) {
+      return;
+    }
+    final Public.Prediction.Builder prediction =
+        Public.Prediction.newBuilder()
+            .setModelVersion("v")
+            .setTimestamp(Timestamps.fromMillis(System.currentTimeMillis()))
+            .setLabel(RecordUtil.numericLabel(1.0))
+            .putFeatures("string", RecordUtil.VALUE_CACHE.string("s"))
+            .putFeatures("int", RecordUtil.VALUE_CACHE.integer(1))
+            .putFeatures("double", Value.newBuilder().setDouble(1.0).build())
+            .putFeatures(
+                "multi",
+                Value.newBuilder()
+                    .setMultiValue(Public.MultiValue.newBuilder().addValues("s"))
+                    .build())
+            .putFeatures(
+                "embedding",
+                RecordUtil.convertValue(
+                    "embedding",
+                    new com.arize.types.Embedding(
+                        Arrays.asList(1.0, 2.0), Collections.singletonList("s"), "l")))
+            .putTags("tag", RecordUtil.VALUE_CACHE.bool(true));
+    final Record record =
+        Record.newBuilder()
+            .setModelId("m")
+            .setPredictionId("p")
+            .setPrediction(prediction)
+            .setActual(
+                Public.Actual.newBuilder()
+                    .setLabel(RecordUtil.categoricalLabel("c"))
+                    .setTimestamp(prediction.getTimestamp()))
+            .setFeatureImportances(
+                Public.FeatureImportances.newBuilder().putFeatureImportances("int", 0.5))
+            .setEnvironmentParams(
+                RecordUtil.environmentParams(ModelSession.Environment.PRODUCTION, null))
+            .build();
+    LabelKind.infer(Collections.singletonList(1.0));
+    try {
+      RecordUtil.toJSON(record);
+      RecordUtil.toJSON(Public.BulkRecord.newBuilder().setModelId("m").addRecords(record));
+    } catch (IOException e) {
+      // the sample record always serializes
+      throw new IllegalStateException(e);
+    }
+    done = true;
+  }
+}
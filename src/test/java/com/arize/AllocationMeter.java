@@ -0,0 +1,57 @@
+package com.arize;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures bytes allocated by the current thread. Relies on the HotSpot {@code
+ * com.sun.management.ThreadMXBean} extension; {@link #isSupported()} reports whether it is
+ * available so callers can skip measurement on other JVMs.
+ */
+public final class AllocationMeter {
+
+  private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+  private AllocationMeter() {}
+
+  public static boolean isSupported() {
+    return THREADS != null;
+  }
+
+  /**
+   * Runs the task {@code iterations} times after a warm-up pass and returns the mean number of
+   * bytes allocated per iteration on the calling thread.
+   */
+  public static double bytesPerOp(final int iterations, final ThrowingRunnable task)
+      throws Exception {
+    for (int i = 0; i < iterations; i++) {
+      task.run();
+    }
+    final long threadId = Thread.currentThread().getId();
+    final long before = THREADS.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      task.run();
+    }
+    final long after = THREADS.getThreadAllocatedBytes(threadId);
+    return (after - before) / (double) iterations;
+  }
+
+  private static com.sun.management.ThreadMXBean threadBean() {
+    try {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        if (threads.isThreadAllocatedMemorySupported()) {
+          threads.setThreadAllocatedMemoryEnabled(true);
+          return threads;
+        }
+      }
+    } catch (LinkageError | UnsupportedOperationException e) {
+      // not a HotSpot JVM
+    }
+    return null;
+  }
+
+  public interface ThrowingRunnable {
+    void run() throws Exception;
+  }
+}
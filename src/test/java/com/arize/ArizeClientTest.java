@@ -26,10 +26,17 @@ import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class ArizeClientTest {
@@ -468,6 +475,932 @@ public class ArizeClientTest {
     Assert.assertEquals(expectedTime, posts.get(0).getPrediction().getTimestamp());
   }
 
+  @Test
+  public void testBulkLogWithTimestamps()
+      throws IOException, ExecutionException, InterruptedException {
+    List<String> ids = Arrays.asList("one", "two", "three");
+    List<Double> labels = Arrays.asList(1.0, 2.0, 3.0);
+    long[] timestamps = {1596560235000L, 1596560235000L, 1596560236500L};
+    Response response =
+        client.bulkLogWithTimestamps(
+            "modelId", null, ids, null, null, null, labels, labels, null, timestamps);
+    try {
+      response.resolve(10, TimeUnit.SECONDS);
+    } catch (TimeoutException e) {
+      Assert.fail("timeout waiting for server: " + e.getMessage());
+    }
+    List<Record> records = bulkPosts.get(0).getRecordsList();
+    Assert.assertEquals(3, records.size());
+    for (int i = 0; i < records.size(); i++) {
+      Timestamp expected = Timestamps.fromMillis(timestamps[i]);
+      Assert.assertEquals(expected, records.get(i).getPrediction().getTimestamp());
+      Assert.assertEquals(expected, records.get(i).getActual().getTimestamp());
+    }
+    try {
+      client.bulkLogWithTimestamps(
+          "modelId", null, ids, null, null, null, labels, null, null, new long[2]);
+      Assert.fail("expected mismatched timestamps to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(
+          "predictionIds.size() must equal predictionTimestamps.length", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testBulkLogPreProduction()
+      throws IOException, ExecutionException, InterruptedException {
+    List<String> ids = Arrays.asList("one", "two");
+    List<String> predictions = Arrays.asList("cat", "dog");
+    List<String> actuals = Arrays.asList("cat", "cat");
+    Response training =
+        client.bulkLogTraining("modelId", "v1", ids, null, null, null, predictions, actuals);
+    Response validation =
+        client.bulkLogValidation(
+            "modelId", "v1", "batch", ids, null, null, null, predictions, actuals);
+    try {
+      training.resolve(10, TimeUnit.SECONDS);
+      validation.resolve(10, TimeUnit.SECONDS);
+    } catch (TimeoutException e) {
+      Assert.fail("timeout waiting for server: " + e.getMessage());
+    }
+    Assert.assertEquals(2, bulkPosts.size());
+    int trainingRecords = 0;
+    int validationRecords = 0;
+    for (Public.BulkRecord post : bulkPosts) {
+      for (Record record : post.getRecordsList()) {
+        Assert.assertEquals("v1", record.getPrediction().getModelVersion());
+        Assert.assertEquals(
+            record.getPredictionId().equals("one") ? "cat" : "dog",
+            record.getPrediction().getLabel().getCategorical());
+        Assert.assertEquals("cat", record.getActual().getLabel().getCategorical());
+        Record.EnvironmentParams environment = record.getEnvironmentParams();
+        if (environment.hasTraining()) {
+          trainingRecords++;
+        } else {
+          Assert.assertEquals("batch", environment.getValidation().getBatchId());
+          validationRecords++;
+        }
+      }
+    }
+    Assert.assertEquals(2, trainingRecords);
+    Assert.assertEquals(2, validationRecords);
+    try {
+      client.bulkLogValidation("modelId", "v1", null, ids, null, null, null, predictions, actuals);
+      Assert.fail("expected a missing batch id to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("batchId cannot be null or empty", e.getMessage());
+    }
+    try {
+      client.bulkLogTraining("modelId", "v1", ids, null, null, null, predictions, null);
+      Assert.fail("expected missing actuals to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(
+          "actualLabels cannot be null and must be the same length as predictionIds",
+          e.getMessage());
+    }
+  }
+
+  @Test
+  public void testBulkLogReportsEveryInvalidRow() throws IOException {
+    List<String> ids = Arrays.asList("one", "two", "three", "four");
+    List<Object> labels = Arrays.asList(1.0, new Object(), 3.0, 4.0);
+    List<Map<String, ?>> features = new ArrayList<>();
+    features.add(Collections.singletonMap("a", 1));
+    features.add(Collections.singletonMap("a", 2));
+    features.add(Collections.singletonMap("a", new int[] {3}));
+    features.add(Collections.singletonMap("a", Arrays.asList("x", 4)));
+
+    BulkValidationReport report =
+        client.validateBulk(ids, features, null, null, labels, null, null);
+    Assert.assertFalse(report.isValid());
+    Assert.assertEquals(3, report.getInvalidRowCount());
+    Assert.assertTrue(report.isRowValid(0));
+    Assert.assertEquals(1, report.getViolations().get(0).getRow());
+    Assert.assertEquals("predictionLabels", report.getViolations().get(0).getField());
+    Assert.assertEquals(2, report.getViolations().get(1).getRow());
+    Assert.assertEquals("features", report.getViolations().get(1).getField());
+    Assert.assertEquals(3, report.getViolations().get(2).getRow());
+
+    try {
+      client.bulkLog("modelId", null, ids, features, null, null, labels, null, null, null);
+      Assert.fail("expected invalid rows to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("3 of 4 rows are invalid"));
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("row 2 features"));
+    }
+    Assert.assertTrue(bulkPosts.isEmpty());
+  }
+
+  @Test
+  public void testBulkLogDropsInvalidRows()
+      throws IOException, ExecutionException, InterruptedException {
+    client.setDropInvalidRows(true);
+    List<String> ids = Arrays.asList("one", "two", "three");
+    List<Object> predictions = Arrays.asList(1.0, 2.0, "three");
+    List<Object> actuals = Arrays.asList(1.0, 2, "three");
+    Response response =
+        client.bulkLog("modelId", null, ids, null, null, null, predictions, actuals, null, null);
+    try {
+      response.resolve(10, TimeUnit.SECONDS);
+    } catch (TimeoutException e) {
+      Assert.fail("timeout waiting for server: " + e.getMessage());
+    }
+    List<Record> records = bulkPosts.get(0).getRecordsList();
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals("one", records.get(0).getPredictionId());
+    Assert.assertEquals("three", records.get(1).getPredictionId());
+
+    try {
+      client.bulkLog(
+          "modelId",
+          null,
+          Arrays.asList("four"),
+          null,
+          null,
+          null,
+          Arrays.asList(new Object()),
+          null,
+          null,
+          null);
+      Assert.fail("expected a batch without valid rows to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("1 of 1 rows are invalid"));
+    }
+  }
+
+  @Test
+  public void testLogNumeric() throws IOException, ExecutionException, InterruptedException {
+    Response response =
+        client.logNumeric(
+            "modelId", "v1", "predictionId", intFeatures, null, null, 20.2, Double.NaN, null, 0);
+    try {
+      response.resolve(10, TimeUnit.SECONDS);
+    } catch (TimeoutException e) {
+      Assert.fail("timeout waiting for server: " + e.getMessage());
+    }
+    Record record = posts.get(0);
+    Assert.assertEquals(20.2, record.getPrediction().getLabel().getNumeric(), 0);
+    Assert.assertEquals("v1", record.getPrediction().getModelVersion());
+    Assert.assertEquals(intFeatures.size(), record.getPrediction().getFeaturesCount());
+    Assert.assertFalse(record.hasActual());
+  }
+
+  @Test
+  public void testBulkLogNumeric() throws IOException, ExecutionException, InterruptedException {
+    List<String> ids = Arrays.asList("one", "two");
+    Response response =
+        client.bulkLogNumeric(
+            "modelId",
+            null,
+            ids,
+            null,
+            null,
+            null,
+            new double[] {1.5, -2},
+            new double[] {1.25, 3e10},
+            null,
+            null);
+    try {
+      response.resolve(10, TimeUnit.SECONDS);
+    } catch (TimeoutException e) {
+      Assert.fail("timeout waiting for server: " + e.getMessage());
+    }
+    List<Record> records = bulkPosts.get(0).getRecordsList();
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals(-2, records.get(1).getPrediction().getLabel().getNumeric(), 0);
+    Assert.assertEquals(3e10, records.get(1).getActual().getLabel().getNumeric(), 0);
+    try {
+      client.bulkLogNumeric("modelId", null, ids, null, null, null, new double[1], null, null, null);
+      Assert.fail("expected mismatched labels to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("predictionIds.size() must equal predictionLabels.length", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testLogPredictionEvent()
+      throws IOException, ExecutionException, InterruptedException, TimeoutException {
+    Map<String, Object> features = new HashMap<>();
+    features.put("age", 42);
+    features.put("score", 0.5);
+    features.put("state", "CA");
+    features.put("vip", true);
+    features.put(
+        "image", new com.arize.types.Embedding(Arrays.asList(1.0, 2.0), null, null));
+    Map<String, Object> tags = Collections.singletonMap("region", "us-west");
+    Map<String, Double> shap = Collections.singletonMap("age", 0.25);
+    client
+        .log("modelId", "v1", "one", features, null, tags, 0.87, 1.0, shap, 1596560235000L)
+        .resolve(10, TimeUnit.SECONDS);
+
+    PredictionEvent event = new PredictionEvent();
+    event
+        .setModelId("modelId")
+        .setModelVersion("v1")
+        .setPredictionId("one")
+        .setTimestamp(1596560235000L)
+        .setFeature("age", 42)
+        .setFeature("score", 0.5)
+        .setFeature("state", "CA")
+        .setFeature("vip", true)
+        .setEmbedding("image", new float[] {1, 2})
+        .setTag("region", "us-west")
+        .setShapValue("age", 0.25)
+        .setPredictionLabel(0.87)
+        .setActualLabel(1.0);
+    client.log(event).resolve(10, TimeUnit.SECONDS);
+    Assert.assertEquals(posts.get(0), posts.get(1));
+
+    event.clear().setModelId("modelId").setPredictionId("two").setActualLabel("cat");
+    client.log(event).resolve(10, TimeUnit.SECONDS);
+    Record actualOnly = posts.get(2);
+    Assert.assertFalse(actualOnly.hasPrediction());
+    Assert.assertFalse(actualOnly.hasFeatureImportances());
+    Assert.assertEquals("cat", actualOnly.getActual().getLabel().getCategorical());
+    Assert.assertEquals(0, actualOnly.getActual().getTagsCount());
+
+    event.clear().setModelId("modelId").setPredictionId("three");
+    event.setPredictionLabel(true).setActualLabel("cat");
+    try {
+      client.log(event);
+      Assert.fail("expected mismatched label kinds to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("must be of the same type"));
+    }
+  }
+
+  @Test
+  public void testLogLlmRecord()
+      throws IOException, ExecutionException, InterruptedException, TimeoutException {
+    Map<String, Object> params = new HashMap<>();
+    params.put("temperature", 0.2);
+    params.put("max_tokens", 256);
+    LlmFields llm =
+        LlmFields.newBuilder()
+            .setModelName("gpt-4")
+            .setParams(params)
+            .setPromptTemplate("Answer: {{question}}")
+            .setPromptTemplateName("qa")
+            .build();
+    LlmFields same =
+        LlmFields.newBuilder()
+            .setModelName("gpt-4")
+            .setParams(params)
+            .setPromptTemplate("Answer: {{question}}")
+            .setPromptTemplateName("qa")
+            .build();
+    Assert.assertSame(llm, same);
+
+    PredictionEvent event = new PredictionEvent();
+    event
+        .setModelId("modelId")
+        .setPredictionId("one")
+        .setEmbedding("prompt", new float[] {0.5f, 0.25f}, "What is Arize?")
+        .setLlmFields(llm)
+        .addRetrievedDocumentId("doc-1")
+        .addRetrievedDocumentId("doc-2");
+    client.log(event).resolve(10, TimeUnit.SECONDS);
+    Record record = posts.get(0);
+    Assert.assertTrue(record.getIsGenerativeLlmRecord().getValue());
+    Public.Prediction prediction = record.getPrediction();
+    Assert.assertFalse(prediction.hasLabel());
+    Assert.assertEquals("gpt-4", prediction.getLlmFields().getLlmModelName());
+    Assert.assertEquals("qa", prediction.getLlmFields().getPromptTemplateName());
+    Assert.assertEquals(
+        0.2, prediction.getLlmFields().getLlmParamsOrThrow("temperature").getDouble(), 0);
+    Assert.assertEquals(
+        256, prediction.getLlmFields().getLlmParamsOrThrow("max_tokens").getInt());
+    Assert.assertEquals(
+        Arrays.asList("doc-1", "doc-2"), prediction.getRetrievedDocumentIdsList());
+    Public.Embedding prompt = prediction.getFeaturesOrThrow("prompt").getEmbedding();
+    Assert.assertEquals(Arrays.asList(0.5, 0.25), prompt.getVectorList());
+    Assert.assertEquals(
+        Collections.singletonList("What is Arize?"),
+        prompt.getRawData().getTokenArray().getTokensList());
+
+    event.clear().setModelId("modelId").setPredictionId("two").setPredictionLabel("cat");
+    client.log(event).resolve(10, TimeUnit.SECONDS);
+    Assert.assertFalse(posts.get(1).hasIsGenerativeLlmRecord());
+    Assert.assertFalse(posts.get(1).getPrediction().hasLlmFields());
+    Assert.assertEquals(0, posts.get(1).getPrediction().getRetrievedDocumentIdsCount());
+  }
+
+  @Test
+  public void testModelSession()
+      throws IOException, ExecutionException, InterruptedException, TimeoutException {
+    ModelSession session =
+        ModelSession.newBuilder(client, "modelId")
+            .setModelVersion("v1")
+            .setEnvironment(ModelSession.Environment.VALIDATION)
+            .setBatchId("batch")
+            .setMaxBatchSize(2)
+            .build();
+    session.add("one", intFeatures, null, null, 1.0, null, null, 0);
+    session.addNumeric("two", null, null, null, 2.0, Double.NaN, null, 0);
+    Assert.assertEquals(0, session.size());
+    session.add(new PredictionEvent().setPredictionId("three").setActualLabel(3.0));
+    Assert.assertEquals(1, session.size());
+    session.flush().resolve(10, TimeUnit.SECONDS);
+    session.close();
+    Assert.assertNull(session.flush());
+    try {
+      session.addNumeric("four", null, null, null, 4.0, Double.NaN, null, 0);
+      Assert.fail("expected a closed session to reject records");
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(e.getMessage().contains("closed"));
+    }
+
+    Assert.assertEquals(2, session.getBatchesSent());
+    // the full batch was sent asynchronously from add; it may land after the flushed one
+    for (int i = 0; i < 100 && bulkPosts.size() < 2; i++) {
+      Thread.sleep(50);
+    }
+    Assert.assertEquals(2, bulkPosts.size());
+    int full = bulkPosts.get(0).getRecordsCount() == 2 ? 0 : 1;
+    Public.BulkRecord first = bulkPosts.get(full);
+    Assert.assertEquals("modelId", first.getModelId());
+    Assert.assertEquals("v1", first.getModelVersion());
+    Assert.assertEquals("spaceKey", first.getSpaceKey());
+    Assert.assertEquals(2, first.getRecordsCount());
+    Record one = first.getRecords(0);
+    Assert.assertEquals("", one.getModelId());
+    Assert.assertEquals("", one.getPrediction().getModelVersion());
+    Assert.assertEquals(intFeatures.size(), one.getPrediction().getFeaturesCount());
+    Assert.assertEquals("batch", one.getEnvironmentParams().getValidation().getBatchId());
+    Assert.assertEquals("", one.getSpaceKey());
+    Assert.assertEquals(2.0, first.getRecords(1).getPrediction().getLabel().getNumeric(), 0);
+    Record three = bulkPosts.get(1 - full).getRecords(0);
+    Assert.assertEquals("three", three.getPredictionId());
+    Assert.assertEquals(3.0, three.getActual().getLabel().getNumeric(), 0);
+  }
+
+  @Test
+  public void testModelSessionPreProductionIsNotSampled() throws Exception {
+    client.setSampler(Samplers.fixedRate(0.0));
+    ModelSession training =
+        ModelSession.newBuilder(client, "modelId")
+            .setEnvironment(ModelSession.Environment.TRAINING)
+            .build();
+    training.add("one", intFeatures, null, null, 1.0, 1.0, null, 0);
+    training.addNumeric("two", null, null, null, 2.0, 2.0, null, 0);
+    training.add(new PredictionEvent().setPredictionId("three").setPredictionLabel(3.0));
+    training.flush().resolve(10, TimeUnit.SECONDS);
+    training.close();
+    Assert.assertEquals(0, training.getRecordsDropped());
+    Assert.assertEquals(3, bulkPosts.get(0).getRecordsCount());
+
+    ModelSession production = ModelSession.newBuilder(client, "modelId").build();
+    production.add("four", intFeatures, null, null, 1.0, null, null, 0);
+    production.close();
+    Assert.assertEquals(1, production.getRecordsDropped());
+    Assert.assertEquals(1, bulkPosts.size());
+  }
+
+  @Test
+  public void testSchemaMapper()
+      throws IOException, ExecutionException, InterruptedException, TimeoutException {
+    List<String> columns =
+        Arrays.asList(
+            "id", "ts", "pred", "score", "actual", "ascore", "p1_feature1", "p1_feature2", "region",
+            "feature1_shap", "vec", "text", "ignored");
+    List<Object[]> rows =
+        Arrays.asList(
+            new Object[] {
+              1, new Date(1596560235000L), "cat", 0.75, "cat", 1.0, 3, "a", "us", 0.5,
+              new float[] {1, 2}, "hello", "x"
+            },
+            new Object[] {
+              "two", 1596560236000L, "dog", 0.25, null, null, null, "b", "eu", null, null, null,
+              "y"
+            });
+    RowSource source =
+        new RowSource() {
+          private int row = -1;
+
+          @Override
+          public List<String> getColumnNames() {
+            return columns;
+          }
+
+          @Override
+          public boolean next() {
+            return ++row < rows.size();
+          }
+
+          @Override
+          public Object get(int column) {
+            return rows.get(row)[column];
+          }
+        };
+    Public.Schema.GenericSchema schema =
+        Public.Schema.GenericSchema.newBuilder()
+            .setPredictionId(field("id"))
+            .setTimestamp(field("ts"))
+            .setPredictionLabel(field("pred"))
+            .setPredictionScore(field("score"))
+            .setActualLabel(field("actual"))
+            .setActualScore(field("ascore"))
+            .setFeatures(
+                Public.Schema.GenericSchema.GroupFieldDescriptor.newBuilder()
+                    .setCaptureGroup("feature[0-9]+"))
+            .setTags(
+                Public.Schema.GenericSchema.GroupFieldDescriptor.newBuilder()
+                    .addProperties("region"))
+            .setShapValues(
+                Public.Schema.GenericSchema.GroupFieldDescriptor.newBuilder()
+                    .addProperties("feature1_shap")
+                    .setCaptureGroup("feature[0-9]+"))
+            .setEmbeddingFeatures(
+                Public.Schema.GenericSchema.EmbeddingFieldDescriptor.newBuilder()
+                    .putProperties(
+                        "greeting",
+                        Public.Schema.GenericSchema.EmbeddingFieldDescriptor.EmbeddingPropertyMap
+                            .newBuilder()
+                            .putPropertiesMap("vector", "vec")
+                            .putPropertiesMap("data", "text")
+                            .build()))
+            .setExclude(field("ignored"))
+            .build();
+    SchemaMapper mapper = SchemaMapper.compile(schema, source.getColumnNames());
+    try (ModelSession session = ModelSession.newBuilder(client, "modelId").build()) {
+      Assert.assertEquals(2, mapper.log(source, session));
+      session.flush().resolve(10, TimeUnit.SECONDS);
+    }
+
+    List<Record> records = bulkPosts.get(0).getRecordsList();
+    Assert.assertEquals(2, records.size());
+    Record one = records.get(0);
+    Assert.assertEquals("1", one.getPredictionId());
+    Assert.assertEquals(
+        Timestamps.fromMillis(1596560235000L), one.getPrediction().getTimestamp());
+    Public.ScoreCategorical.ScoreCategory predicted =
+        one.getPrediction().getLabel().getScoreCategorical().getScoreCategory();
+    Assert.assertEquals("cat", predicted.getCategory());
+    Assert.assertEquals(0.75, predicted.getScore(), 0);
+    Assert.assertEquals(
+        "cat", one.getActual().getLabel().getScoreCategorical().getScoreCategory().getCategory());
+    Map<String, Public.Value> features = one.getPrediction().getFeaturesMap();
+    Assert.assertEquals(
+        new HashSet<>(Arrays.asList("feature1", "feature2", "greeting")), features.keySet());
+    Assert.assertEquals(3, features.get("feature1").getInt());
+    Assert.assertEquals(
+        "hello",
+        features.get("greeting").getEmbedding().getRawData().getTokenArray().getTokens(0));
+    Assert.assertEquals("us", one.getPrediction().getTagsOrThrow("region").getString());
+    Assert.assertEquals(
+        0.5, one.getFeatureImportances().getFeatureImportancesOrThrow("feature1"), 0);
+
+    Record two = records.get(1);
+    Assert.assertEquals("two", two.getPredictionId());
+    Assert.assertFalse(two.hasActual());
+    Assert.assertFalse(two.hasFeatureImportances());
+    Assert.assertEquals(
+        Collections.singleton("feature2"), two.getPrediction().getFeaturesMap().keySet());
+
+    try {
+      SchemaMapper.compile(
+          schema.toBuilder().setPredictionId(field("missing")).build(), columns);
+      Assert.fail("expected an unknown column to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("column missing is not in the source", e.getMessage());
+    }
+    try {
+      SchemaMapper.compile(schema.toBuilder().setBatchId(field("ignored")).build(), columns);
+      Assert.fail("expected an unsupported descriptor to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("batch_id is not supported", e.getMessage());
+    }
+  }
+
+  private static Public.Schema.GenericSchema.FieldDescriptor field(String column) {
+    return Public.Schema.GenericSchema.FieldDescriptor.newBuilder().addProperties(column).build();
+  }
+
+  @Test
+  public void testWarmUp() {
+    ArizeClient.warmUp();
+    ArizeClient.warmUp();
+    Assert.assertTrue(posts.isEmpty());
+    Assert.assertTrue(bulkPosts.isEmpty());
+  }
+
+  @Test
+  public void testNativeImageReflectConfig() throws IOException {
+    final Set<String> configured = new HashSet<>();
+    try (InputStreamReader reader =
+        new InputStreamReader(
+            getClass()
+                .getResourceAsStream(
+                    "/META-INF/native-image/com.arize/arize-api-client/reflect-config.json"),
+            StandardCharsets.UTF_8)) {
+      for (com.google.gson.JsonElement entry : com.google.gson.JsonParser.parseReader(reader)
+          .getAsJsonArray()) {
+        configured.add(entry.getAsJsonObject().get("name").getAsString());
+      }
+    }
+    final Deque<Class<?>> pending =
+        new ArrayDeque<>(Arrays.asList(Public.class.getDeclaredClasses()));
+    final List<String> missing = new ArrayList<>();
+    while (!pending.isEmpty()) {
+      final Class<?> type = pending.pop();
+      pending.addAll(Arrays.asList(type.getDeclaredClasses()));
+      if (!type.isInterface() && !configured.contains(type.getName())) {
+        missing.add(type.getName());
+      }
+    }
+    Assert.assertEquals(Collections.emptyList(), missing);
+    Assert.assertTrue(configured.contains(Timestamp.Builder.class.getName()));
+    Assert.assertTrue(configured.contains(DoubleValue.Builder.class.getName()));
+  }
+
+  @Test
+  public void testShutdown() throws Exception {
+    client.registerShutdownHook(Duration.ofSeconds(5));
+    RecordBatcher batcher =
+        RecordBatcher.newBuilder(client).setMaxBatchSize(100).setLingerMillis(60_000).build();
+    ModelSession session = ModelSession.newBuilder(client, "modelB").build();
+    for (int i = 0; i < 3; i++) {
+      batcher.log("modelA", "v1", "a" + i, intFeatures, null, null, 1.0, null, null, 0);
+    }
+    session.add("b0", intFeatures, null, null, 1.0, null, null, 0);
+    session.add("b1", intFeatures, null, null, 1.0, null, null, 0);
+    // joiners are drained before the batcher they send through
+    PredictionActualJoiner batchedJoiner =
+        PredictionActualJoiner.newBuilder(client).setBatcher(batcher).build();
+    batchedJoiner.log("modelA", "v1", "a3", intFeatures, null, null, 1.0, null, null, 0);
+    PredictionActualJoiner joiner = PredictionActualJoiner.newBuilder(client).build();
+    joiner.log("modelC", "v1", "c0", intFeatures, null, null, 1.0, null, null, 0);
+
+    ShutdownReport report = client.shutdown(Duration.ofSeconds(10));
+    Assert.assertTrue(report.toString(), report.isComplete());
+    Assert.assertEquals(0, client.getInFlightRequests());
+    Assert.assertEquals(4, batcher.getRecordsSent());
+    Assert.assertEquals(2, session.getRecordsSent());
+    Assert.assertEquals(0, batchedJoiner.size());
+    Assert.assertEquals(0, joiner.getSendFailureCount());
+    Map<String, Integer> perModel = new HashMap<>();
+    for (Public.BulkRecord bulk : bulkPosts) {
+      perModel.merge(bulk.getModelId(), bulk.getRecordsCount(), Integer::sum);
+    }
+    Assert.assertEquals(Integer.valueOf(4), perModel.get("modelA"));
+    Assert.assertEquals(Integer.valueOf(2), perModel.get("modelB"));
+    Assert.assertSame(report, client.shutdown(Duration.ZERO));
+
+    try {
+      client.log("modelA", null, "late", intFeatures, null, null, 1.0, null, null, 0);
+      Assert.fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("client is shut down", e.getMessage());
+    }
+    try {
+      batcher.log("modelA", null, "late", intFeatures, null, null, 1.0, null, null, 0);
+      Assert.fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("batcher is closed", e.getMessage());
+    }
+    try {
+      ModelSession.newBuilder(client, "modelB").build();
+      Assert.fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("client is shut down", e.getMessage());
+    }
+    Assert.assertEquals(1, posts.size());
+    Assert.assertEquals("c0", posts.get(0).getPredictionId());
+  }
+
+  @Test
+  public void testInFlightLimit() throws Exception {
+    CountDownLatch gate = new CountDownLatch(1);
+    server.createContext(
+        "/slow/v1/log",
+        exchange -> {
+          exchange.getRequestBody().close();
+          try {
+            gate.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+        });
+    ArizeClient slow =
+        new ArizeClient(
+            "apiKey", "spaceKey", "http://localhost:" + server.getAddress().getPort() + "/slow/v1");
+    slow.setInFlightLimit(
+        InFlightLimit.newBuilder()
+            .setMaxRequests(1)
+            .setOverflow(InFlightLimit.Overflow.REJECT)
+            .build());
+    Response first = slow.log("modelId", null, "one", intFeatures, null, null, 1.0, null, null, 0);
+    Assert.assertEquals(1, slow.getInFlightRequests());
+    Assert.assertTrue(slow.getInFlightBytes() > 0);
+    Response rejected =
+        slow.log("modelId", null, "two", intFeatures, null, null, 1.0, null, null, 0);
+    Assert.assertEquals(Response.ResponseCode.REJECTED, rejected.getResponseCode());
+
+    slow.setInFlightLimit(
+        InFlightLimit.newBuilder()
+            .setMaxRequests(1)
+            .setOverflow(InFlightLimit.Overflow.FAIL)
+            .build());
+    try {
+      slow.log("modelId", null, "two", intFeatures, null, null, 1.0, null, null, 0);
+      Assert.fail("expected InFlightLimitException");
+    } catch (InFlightLimitException e) {
+      Assert.assertEquals(1, e.getInFlightRequests());
+    }
+
+    slow.setInFlightLimit(InFlightLimit.newBuilder().setMaxRequests(1).build());
+    CompletableFuture<Response> blocked =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return slow.log(
+                    "modelId", null, "two", intFeatures, null, null, 1.0, null, null, 0);
+              } catch (IOException e) {
+                throw new IllegalStateException(e);
+              }
+            });
+    Thread.sleep(200);
+    Assert.assertFalse(blocked.isDone());
+    Assert.assertEquals(1, slow.getInFlightRequests());
+    gate.countDown();
+    Assert.assertEquals(Response.ResponseCode.OK, first.getResponseCode());
+    Assert.assertEquals(
+        Response.ResponseCode.OK, blocked.get(10, TimeUnit.SECONDS).getResponseCode());
+    // callbacks release their slot just after the future completes
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (slow.getInFlightRequests() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    Assert.assertEquals(0, slow.getInFlightRequests());
+    Assert.assertEquals(0, slow.getInFlightBytes());
+    slow.close();
+  }
+
+  @Test
+  public void testInFlightLimitSessionsAndShutdown() throws Exception {
+    CountDownLatch gate = new CountDownLatch(1);
+    server.createContext(
+        "/stuck/v1/log",
+        exchange -> {
+          exchange.getRequestBody().close();
+          try {
+            gate.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+        });
+    String uri = "http://localhost:" + server.getAddress().getPort() + "/stuck/v1";
+    ArizeClient stuck = new ArizeClient("apiKey", "spaceKey", uri);
+    stuck.setInFlightLimit(
+        InFlightLimit.newBuilder()
+            .setMaxRequests(1)
+            .setOverflow(InFlightLimit.Overflow.REJECT)
+            .build());
+    stuck.log("modelId", null, "one", intFeatures, null, null, 1.0, null, null, 0);
+    // the configured overflow applies to session batches too
+    ModelSession rejecting = ModelSession.newBuilder(stuck, "modelId").setMaxBatchSize(1).build();
+    rejecting.add("two", intFeatures, null, null, 1.0, null, null, 0);
+    Assert.assertEquals(1, rejecting.getRecordsFailed());
+    Assert.assertEquals(0, rejecting.getBatchesSent());
+    rejecting.close();
+
+    // while draining, blocked requests give up at the shutdown deadline and are reported
+    stuck.setInFlightLimit(InFlightLimit.newBuilder().setMaxRequests(1).build());
+    ModelSession draining = ModelSession.newBuilder(stuck, "modelId").build();
+    draining.add("three", intFeatures, null, null, 1.0, null, null, 0);
+    PredictionActualJoiner joiner = PredictionActualJoiner.newBuilder(stuck).build();
+    joiner.log("modelId", null, "four", intFeatures, null, null, 1.0, null, null, 0);
+    long start = System.nanoTime();
+    ShutdownReport report = stuck.shutdown(Duration.ofMillis(200));
+    Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    Assert.assertEquals(1, draining.getRecordsFailed());
+    Assert.assertEquals(0, draining.getBatchesSent());
+    Assert.assertEquals(1, joiner.getSendFailureCount());
+    Assert.assertEquals(2, report.getRecordsDropped());
+    Assert.assertEquals(1, report.getRequestsAborted());
+    Assert.assertFalse(report.isComplete());
+    gate.countDown();
+  }
+
+  @Test
+  public void testCircuitBreaker() throws Exception {
+    AtomicInteger status = new AtomicInteger(500);
+    AtomicInteger hits = new AtomicInteger();
+    server.createContext(
+        "/flaky/v1/log",
+        exchange -> {
+          exchange.getRequestBody().close();
+          hits.incrementAndGet();
+          exchange.sendResponseHeaders(status.get(), -1);
+          exchange.close();
+        });
+    String uri = "http://localhost:" + server.getAddress().getPort() + "/flaky/v1";
+    ArizeClient flaky = new ArizeClient("apiKey", "spaceKey", uri);
+    List<String> fallback = Collections.synchronizedList(new ArrayList<>());
+    CircuitBreaker breaker =
+        CircuitBreaker.newBuilder()
+            .setWindowSize(4)
+            .setMinimumCalls(2)
+            .setOpenMillis(200)
+            .setHalfOpenProbes(1)
+            .setFallback((modelId, predictionId) -> fallback.add(predictionId))
+            .build();
+    flaky.setCircuitBreaker(breaker);
+    for (String id : new String[] {"one", "two"}) {
+      Response response =
+          flaky.log("modelId", null, id, intFeatures, null, null, 1.0, null, null, 0);
+      Assert.assertEquals(Response.ResponseCode.UNEXPECTED_FAILURE, response.getResponseCode());
+    }
+    // the breaker sees an outcome just after its future completes
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (breaker.getState() != CircuitBreaker.State.OPEN
+        && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    Response open =
+        flaky.log("modelId", null, "three", intFeatures, null, null, 1.0, null, null, 0);
+    Assert.assertEquals(Response.ResponseCode.CIRCUIT_OPEN, open.getResponseCode());
+    Assert.assertEquals(Collections.singletonList("three"), fallback);
+    Assert.assertEquals(1, breaker.getRecordsRejected());
+    Assert.assertEquals(2, hits.get());
+
+    status.set(200);
+    Thread.sleep(250);
+    Response probe =
+        flaky.log("modelId", null, "four", intFeatures, null, null, 1.0, null, null, 0);
+    Assert.assertEquals(Response.ResponseCode.OK, probe.getResponseCode());
+    deadline = System.currentTimeMillis() + 10_000;
+    while (breaker.getState() != CircuitBreaker.State.CLOSED
+        && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    Assert.assertEquals(3, hits.get());
+    flaky.close();
+  }
+
+  @Test
+  public void testCircuitBreakerDivertsRefusedRecords() throws Exception {
+    List<String> fallback = Collections.synchronizedList(new ArrayList<>());
+    CircuitBreaker breaker =
+        CircuitBreaker.newBuilder()
+            .setWindowSize(1)
+            .setMinimumCalls(1)
+            .setOpenMillis(60_000)
+            .setFallback((modelId, predictionId) -> fallback.add(predictionId))
+            .build();
+    client.setCircuitBreaker(breaker);
+    // converted while closed, refused when the batch is flushed after the breaker opened
+    RecordBatcher batcher = RecordBatcher.newBuilder(client).setLingerMillis(60_000).build();
+    batcher.log("modelId", null, "one", intFeatures, null, null, 1.0, null, null, 0);
+    // likewise a prediction the joiner held while the breaker was closed
+    PredictionActualJoiner joiner = PredictionActualJoiner.newBuilder(client).build();
+    joiner.log("modelId", null, "held", intFeatures, null, null, 1.0, null, null, 0);
+    breaker.onComplete(breaker.tryAcquire(), 0, true);
+    Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    batcher.close();
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (batcher.getRecordsFailed() < 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, batcher.getRecordsFailed());
+    Assert.assertEquals(Collections.singletonList("one"), fallback);
+    joiner.close();
+    Assert.assertEquals(Arrays.asList("one", "held"), fallback);
+    Assert.assertEquals(2, breaker.getRecordsRejected());
+    Assert.assertEquals(1, joiner.getSendFailureCount());
+
+    // half-open with its only probe in flight: records are diverted before conversion
+    CircuitBreaker probing =
+        CircuitBreaker.newBuilder()
+            .setWindowSize(1)
+            .setMinimumCalls(1)
+            .setOpenMillis(0)
+            .setHalfOpenProbes(1)
+            .setFallback((modelId, predictionId) -> fallback.add(predictionId))
+            .build();
+    client.setCircuitBreaker(probing);
+    probing.onComplete(probing.tryAcquire(), 0, true);
+    int probe = probing.tryAcquire();
+    Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, probing.getState());
+    Response response =
+        client.log("modelId", null, "two", intFeatures, null, null, 1.0, null, null, 0);
+    Assert.assertEquals(Response.ResponseCode.CIRCUIT_OPEN, response.getResponseCode());
+    Assert.assertEquals(Arrays.asList("one", "held", "two"), fallback);
+    Assert.assertEquals(1, probing.getRecordsRejected());
+    Assert.assertEquals(-1, probing.tryAcquire());
+    probing.onComplete(probe, 0, false);
+    Assert.assertEquals(CircuitBreaker.State.CLOSED, probing.getState());
+    Assert.assertEquals(0, posts.size());
+  }
+
+  @Test
+  public void testHedgedLog() throws Exception {
+    CountDownLatch stall = new CountDownLatch(1);
+    AtomicInteger requests = new AtomicInteger();
+    HttpServer stalling = HttpServer.create(new InetSocketAddress(0), 0);
+    stalling.setExecutor(Executors.newCachedThreadPool());
+    stalling.createContext(
+        "/v1/log",
+        exchange -> {
+          exchange.getRequestBody().close();
+          if (requests.incrementAndGet() == 1) {
+            try {
+              stall.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+        });
+    stalling.start();
+    String uri = "http://localhost:" + stalling.getAddress().getPort() + "/v1";
+    ArizeClient hedged = new ArizeClient("apiKey", "spaceKey", uri);
+    ArizeClient bounded = new ArizeClient("apiKey", "spaceKey", uri);
+    try {
+      HedgePolicy policy = HedgePolicy.newBuilder().setMaxDelayMillis(300).build();
+      hedged.setHedgePolicy(policy);
+      Response response =
+          hedged.log("modelId", null, "one", intFeatures, null, null, 1.0, null, null, 0);
+      response.resolve(5, TimeUnit.SECONDS);
+      Assert.assertEquals(Response.ResponseCode.OK, response.getResponseCode());
+      Assert.assertEquals(1, policy.getRequests());
+      Assert.assertEquals(1, policy.getHedges());
+      Assert.assertEquals(1, policy.getHedgeWins());
+      Assert.assertEquals(1.0, policy.getHedgeRate(), 0.0);
+      Assert.assertEquals(300, policy.getDelayMillis());
+
+      // the stalled first request has been cancelled, so the next one stalls instead
+      requests.set(0);
+      bounded.setRequestTimeout(Duration.ofMillis(200));
+      Assert.assertEquals(Duration.ofMillis(200), bounded.getRequestTimeout());
+      long start = System.nanoTime();
+      Response timedOut =
+          bounded.log("modelId", null, "two", intFeatures, null, null, 1.0, null, null, 0);
+      try {
+        timedOut.resolve(5, TimeUnit.SECONDS);
+        Assert.fail("expected CancellationException");
+      } catch (CancellationException e) {
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+      }
+    } finally {
+      stall.countDown();
+      hedged.close();
+      bounded.close();
+      stalling.stop(0);
+    }
+  }
+
+  @Test
+  public void testHedgeSkippedOverInFlightLimit() throws Exception {
+    CountDownLatch stall = new CountDownLatch(1);
+    HttpServer stalling = HttpServer.create(new InetSocketAddress(0), 0);
+    stalling.setExecutor(Executors.newCachedThreadPool());
+    stalling.createContext(
+        "/v1/log",
+        exchange -> {
+          exchange.getRequestBody().close();
+          try {
+            stall.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+        });
+    stalling.start();
+    String uri = "http://localhost:" + stalling.getAddress().getPort() + "/v1";
+    ArizeClient limited = new ArizeClient("apiKey", "spaceKey", uri);
+    try {
+      limited.setInFlightLimit(InFlightLimit.newBuilder().setMaxRequests(1).build());
+      HedgePolicy policy =
+          HedgePolicy.newBuilder().setMinDelayMillis(0).setMaxDelayMillis(20).build();
+      limited.setHedgePolicy(policy);
+      Response response =
+          limited.log("modelId", null, "one", intFeatures, null, null, 1.0, null, null, 0);
+      // the hedge finds the limit full and is skipped rather than blocking the scheduler
+      Thread.sleep(300);
+      Assert.assertEquals(0, policy.getHedges());
+      Assert.assertFalse(response.isDone());
+      stall.countDown();
+      response.resolve(5, TimeUnit.SECONDS);
+      Assert.assertEquals(Response.ResponseCode.OK, response.getResponseCode());
+      Assert.assertEquals(1, policy.getRequests());
+      Assert.assertEquals(0, policy.getHedges());
+    } finally {
+      stall.countDown();
+      limited.close();
+      stalling.stop(0);
+    }
+  }
+
   @Test
   public void testBuildBulkActual() throws IOException, ExecutionException, InterruptedException {
     List<String> expectedIds = new ArrayList<>(Arrays.asList("one", "two", "three"));
@@ -1250,6 +2183,67 @@ public class ArizeClientTest {
     return server;
   }
 
+  @Test
+  public void testLogObjectDetection()
+      throws IOException, ExecutionException, InterruptedException, TimeoutException {
+    String[] names = {"cat", "dog"};
+    ObjectDetection prediction =
+        ObjectDetection.of(
+            new float[] {10, 20, 50, 80, 60, 10, 90, 40},
+            new int[] {0, 1},
+            names,
+            new float[] {0.5f, 0.25f});
+    ObjectDetection actual =
+        ObjectDetection.of(new double[] {12, 18, 52, 79}, new int[] {0}, names, null);
+    client
+        .log("modelId", null, "one", null, null, null, prediction, actual, null, 0)
+        .resolve(10, TimeUnit.SECONDS);
+    Public.ObjectDetection predicted =
+        posts.get(0).getPrediction().getPredictionLabel().getObjectDetection();
+    Assert.assertEquals(2, predicted.getBoundingBoxesCount());
+    Assert.assertEquals(
+        Arrays.asList(60.0, 10.0, 90.0, 40.0), predicted.getBoundingBoxes(1).getCoordinatesList());
+    Assert.assertEquals("dog", predicted.getBoundingBoxes(1).getCategory());
+    Assert.assertEquals(0.25, predicted.getBoundingBoxes(1).getScore().getValue(), 0);
+    Public.ObjectDetection annotated =
+        posts.get(0).getActual().getActualLabel().getObjectDetection();
+    Assert.assertEquals(1, annotated.getBoundingBoxesCount());
+    Assert.assertEquals("cat", annotated.getBoundingBoxes(0).getCategory());
+    Assert.assertFalse(annotated.getBoundingBoxes(0).hasScore());
+
+    client
+        .bulkLog(
+            "modelId",
+            null,
+            Arrays.asList("one", "two"),
+            null,
+            null,
+            null,
+            Arrays.asList(prediction, prediction),
+            Arrays.asList(actual, actual),
+            null,
+            null)
+        .resolve(10, TimeUnit.SECONDS);
+    for (Record record : bulkPosts.get(0).getRecordsList()) {
+      Assert.assertEquals(
+          predicted, record.getPrediction().getPredictionLabel().getObjectDetection());
+      Assert.assertEquals(annotated, record.getActual().getActualLabel().getObjectDetection());
+    }
+
+    try {
+      ObjectDetection.of(new float[] {1, 2, 3}, new int[] {0}, names, null);
+      Assert.fail("expected a partial box to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("coordinates.length must equal 4 * categories.length", e.getMessage());
+    }
+    try {
+      ObjectDetection.of(new float[] {1, 2, 3, 4}, new int[] {2}, names, null);
+      Assert.fail("expected an unknown category to be rejected");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("category 2 is not an index of a categoryNames entry", e.getMessage());
+    }
+  }
+
   @Test
   public void testLogRankingModel() throws IOException, ExecutionException, InterruptedException {
     Map<String, Object> features = new HashMap<>();
@@ -1402,4 +2396,418 @@ public class ArizeClientTest {
     client.log("modelId", "modelVersion", "predictionId", null,
             null, null, prediction6, actual6, null, 0);
   }
+
+  @Test
+  public void testRecordBatcher() throws IOException {
+    RecordBatcher batcher =
+        RecordBatcher.newBuilder(client).setMaxBatchSize(2).setLingerMillis(50).build();
+    Map<String, Object> features = new HashMap<>();
+    features.putAll(intFeatures);
+    batcher.log("modelA", "v1", "one", features, null, stringTags, 20.20, null, null, 0);
+    batcher.log("modelA", "v1", "two", features, null, stringTags, 20.21, null, null, 0);
+    batcher.log("modelB", null, "three", null, null, null, null, 1.0, null, 0);
+    try {
+      batcher.log("modelB", null, "", null, null, null, 1.0, null, null, 0);
+      Assert.fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("predictionId"));
+    }
+    batcher.close();
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (batcher.getRecordsSent() < 3 && System.currentTimeMillis() < deadline) {
+      Thread.yield();
+    }
+    Assert.assertEquals(3, batcher.getRecordsSent());
+    Assert.assertEquals(0, batcher.getRecordsFailed());
+    Map<String, Integer> perModel = new HashMap<>();
+    for (Public.BulkRecord bulk : bulkPosts) {
+      Assert.assertEquals("spaceKey", bulk.getSpaceKey());
+      for (Record record : bulk.getRecordsList()) {
+        Assert.assertEquals(bulk.getModelId(), record.getModelId());
+      }
+      perModel.merge(bulk.getModelId(), bulk.getRecordsCount(), Integer::sum);
+    }
+    Assert.assertEquals(Integer.valueOf(2), perModel.get("modelA"));
+    Assert.assertEquals(Integer.valueOf(1), perModel.get("modelB"));
+    try {
+      batcher.log("modelA", null, "four", null, null, null, 1.0, null, null, 0);
+      Assert.fail("expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      Assert.assertTrue(e.getMessage().contains("closed"));
+    }
+  }
+
+  @Test
+  public void testRecordBatcherCloseRace() throws Exception {
+    for (int round = 0; round < 10; round++) {
+      RecordBatcher batcher =
+          RecordBatcher.newBuilder(client).setMaxBatchSize(50).setLingerMillis(1).build();
+      AtomicInteger accepted = new AtomicInteger();
+      CountDownLatch started = new CountDownLatch(4);
+      List<Thread> producers = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        String prefix = round + "-" + t + "-";
+        Thread producer =
+            new Thread(
+                () -> {
+                  started.countDown();
+                  for (int i = 0; i < 500; i++) {
+                    try {
+                      batcher.log(
+                          "modelA", null, prefix + i, intFeatures, null, null, 1.0, null, null, 0);
+                    } catch (IllegalStateException e) {
+                      return;
+                    }
+                    accepted.incrementAndGet();
+                  }
+                });
+        producer.start();
+        producers.add(producer);
+      }
+      started.await();
+      batcher.close();
+      for (Thread producer : producers) {
+        producer.join();
+      }
+      // every record whose log call returned must be sent, none lost to the close
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (batcher.getRecordsSent() + batcher.getRecordsFailed() < accepted.get()
+          && System.currentTimeMillis() < deadline) {
+        Thread.yield();
+      }
+      Assert.assertEquals(accepted.get(), batcher.getRecordsSent() + batcher.getRecordsFailed());
+    }
+  }
+
+  @Test
+  public void testSampler() throws IOException, ExecutionException, InterruptedException {
+    client.setSampler((modelId, predictionId) -> !predictionId.equals("two"));
+    Response skipped =
+        client.log("modelId", null, "two", intFeatures, null, null, 20.20, null, null, 0);
+    Assert.assertEquals(Response.ResponseCode.SAMPLED_OUT, skipped.getResponseCode());
+    Assert.assertNull(skipped.getResponseBody());
+
+    Response response =
+        client.bulkLog(
+            "modelId", null, expectedIds, null, null, null, expectedLabels, null, null, null);
+    Assert.assertEquals(Response.ResponseCode.OK, response.getResponseCode());
+    Assert.assertTrue(posts.isEmpty());
+    Assert.assertEquals(2, bulkPosts.get(0).getRecordsCount());
+    for (Record record : bulkPosts.get(0).getRecordsList()) {
+      Assert.assertNotEquals("two", record.getPredictionId());
+    }
+
+    client.setSampler(Samplers.fixedRate(0.0));
+    Assert.assertEquals(
+        Response.ResponseCode.SAMPLED_OUT,
+        client
+            .bulkLog(
+                "modelId", null, expectedIds, null, null, null, expectedLabels, null, null, null)
+            .getResponseCode());
+  }
+
+  @Test
+  public void testPredictionActualJoiner() throws IOException, InterruptedException {
+    PredictionActualJoiner joiner =
+        PredictionActualJoiner.newBuilder(client).setWindowMillis(60_000).setMaxEntries(2).build();
+    joiner.log("modelId", "v1", "one", intFeatures, null, null, 1.0, null, null, 0);
+    joiner.log("modelId", "v1", "two", intFeatures, null, null, 2.0, null, null, 0);
+    Assert.assertEquals(2, joiner.size());
+    joiner.log("modelId", null, "one", null, null, stringTags, null, 1.5, null, 0);
+    Assert.assertEquals(1, joiner.getJoinedCount());
+    // a third and fourth prediction push "two" out of the two-entry buffer
+    joiner.log("modelId", "v1", "three", null, null, null, 3.0, null, null, 0);
+    joiner.log("modelId", "v1", "four", null, null, null, 4.0, null, null, 0);
+    Assert.assertEquals(1, joiner.getEvictedCount());
+    joiner.close();
+    Assert.assertEquals(0, joiner.size());
+
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (posts.size() < 4 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Map<String, Record> byId = new HashMap<>();
+    for (Record record : posts) {
+      byId.put(record.getPredictionId(), record);
+    }
+    Assert.assertEquals(4, byId.size());
+    Record joined = byId.get("one");
+    Assert.assertFalse(joined.hasPrediction());
+    Assert.assertFalse(joined.hasActual());
+    Assert.assertEquals(
+        1.0, joined.getPredictionAndActual().getPrediction().getLabel().getNumeric(), 0.0);
+    Assert.assertEquals(
+        12345,
+        joined.getPredictionAndActual().getPrediction().getFeaturesOrThrow("int").getInt());
+    Assert.assertEquals(
+        1.5, joined.getPredictionAndActual().getActual().getLabel().getNumeric(), 0.0);
+    Assert.assertEquals(
+        "string",
+        joined.getPredictionAndActual().getActual().getTagsOrThrow("string").getString());
+    Assert.assertTrue(byId.get("two").hasPrediction());
+    Assert.assertTrue(byId.get("three").hasPrediction());
+    Assert.assertTrue(byId.get("four").hasPrediction());
+  }
+
+  @Test
+  public void testPredictionActualJoinerExpiry() throws IOException, InterruptedException {
+    PredictionActualJoiner joiner =
+        PredictionActualJoiner.newBuilder(client).setWindowMillis(50).build();
+    joiner.log("modelId", "v1", "one", null, null, null, 1.0, null, null, 0);
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (posts.isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, joiner.getExpiredCount());
+    Assert.assertEquals(0, joiner.size());
+    Assert.assertTrue(posts.get(0).hasPrediction());
+    // an actual arriving after expiry is sent on its own
+    joiner.log("modelId", null, "one", null, null, null, null, 1.5, null, 0);
+    Assert.assertEquals(0, joiner.getJoinedCount());
+    joiner.close();
+  }
+
+  @Test
+  public void testPredictionActualJoinerSendFailures() throws Exception {
+    server.createContext(
+        "/failing/v1/log",
+        exchange -> {
+          exchange.getRequestBody().close();
+          exchange.sendResponseHeaders(503, -1);
+          exchange.close();
+        });
+    String uri = "http://localhost:" + server.getAddress().getPort() + "/failing/v1";
+    ArizeClient failing = new ArizeClient("apiKey", "spaceKey", uri);
+    PredictionActualJoiner joiner =
+        PredictionActualJoiner.newBuilder(failing).setWindowMillis(50).build();
+    joiner.log("modelId", "v1", "one", null, null, null, 1.0, null, null, 0);
+    joiner.log("modelId", "v1", "two", null, null, null, 1.0, null, null, 0);
+    // the requests are issued without error, the failures only show once they complete
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (joiner.getSendFailureCount() < 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(2, joiner.getExpiredCount());
+    Assert.assertEquals(2, joiner.getSendFailureCount());
+    joiner.close();
+    failing.close();
+  }
+
+  @Test
+  public void testDeduplicator() throws IOException, ExecutionException, InterruptedException {
+    Deduplicator dedup = new Deduplicator(100, 0);
+    client.setDeduplicator(dedup);
+    Assert.assertEquals(
+        Response.ResponseCode.OK,
+        client.log("modelId", null, "one", null, null, null, 1.0, null, null, 0).getResponseCode());
+    Assert.assertEquals(
+        Response.ResponseCode.DUPLICATE,
+        client.log("modelId", null, "one", null, null, null, 1.0, null, null, 0).getResponseCode());
+    Assert.assertEquals(
+        Response.ResponseCode.OK,
+        client.log("modelId", null, "one", null, null, null, null, 2.0, null, 0).getResponseCode());
+    Assert.assertEquals(2, posts.size());
+
+    Response response =
+        client.bulkLog(
+            "modelId",
+            null,
+            Arrays.asList("one", "two", "two"),
+            null,
+            null,
+            null,
+            Arrays.asList(1, 2, 2),
+            null,
+            null,
+            null);
+    Assert.assertEquals(Response.ResponseCode.OK, response.getResponseCode());
+    Assert.assertEquals(1, bulkPosts.get(0).getRecordsCount());
+    Assert.assertEquals("two", bulkPosts.get(0).getRecords(0).getPredictionId());
+    Assert.assertEquals(3, dedup.getDuplicateCount());
+  }
+
+  @Test
+  public void testDeduplicatorSkipsPreProduction() throws Exception {
+    Deduplicator dedup = new Deduplicator(100, 0);
+    client.setDeduplicator(dedup);
+    List<String> ids = Arrays.asList("one", "one");
+    List<Double> labels = Arrays.asList(1.0, 1.0);
+    client
+        .bulkLogTraining("modelId", null, ids, null, null, null, labels, labels)
+        .resolve(10, TimeUnit.SECONDS);
+    ModelSession validation =
+        ModelSession.newBuilder(client, "modelId")
+            .setEnvironment(ModelSession.Environment.VALIDATION)
+            .setBatchId("batch")
+            .build();
+    validation.add("one", null, null, null, 1.0, 1.0, null, 0);
+    validation.add("one", null, null, null, 1.0, 1.0, null, 0);
+    validation.flush().resolve(10, TimeUnit.SECONDS);
+    validation.close();
+    Assert.assertEquals(2, bulkPosts.get(0).getRecordsCount());
+    Assert.assertEquals(2, bulkPosts.get(1).getRecordsCount());
+    Assert.assertEquals(0, dedup.getCheckedCount());
+    // nothing was remembered, so the first production record goes through
+    Assert.assertEquals(
+        Response.ResponseCode.OK,
+        client.log("modelId", null, "one", null, null, null, 1.0, null, null, 0).getResponseCode());
+  }
+
+  @Test
+  public void testDeduplicatorRejectsMissingModelId() throws Exception {
+    client.setDeduplicator(new Deduplicator(100, 0));
+    client.setSampler(Samplers.fixedRate(1.0));
+    PredictionEvent event = new PredictionEvent().setPredictionId("one").setPredictionLabel(1.0);
+    RecordBatcher batcher = RecordBatcher.newBuilder(client).build();
+    PredictionActualJoiner joiner = PredictionActualJoiner.newBuilder(client).build();
+    List<Callable<?>> calls =
+        Arrays.asList(
+            () -> client.log(null, null, "one", intFeatures, null, null, 1.0, null, null, 0),
+            () -> client.logNumeric("", null, "one", intFeatures, null, null, 1.0, 0.0, null, 0),
+            () -> client.log(event),
+            () -> {
+              batcher.log(null, null, "one", intFeatures, null, null, 1.0, null, null, 0);
+              return null;
+            },
+            () -> {
+              batcher.log(event);
+              return null;
+            },
+            () -> {
+              joiner.log("", null, "one", intFeatures, null, null, 1.0, null, null, 0);
+              return null;
+            });
+    try {
+      for (Callable<?> call : calls) {
+        try {
+          call.call();
+          Assert.fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+          Assert.assertEquals("modelId cannot be null or empty", e.getMessage());
+        }
+      }
+    } finally {
+      batcher.close();
+      joiner.close();
+    }
+    Assert.assertEquals(0, posts.size());
+  }
+
+  @Test
+  public void testDeduplicatorRetries() throws Exception {
+    Deduplicator dedup = new Deduplicator(100, 0);
+    client.setDeduplicator(dedup);
+    // an invalid record is not remembered, so its corrected retry is sent
+    try {
+      client.log(
+          "modelId",
+          null,
+          "one",
+          Collections.singletonMap("bad", new Object()),
+          null,
+          null,
+          1.0,
+          null,
+          null,
+          0);
+      Assert.fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+    }
+    Assert.assertEquals(
+        Response.ResponseCode.OK,
+        client.log("modelId", null, "one", intFeatures, null, null, 1.0, null, null, 0)
+            .getResponseCode());
+
+    // neither is a record added to a closed session
+    ModelSession session = ModelSession.newBuilder(client, "modelId").build();
+    session.close();
+    try {
+      session.add("two", intFeatures, null, null, 1.0, null, null, 0);
+      Assert.fail("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+    Assert.assertEquals(
+        Response.ResponseCode.OK,
+        client.log("modelId", null, "two", intFeatures, null, null, 1.0, null, null, 0)
+            .getResponseCode());
+
+    // nor one whose request fails
+    server.createContext(
+        "/failing/v1/log",
+        exchange -> {
+          exchange.getRequestBody().close();
+          exchange.sendResponseHeaders(503, -1);
+          exchange.close();
+        });
+    String uri = "http://localhost:" + server.getAddress().getPort() + "/failing/v1";
+    ArizeClient failing = new ArizeClient("apiKey", "spaceKey", uri);
+    failing.setDeduplicator(dedup);
+    Assert.assertEquals(
+        Response.ResponseCode.UNEXPECTED_FAILURE,
+        failing
+            .log("modelId", null, "three", intFeatures, null, null, 1.0, null, null, 0)
+            .getResponseCode());
+    failing.close();
+    // the callback may run just after the response is handed to the caller
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (dedup.isDuplicate("modelId", "three", Deduplicator.PREDICTION)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(
+        Response.ResponseCode.OK,
+        client.log("modelId", null, "three", intFeatures, null, null, 1.0, null, null, 0)
+            .getResponseCode());
+    Assert.assertEquals(3, posts.size());
+  }
+
+  @Test
+  public void testDeduplicatorForgetsFailedBatches() throws Exception {
+    Deduplicator dedup = new Deduplicator(100, 0);
+    server.createContext(
+        "/refusing/v1",
+        exchange -> {
+          exchange.getRequestBody().close();
+          exchange.sendResponseHeaders(503, -1);
+          exchange.close();
+        });
+    String uri = "http://localhost:" + server.getAddress().getPort() + "/refusing/v1";
+    ArizeClient refusing = new ArizeClient("apiKey", "spaceKey", uri);
+    refusing.setDeduplicator(dedup);
+    try {
+      RecordBatcher batcher = RecordBatcher.newBuilder(refusing).build();
+      batcher.log("modelId", null, "batched", intFeatures, null, null, 1.0, null, null, 0);
+      batcher.close();
+
+      ModelSession session = ModelSession.newBuilder(refusing, "modelId").build();
+      session.add("session", intFeatures, null, null, 1.0, null, null, 0);
+      session.close();
+
+      // one prediction held until the joiner closes, one actual joined with it
+      PredictionActualJoiner joiner = PredictionActualJoiner.newBuilder(refusing).build();
+      joiner.log("modelId", null, "held", intFeatures, null, null, 1.0, null, null, 0);
+      joiner.log("modelId", null, "joined", intFeatures, null, null, 1.0, null, null, 0);
+      joiner.log("modelId", null, "joined", null, null, null, null, 1.0, null, 0);
+      joiner.close();
+
+      long deadline = System.currentTimeMillis() + 10_000;
+      List<String> ids = Arrays.asList("batched", "session", "held", "joined");
+      while (ids.stream().anyMatch(id -> dedup.isDuplicate("modelId", id, Deduplicator.PREDICTION))
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      Assert.assertEquals(1, batcher.getRecordsFailed());
+      Assert.assertEquals(1, session.getRecordsFailed());
+      Assert.assertEquals(2, joiner.getSendFailureCount());
+      client.setDeduplicator(dedup);
+      for (String id : ids) {
+        Assert.assertEquals(
+            Response.ResponseCode.OK,
+            client.log("modelId", null, id, intFeatures, null, null, 1.0, null, null, 0)
+                .getResponseCode());
+      }
+    } finally {
+      refusing.close();
+    }
+  }
 }
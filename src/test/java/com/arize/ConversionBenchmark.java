@@ -0,0 +1,56 @@
+package com.arize;
+
+import com.arize.protocol.Public;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-row allocation of converting a row's features and tags into a {@link Public.Prediction}
+ * builder, comparing the intermediate-map path with direct writes through the model's feature
+ * dictionary. Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.arize.ConversionBenchmark}.
+ */
+public class ConversionBenchmark {
+
+  private static final int ITERATIONS = 200_000;
+
+  public static void main(String[] args) throws Exception {
+    if (!AllocationMeter.isSupported()) {
+      System.out.println("thread allocation accounting not supported by this JVM");
+      return;
+    }
+    final Map<String, Object> features = new HashMap<>();
+    for (int i = 0; i < 20; i++) {
+      features.put("feature_" + i, i % 2 == 0 ? (Object) ("value_" + i) : (Object) (double) i);
+    }
+    final Map<String, Object> tags = new HashMap<>();
+    tags.put("region", "us-west");
+    tags.put("device", "mobile");
+    final FeatureDictionary dictionary = new FeatureDictionary();
+    final Public.Prediction[] sink = new Public.Prediction[1];
+
+    double viaMaps =
+        AllocationMeter.bytesPerOp(
+            ITERATIONS,
+            () -> {
+              Public.Prediction.Builder builder = Public.Prediction.newBuilder();
+              builder.putAllFeatures(RecordUtil.convertFeatures(features));
+              builder.putAllTags(RecordUtil.convertTags(tags));
+              sink[0] = builder.build();
+            });
+    double direct =
+        AllocationMeter.bytesPerOp(
+            ITERATIONS,
+            () -> {
+              Public.Prediction.Builder builder = Public.Prediction.newBuilder();
+              RecordUtil.putFeatures(builder, features, dictionary);
+              RecordUtil.putTags(builder, tags, dictionary);
+              sink[0] = builder.build();
+            });
+
+    System.out.printf("intermediate maps : %8.1f bytes/row%n", viaMaps);
+    System.out.printf("direct put        : %8.1f bytes/row%n", direct);
+    System.out.printf("saved             : %8.1f%%%n", 100 * (1 - direct / viaMaps));
+  }
+}
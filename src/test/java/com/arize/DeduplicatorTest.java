@@ -0,0 +1,96 @@
+package com.arize;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class DeduplicatorTest {
+
+  /** Checks a record and, unless it is a duplicate, remembers it as sent. */
+  private static boolean log(Deduplicator dedup, String modelId, String id, int parts) {
+    if (dedup.isDuplicate(modelId, id, parts)) {
+      return true;
+    }
+    dedup.markSent(modelId, id, parts);
+    return false;
+  }
+
+  @Test
+  public void testRepeatedPredictionIsDuplicate() {
+    Deduplicator dedup = new Deduplicator(10, 0);
+    Assert.assertFalse(log(dedup, "model", "one", Deduplicator.PREDICTION));
+    Assert.assertTrue(log(dedup, "model", "one", Deduplicator.PREDICTION));
+    Assert.assertFalse(log(dedup, "other", "one", Deduplicator.PREDICTION));
+    Assert.assertEquals(3, dedup.getCheckedCount());
+    Assert.assertEquals(1, dedup.getDuplicateCount());
+  }
+
+  @Test
+  public void testLatentActualIsNotDuplicate() {
+    Deduplicator dedup = new Deduplicator(10, 0);
+    Assert.assertFalse(log(dedup, "model", "one", Deduplicator.PREDICTION));
+    Assert.assertFalse(log(dedup, "model", "one", Deduplicator.ACTUAL));
+    Assert.assertTrue(log(dedup, "model", "one", Deduplicator.ACTUAL));
+    Assert.assertTrue(log(dedup, "model", "one", Deduplicator.PREDICTION | Deduplicator.ACTUAL));
+    Assert.assertFalse(
+        log(dedup, "model", "one", Deduplicator.ACTUAL | Deduplicator.FEATURE_IMPORTANCES));
+  }
+
+  @Test
+  public void testOldestIdsAreEvicted() {
+    Deduplicator dedup = new Deduplicator(2, 0);
+    log(dedup, "model", "one", Deduplicator.PREDICTION);
+    log(dedup, "model", "two", Deduplicator.PREDICTION);
+    log(dedup, "model", "three", Deduplicator.PREDICTION);
+    Assert.assertTrue(log(dedup, "model", "three", Deduplicator.PREDICTION));
+    Assert.assertFalse(log(dedup, "model", "one", Deduplicator.PREDICTION));
+  }
+
+  @Test
+  public void testWindowExpiry() throws InterruptedException {
+    Deduplicator dedup = new Deduplicator(10, 20);
+    Assert.assertFalse(log(dedup, "model", "one", Deduplicator.PREDICTION));
+    Thread.sleep(40);
+    Assert.assertFalse(log(dedup, "model", "one", Deduplicator.PREDICTION));
+  }
+
+  @Test
+  public void testCheckDoesNotRemember() {
+    Deduplicator dedup = new Deduplicator(10, 0);
+    Assert.assertFalse(dedup.isDuplicate("model", "one", Deduplicator.PREDICTION));
+    Assert.assertFalse(dedup.isDuplicate("model", "one", Deduplicator.PREDICTION));
+    // a record without parts is never a duplicate
+    Assert.assertFalse(log(dedup, "model", "two", 0));
+    Assert.assertFalse(log(dedup, "model", "two", 0));
+    Assert.assertEquals(0, dedup.getDuplicateCount());
+  }
+
+  @Test
+  public void testMarkSentAndForget() {
+    Deduplicator dedup = new Deduplicator(10, 0);
+    Assert.assertEquals(
+        Deduplicator.PREDICTION, dedup.markSent("model", "one", Deduplicator.PREDICTION));
+    // another call sent it since the check
+    Assert.assertEquals(0, dedup.markSent("model", "one", Deduplicator.PREDICTION));
+    Assert.assertEquals(1, dedup.getDuplicateCount());
+    // only the newly sent part is handed back, so forgetting it keeps the prediction
+    int marked =
+        dedup.markSent("model", "one", Deduplicator.PREDICTION | Deduplicator.ACTUAL);
+    Assert.assertEquals(Deduplicator.ACTUAL, marked);
+    dedup.forget("model", "one", marked);
+    Assert.assertFalse(dedup.isDuplicate("model", "one", Deduplicator.ACTUAL));
+    Assert.assertTrue(dedup.isDuplicate("model", "one", Deduplicator.PREDICTION));
+    dedup.forget("model", "one", Deduplicator.PREDICTION);
+    Assert.assertFalse(dedup.isDuplicate("model", "one", Deduplicator.PREDICTION));
+  }
+
+  @Test
+  public void testParts() {
+    Assert.assertEquals(0, Deduplicator.parts(null, null, null));
+    Assert.assertEquals(0, Deduplicator.parts(null, null, Collections.emptyMap()));
+    Assert.assertEquals(
+        Deduplicator.PREDICTION | Deduplicator.FEATURE_IMPORTANCES,
+        Deduplicator.parts(1.0, null, Collections.singletonMap("a", 1.0)));
+  }
+}
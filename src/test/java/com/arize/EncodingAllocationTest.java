@@ -0,0 +1,127 @@
+package com.arize;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.arize.protocol.Public;
+import com.arize.protocol.Public.PreProductionRecord;
+import com.arize.protocol.Public.Record;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Guards the per-row allocation of the training/validation encoder against regressions. The
+ * baseline is the original encoding, which built a PreProductionRecord wrapper per row and
+ * concatenated one JSON string per record. Most of what remains per row is spent inside the
+ * protobuf JSON printer, so the margin asserted here is deliberately modest.
+ *
+ * <p>Allocation figures depend on the JVM and its settings, so the allocation assertion only runs
+ * when asked for: {@code mvn test -Dtest=EncodingAllocationTest -Darize.allocationTests=true}.
+ */
+public class EncodingAllocationTest {
+
+  private static final int ROWS = 200;
+  private static final int ITERATIONS = 50;
+
+  /** Enables the allocation assertion, which is left out of the default test run. */
+  private static final String ALLOCATION_TESTS = "arize.allocationTests";
+
+  private ArizeClient client;
+  private List<Map<String, ?>> features;
+  private List<Map<String, ?>> tags;
+  private List<Double> labels;
+
+  @Before
+  public void setup() throws Exception {
+    client = new ArizeClient("apiKey", "spaceKey", "http://localhost:1/v1");
+    features = new ArrayList<>(ROWS);
+    tags = new ArrayList<>(ROWS);
+    labels = new ArrayList<>(ROWS);
+    for (int row = 0; row < ROWS; row++) {
+      Map<String, Object> rowFeatures = new HashMap<>();
+      for (int i = 0; i < 10; i++) {
+        rowFeatures.put("feature_" + i, i % 2 == 0 ? (Object) ("value_" + i) : (Object) (double) i);
+      }
+      features.add(rowFeatures);
+      Map<String, Object> rowTags = new HashMap<>();
+      rowTags.put("region", "us-west");
+      tags.add(rowTags);
+      labels.add((double) row);
+    }
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    client.close();
+  }
+
+  @Test
+  public void testEncodingMatchesWrapperMessages() throws Exception {
+    assertEquals(
+        legacyEncode(null),
+        client.encodePreProductionRecords(
+            "model", "v1", null, features, null, tags, labels, labels));
+    assertEquals(
+        legacyEncode("batch"),
+        client.encodePreProductionRecords(
+            "model", "v1", "batch", features, null, tags, labels, labels));
+  }
+
+  @Test
+  public void testEncodingAllocatesLessThanWrapperMessages() throws Exception {
+    assumeTrue(Boolean.getBoolean(ALLOCATION_TESTS));
+    assumeTrue(AllocationMeter.isSupported());
+    final String[] sink = new String[1];
+    final double legacy =
+        AllocationMeter.bytesPerOp(ITERATIONS, () -> sink[0] = legacyEncode("batch")) / ROWS;
+    final double current =
+        AllocationMeter.bytesPerOp(
+                ITERATIONS,
+                () ->
+                    sink[0] =
+                        client.encodePreProductionRecords(
+                            "model", "v1", "batch", features, null, tags, labels, labels))
+            / ROWS;
+    assertTrue(
+        String.format("%.0f bytes/row, baseline %.0f bytes/row", current, legacy),
+        current < legacy * 0.9);
+  }
+
+  private String legacyEncode(final String batchId) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < labels.size(); i++) {
+      Record.Builder recordBuilder = Record.newBuilder();
+      recordBuilder.setModelId("model");
+      Public.Prediction.Builder predictionBuilder = Public.Prediction.newBuilder();
+      predictionBuilder.setLabel(RecordUtil.convertLabel(labels.get(i)));
+      predictionBuilder.setModelVersion("v1");
+      predictionBuilder.putAllFeatures(RecordUtil.convertFeatures(features.get(i)));
+      predictionBuilder.putAllTags(RecordUtil.convertTags(tags.get(i)));
+      recordBuilder.setPrediction(predictionBuilder);
+      Public.Actual.Builder actualBuilder = Public.Actual.newBuilder();
+      actualBuilder.setLabel(RecordUtil.convertLabel(labels.get(i)));
+      recordBuilder.setActual(actualBuilder);
+      PreProductionRecord.Builder pprBuilder = PreProductionRecord.newBuilder();
+      if (batchId == null) {
+        pprBuilder.setTrainingRecord(
+            PreProductionRecord.TrainingRecord.newBuilder().setRecord(recordBuilder));
+      } else {
+        pprBuilder.setValidationRecord(
+            PreProductionRecord.ValidationRecord.newBuilder()
+                .setBatchId(batchId)
+                .setRecord(recordBuilder));
+      }
+      sb.append(RecordUtil.toJSON(pprBuilder.build()));
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+}
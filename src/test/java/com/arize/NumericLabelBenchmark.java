@@ -0,0 +1,84 @@
+package com.arize;
+
+import com.arize.protocol.Public;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-row cost of encoding the labels of a regression model's bulk upload: the former string round
+ * trip, boxed labels through {@link Number#doubleValue()}, and primitive {@code double[]} labels.
+ * Each row gets a prediction and an actual, as in a backfill. Run with {@code mvn test-compile
+ * exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.arize.NumericLabelBenchmark}.
+ */
+public class NumericLabelBenchmark {
+
+  private static final int ROWS = 1000;
+  private static final int ITERATIONS = 2000;
+
+  public static void main(String[] args) throws Exception {
+    if (!AllocationMeter.isSupported()) {
+      System.out.println("thread allocation accounting not supported by this JVM");
+      return;
+    }
+    final double[] primitive = new double[ROWS];
+    final List<Double> boxed = new ArrayList<>(ROWS);
+    for (int i = 0; i < ROWS; i++) {
+      primitive[i] = 1000 * Math.sin(i) + i / 7.0;
+      boxed.add(primitive[i]);
+    }
+    final LabelColumn boxedColumn = LabelColumn.of(boxed);
+    final LabelColumn primitiveColumn = LabelColumn.of(primitive);
+    final Public.BulkRecord[] sink = new Public.BulkRecord[1];
+
+    final AllocationMeter.ThrowingRunnable stringRoundTrip =
+        () -> {
+          Public.BulkRecord.Builder bulk = Public.BulkRecord.newBuilder();
+          for (int row = 0; row < ROWS; row++) {
+            Public.Label label =
+                Public.Label.newBuilder()
+                    .setNumeric(Double.parseDouble(String.valueOf(boxed.get(row))))
+                    .build();
+            bulk.addRecords(
+                Public.Record.newBuilder()
+                    .setPrediction(Public.Prediction.newBuilder().setLabel(label))
+                    .setActual(
+                        Public.Actual.newBuilder()
+                            .setLabel(
+                                Public.Label.newBuilder()
+                                    .setNumeric(Double.parseDouble(String.valueOf(boxed.get(row))))
+                                    .build())));
+          }
+          sink[0] = bulk.build();
+        };
+    final AllocationMeter.ThrowingRunnable viaBoxed = () -> sink[0] = encode(boxedColumn);
+    final AllocationMeter.ThrowingRunnable viaPrimitive = () -> sink[0] = encode(primitiveColumn);
+
+    report("string round trip", stringRoundTrip);
+    report("Number.doubleValue", viaBoxed);
+    report("double[]", viaPrimitive);
+  }
+
+  private static Public.BulkRecord encode(final LabelColumn labels) {
+    Public.BulkRecord.Builder bulk = Public.BulkRecord.newBuilder();
+    for (int row = 0; row < ROWS; row++) {
+      Public.Prediction.Builder prediction = Public.Prediction.newBuilder();
+      labels.encodePrediction(prediction, row);
+      Public.Actual.Builder actual = Public.Actual.newBuilder();
+      labels.encodeActual(actual, row);
+      bulk.addRecords(Public.Record.newBuilder().setPrediction(prediction).setActual(actual));
+    }
+    return bulk.build();
+  }
+
+  private static void report(final String name, final AllocationMeter.ThrowingRunnable task)
+      throws Exception {
+    final double bytes = AllocationMeter.bytesPerOp(ITERATIONS, task) / ROWS;
+    final long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      task.run();
+    }
+    final double nanos = (System.nanoTime() - start) / (double) ITERATIONS / ROWS;
+    System.out.printf("%-20s: %8.1f bytes/row %8.1f ns/row%n", name, bytes, nanos);
+  }
+}
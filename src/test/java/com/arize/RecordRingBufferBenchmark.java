@@ -0,0 +1,125 @@
+package com.arize;
+
+import com.arize.protocol.Public.Record;
+import com.google.protobuf.ByteString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Hand-off throughput of the record ring buffer under producer contention, with a {@link
+ * LinkedBlockingQueue} of the same capacity as the baseline. Each producer hands over
+ * minimal records; one consumer drains. Run with {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=com.arize.RecordRingBufferBenchmark}.
+ */
+public class RecordRingBufferBenchmark {
+
+  private static final int CAPACITY = 8192;
+  private static final int RECORDS = 4_000_000;
+  private static final int[] PRODUCERS = {1, 2, 4, 8, 16, 32, 64};
+  private static final ByteString PAYLOAD = ByteString.copyFromUtf8("prediction-id");
+
+  public static void main(String[] args) throws Exception {
+    System.out.printf("%-12s", "producers");
+    for (WaitStrategy strategy : WaitStrategy.values()) {
+      System.out.printf("%14s", strategy);
+    }
+    System.out.printf("%14s%n", "LBQ");
+    for (int producers : PRODUCERS) {
+      // warm-up
+      ring(producers, WaitStrategy.YIELD);
+      queue(producers);
+      System.out.printf("%-12d", producers);
+      for (WaitStrategy strategy : WaitStrategy.values()) {
+        System.out.printf("%14s", format(ring(producers, strategy)));
+      }
+      System.out.printf("%14s%n", format(queue(producers)));
+    }
+  }
+
+  private static String format(final double opsPerSecond) {
+    return String.format("%.2fM/s", opsPerSecond / 1e6);
+  }
+
+  private static double ring(final int producers, final WaitStrategy strategy)
+      throws InterruptedException {
+    final RecordRingBuffer ring = new RecordRingBuffer(CAPACITY, strategy);
+    final int perProducer = RECORDS / producers;
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      threads.add(
+          new Thread(
+              () -> {
+                await(start);
+                for (int i = 0; i < perProducer; i++) {
+                  long sequence = ring.next();
+                  ring.get(sequence).setPredictionIdBytes(PAYLOAD);
+                  ring.publish(sequence);
+                }
+              }));
+    }
+    threads.forEach(Thread::start);
+    final long total = (long) perProducer * producers;
+    final long begin = System.nanoTime();
+    start.countDown();
+    long received = 0;
+    final RecordRingBuffer.Handler handler = (record, mark) -> {};
+    while (received < total) {
+      received += ring.drain(handler, 256);
+    }
+    final long elapsed = System.nanoTime() - begin;
+    for (Thread t : threads) {
+      t.join();
+    }
+    return total * 1e9 / elapsed;
+  }
+
+  private static double queue(final int producers) throws InterruptedException {
+    final BlockingQueue<Record.Builder> queue = new LinkedBlockingQueue<>(CAPACITY);
+    final int perProducer = RECORDS / producers;
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      threads.add(
+          new Thread(
+              () -> {
+                await(start);
+                try {
+                  for (int i = 0; i < perProducer; i++) {
+                    queue.put(Record.newBuilder().setPredictionIdBytes(PAYLOAD));
+                  }
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+              }));
+    }
+    threads.forEach(Thread::start);
+    final long total = (long) perProducer * producers;
+    final long begin = System.nanoTime();
+    start.countDown();
+    long received = 0;
+    final List<Record.Builder> batch = new ArrayList<>(256);
+    while (received < total) {
+      batch.add(queue.take());
+      received += 1 + queue.drainTo(batch, 255);
+      batch.clear();
+    }
+    final long elapsed = System.nanoTime() - begin;
+    for (Thread t : threads) {
+      t.join();
+    }
+    return total * 1e9 / elapsed;
+  }
+
+  private static void await(final CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.arize;
+
+import com.arize.protocol.Public.Record;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+public class RecordRingBufferTest {
+
+  @Test
+  public void testCapacityMustBePowerOfTwo() {
+    try {
+      new RecordRingBuffer(3, WaitStrategy.BUSY_SPIN);
+      Assert.fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("power of 2"));
+    }
+  }
+
+  @Test
+  public void testTryNextWhenFull() {
+    RecordRingBuffer ring = new RecordRingBuffer(2, WaitStrategy.BUSY_SPIN);
+    long first = ring.tryNext();
+    long second = ring.tryNext();
+    Assert.assertEquals(0, first);
+    Assert.assertEquals(1, second);
+    Assert.assertEquals(-1, ring.tryNext());
+    ring.get(first).setPredictionId("a");
+    ring.publish(first);
+    Assert.assertEquals(1, ring.drain((record, mark) -> {}, 10));
+    Assert.assertEquals(2, ring.tryNext());
+  }
+
+  @Test
+  public void testDrainStopsAtUnpublishedSlot() {
+    RecordRingBuffer ring = new RecordRingBuffer(4, WaitStrategy.BUSY_SPIN);
+    long first = ring.next();
+    long second = ring.next();
+    ring.get(second).setPredictionId("second");
+    ring.publish(second);
+    List<String> seen = new ArrayList<>();
+    Assert.assertEquals(0, ring.drain((record, mark) -> seen.add(record.getPredictionId()), 10));
+    ring.get(first).setPredictionId("first");
+    ring.publish(first);
+    Assert.assertEquals(2, ring.drain((record, mark) -> seen.add(record.getPredictionId()), 10));
+    Assert.assertEquals("first", seen.get(0));
+    Assert.assertEquals("second", seen.get(1));
+  }
+
+  @Test
+  public void testSlotsAreClearedForReuse() {
+    RecordRingBuffer ring = new RecordRingBuffer(1, WaitStrategy.BUSY_SPIN);
+    long sequence = ring.next();
+    ring.get(sequence).setModelId("modelId").setPredictionId("one");
+    ring.publish(sequence);
+    ring.drain((record, mark) -> {}, 1);
+    Assert.assertEquals(Record.getDefaultInstance(), ring.get(ring.next()).build());
+  }
+
+  @Test
+  public void testMarksTravelWithRecordsAndAreReset() {
+    RecordRingBuffer ring = new RecordRingBuffer(1, WaitStrategy.BUSY_SPIN);
+    List<Integer> marks = new ArrayList<>();
+    long sequence = ring.next();
+    ring.setMark(sequence, 5);
+    ring.publish(sequence);
+    ring.drain((record, mark) -> marks.add(mark), 1);
+    ring.publish(ring.next());
+    ring.drain((record, mark) -> marks.add(mark), 1);
+    Assert.assertEquals(Arrays.asList(5, 0), marks);
+  }
+
+  @Test
+  public void testConcurrentProducersDeliverEveryRecordOnce() throws InterruptedException {
+    for (WaitStrategy strategy : WaitStrategy.values()) {
+      final int producers = 8;
+      final int perProducer = 20_000;
+      final RecordRingBuffer ring = new RecordRingBuffer(1024, strategy);
+      final BitSet seen = new BitSet(producers * perProducer);
+      List<Thread> threads = new ArrayList<>();
+      for (int p = 0; p < producers; p++) {
+        final int base = p * perProducer;
+        Thread t =
+            new Thread(
+                () -> {
+                  for (int i = 0; i < perProducer; i++) {
+                    long sequence = ring.next();
+                    ring.get(sequence).setPredictionId(Integer.toString(base + i));
+                    ring.publish(sequence);
+                  }
+                });
+        threads.add(t);
+        t.start();
+      }
+      int received = 0;
+      while (received < producers * perProducer) {
+        received +=
+            ring.drain(
+                (record, mark) -> {
+                  int id = Integer.parseInt(record.getPredictionId());
+                  Assert.assertFalse("duplicate " + id, seen.get(id));
+                  seen.set(id);
+                },
+                32);
+      }
+      for (Thread t : threads) {
+        t.join();
+      }
+      Assert.assertEquals(producers * perProducer, seen.cardinality());
+      Assert.assertEquals(0, ring.size());
+    }
+  }
+}
@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 public class RecordUtilTest {
@@ -151,6 +152,111 @@ public class RecordUtilTest {
         assertEquals(embeddingMapNullLinkToData, RecordUtil.convertEmbeddingFeatures(embeddingFeatures));
     }
 
+    @Test
+    public void testPutFeaturesAndTags() {
+        FeatureDictionary dictionary = new FeatureDictionary();
+        Map<String, Object> dims = getDimensionMap();
+        dims.put("null", null);
+        Public.Prediction.Builder prediction = Public.Prediction.newBuilder();
+        RecordUtil.putFeatures(prediction, dims, dictionary);
+        RecordUtil.putFeatures(prediction, null, dictionary);
+        RecordUtil.putTags(prediction, dims, dictionary);
+        assertEquals(objMap, prediction.getFeaturesMap());
+        assertEquals(objMap, prediction.getTagsMap());
+        Public.Actual.Builder actual = Public.Actual.newBuilder();
+        RecordUtil.putTags(actual, dims, dictionary);
+        assertEquals(objMap, actual.getTagsMap());
+    }
+
+    @Test
+    public void testFeatureDictionaryInternsNames() {
+        FeatureDictionary dictionary = new FeatureDictionary(2);
+        String first = new String("feature");
+        assertSame(first, dictionary.intern(first));
+        assertSame(first, dictionary.intern(new String("feature")));
+        dictionary.intern("other");
+        String overflow = new String("third");
+        assertSame(overflow, dictionary.intern(overflow));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    public void testValueCache() {
+        ValueCache cache = new ValueCache(16);
+        Value first = cache.string(new String("us-west"));
+        assertSame(first, cache.string(new String("us-west")));
+        assertEquals("us-west", first.getString());
+        assertSame(cache.integer(42), cache.integer(42L));
+        assertEquals(42, cache.integer(42).getInt());
+        assertEquals(1L << 40, cache.integer(1L << 40).getInt());
+        assertEquals("true", cache.bool(true).getString());
+        assertEquals(4, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(4 / 6.0, cache.getHitRate(), 1e-9);
+
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i <= ValueCache.MAX_STRING_LENGTH; i++) {
+            longText.append('x');
+        }
+        String text = longText.toString();
+        assertEquals(text, cache.string(text).getString());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testConvertBooleanFeature() {
+        Map<String, Object> features = new HashMap<>();
+        features.put("flag", false);
+        assertEquals(
+                Value.newBuilder().setString("false").build(),
+                RecordUtil.convertFeatures(features).get("flag"));
+    }
+
+    @Test
+    public void testLabelKindInference() {
+        assertEquals(LabelKind.NUMERIC, LabelKind.infer(Arrays.asList(1, 2L, 3.5)));
+        assertEquals(LabelKind.CATEGORICAL, LabelKind.infer(Arrays.asList("a", "b")));
+        assertEquals(LabelKind.BINARY, LabelKind.infer(Arrays.asList(true, false)));
+        assertEquals(null, LabelKind.infer(Arrays.asList("a", 1)));
+        assertEquals(null, LabelKind.infer(Arrays.asList("a", null)));
+
+        Public.Prediction.Builder prediction = Public.Prediction.newBuilder();
+        RecordUtil.putPredictionLabel(prediction, LabelKind.NUMERIC, 7);
+        assertEquals(RecordUtil.convertLabel(7), prediction.getLabel());
+
+        RecordUtil.validateBulkPredictionActualMatches(Arrays.asList(1, 2), Arrays.asList(1.0, 2.0));
+        RecordUtil.validateBulkPredictionActualMatches(Arrays.asList(1, "b"), Arrays.asList("a", 2));
+        try {
+            RecordUtil.validateBulkPredictionActualMatches(
+                    Arrays.<Object>asList(1, 2), Arrays.<Object>asList("a", "b"));
+            fail("expected mismatched label kinds to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(
+                    "predictionLabel and actualLabel must be of the same type. predictionLabel: NUMERIC"
+                            + " actualLabel: CATEGORICAL",
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    public void testNumericLabelConversion() {
+        assertEquals(0.1, RecordUtil.convertLabel(0.1f).getNumeric(), 0);
+        assertEquals(9007199254740993d, RecordUtil.convertLabel(9007199254740993L).getNumeric(), 0);
+        assertEquals(-7, RecordUtil.convertLabel((short) -7).getNumeric(), 0);
+        assertEquals(2.5, RecordUtil.numericLabel(2.5).getNumeric(), 0);
+    }
+
+    @Test
+    public void testTimestampCache() {
+        TimestampCache cache = new TimestampCache();
+        com.google.protobuf.Timestamp first = cache.fromMillis(1596560235123L);
+        assertEquals(1596560235L, first.getSeconds());
+        assertEquals(123000000, first.getNanos());
+        cache.fromMillis(1596560235124L);
+        assertSame(first, cache.fromMillis(1596560235123L));
+        assertEquals(com.google.protobuf.util.Timestamps.fromMillis(-1L), cache.fromMillis(-1L));
+    }
+
     private static Map<String, Object> getDimensionMap() {
         Map<String, Object> dims = new HashMap<>();
         dims.put("int", 2020);
@@ -0,0 +1,62 @@
+package com.arize;
+
+import org.apache.http.Header;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHeader;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compares per-request allocation of building every request from scratch against stamping requests
+ * from a prebuilt {@link RequestTemplate}. Run with {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=com.arize.RequestTemplateBenchmark}.
+ */
+public class RequestTemplateBenchmark {
+
+  private static final int ITERATIONS = 1_000_000;
+  private static final String BODY =
+      "{\"modelId\":\"modelId\",\"predictionId\":\"predictionId\",\"prediction\":{\"label\":{\"numeric\":20.2}}}";
+
+  public static void main(String[] args) throws Exception {
+    if (!AllocationMeter.isSupported()) {
+      System.out.println("thread allocation accounting not supported by this JVM");
+      return;
+    }
+    final URI uri = new URI("https://api.arize.com/v1/log");
+    final RequestTemplate template =
+        new RequestTemplate(
+            uri,
+            new Header[] {
+              new BasicHeader("Authorization", "apiKey"),
+              new BasicHeader("Grpc-Metadata-space", "spaceKey"),
+              new BasicHeader("Grpc-Metadata-sdk-language", "jvm"),
+              new BasicHeader("Grpc-Metadata-language-version", "1.8"),
+              new BasicHeader("Grpc-Metadata-sdk-version", "2.1.1")
+            });
+    final HttpPost[] sink = new HttpPost[1];
+
+    double perRequest =
+        AllocationMeter.bytesPerOp(ITERATIONS, () -> sink[0] = legacyRequest(BODY, uri));
+    double templated =
+        AllocationMeter.bytesPerOp(ITERATIONS, () -> sink[0] = template.newRequest(BODY));
+
+    System.out.printf("per-call build : %8.1f bytes/request%n", perRequest);
+    System.out.printf("template stamp : %8.1f bytes/request%n", templated);
+    System.out.printf("saved          : %8.1f%%%n", 100 * (1 - templated / perRequest));
+  }
+
+  /** The request construction used before templates were introduced. */
+  private static HttpPost legacyRequest(final String body, final URI host) {
+    final HttpPost request = new HttpPost();
+    request.setEntity(new StringEntity(body, StandardCharsets.UTF_8));
+    request.setURI(host);
+    request.addHeader("Authorization", "apiKey");
+    request.addHeader("Grpc-Metadata-space", "spaceKey");
+    request.addHeader("Grpc-Metadata-sdk-language", "jvm");
+    request.addHeader("Grpc-Metadata-language-version", "1.8");
+    request.addHeader("Grpc-Metadata-sdk-version", "2.1.1");
+    return request;
+  }
+}
@@ -0,0 +1,70 @@
+package com.arize;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SamplersTest {
+
+  @Test
+  public void testFixedRateBounds() {
+    Assert.assertSame(Samplers.always(), Samplers.fixedRate(1.0));
+    Sampler none = Samplers.fixedRate(0.0);
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertFalse(none.sample("model", Integer.toString(i)));
+    }
+    try {
+      Samplers.fixedRate(1.5);
+      Assert.fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("between 0 and 1"));
+    }
+  }
+
+  @Test
+  public void testPredictionIdHashIsDeterministicAndProportional() {
+    Sampler sampler = Samplers.predictionIdHash(0.25);
+    int kept = 0;
+    for (int i = 0; i < 100_000; i++) {
+      String id = "prediction-" + i;
+      boolean first = sampler.sample("model", id);
+      Assert.assertEquals(first, sampler.sample("other-model", id));
+      if (first) {
+        kept++;
+      }
+    }
+    Assert.assertEquals(0.25, kept / 100_000.0, 0.01);
+  }
+
+  @Test
+  public void testPerModel() {
+    Sampler sampler =
+        Samplers.perModel(
+            Collections.singletonMap("quiet", Samplers.fixedRate(0.0)), Samplers.always());
+    Assert.assertFalse(sampler.sample("quiet", "id"));
+    Assert.assertTrue(sampler.sample("loud", "id"));
+  }
+
+  @Test
+  public void testAdaptiveShedsWithLoad() {
+    AtomicLong depth = new AtomicLong();
+    Sampler sampler = Samplers.adaptive(depth::get, 100, 200, 0.0);
+    Assert.assertEquals(1.0, keptFraction(sampler), 0.0);
+    depth.set(150);
+    Assert.assertEquals(0.5, keptFraction(sampler), 0.02);
+    depth.set(500);
+    Assert.assertEquals(0.0, keptFraction(sampler), 0.0);
+  }
+
+  private static double keptFraction(Sampler sampler) {
+    int kept = 0;
+    for (int i = 0; i < 10_000; i++) {
+      if (sampler.sample("model", "prediction-" + i)) {
+        kept++;
+      }
+    }
+    return kept / 10_000.0;
+  }
+}
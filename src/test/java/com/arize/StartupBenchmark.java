@@ -0,0 +1,93 @@
+package com.arize;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start cost of the client: loading {@link ArizeClient}, constructing it, the optional {@link
+ * ArizeClient#warmUp()} and the first and second {@code log} against a local server. Each phase
+ * reports its wall time and the classes it loaded. Startup only happens once per JVM, so run it in
+ * a fresh JVM each time, with and without warm-up: {@code mvn test-compile exec:java
+ * -Dexec.classpathScope=test -Dexec.mainClass=com.arize.StartupBenchmark [-Dexec.args=warm]}.
+ *
+ * <p>To measure a class data sharing archive, run it from jars, since CDS ignores class
+ * directories: after {@code mvn package}, put the shaded jar and a jar of this class on the
+ * classpath, run once with {@code -XX:ArchiveClassesAtExit=arize.jsa} and compare runs with and
+ * without {@code -XX:SharedArchiveFile=arize.jsa}.
+ */
+public class StartupBenchmark {
+
+  private static final ClassLoadingMXBean CLASSES = ManagementFactory.getClassLoadingMXBean();
+
+  private static long start;
+  private static long classes;
+
+  public static void main(String[] args) throws Exception {
+    final boolean warm = args.length > 0 && args[0].equals("warm");
+    final HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+    server.createContext(
+        "/v1/log",
+        exchange -> {
+          exchange.getRequestBody().close();
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+        });
+    server.start();
+    final String uri = "http://localhost:" + server.getAddress().getPort() + "/v1";
+
+    begin();
+    Class.forName("com.arize.ArizeClient");
+    end("load ArizeClient");
+
+    begin();
+    final ArizeClient client = new ArizeClient("apiKey", "spaceKey", uri);
+    end("construct client");
+
+    if (warm) {
+      begin();
+      ArizeClient.warmUp();
+      end("warmUp");
+    }
+
+    for (String phase : new String[] {"first log", "second log"}) {
+      begin();
+      client
+          .log(
+              "modelId",
+              "v1",
+              phase,
+              Collections.singletonMap("age", 42),
+              null,
+              Collections.singletonMap("region", "us-west"),
+              0.5,
+              null,
+              null,
+              0)
+          .resolve(10, TimeUnit.SECONDS);
+      end(phase);
+    }
+    System.out.printf(
+        "%-18s: %8d ms %6d classes%n",
+        "JVM uptime",
+        ManagementFactory.getRuntimeMXBean().getUptime(),
+        CLASSES.getTotalLoadedClassCount());
+    server.stop(0);
+    System.exit(0);
+  }
+
+  private static void begin() {
+    classes = CLASSES.getTotalLoadedClassCount();
+    start = System.nanoTime();
+  }
+
+  private static void end(final String phase) {
+    final double millis = (System.nanoTime() - start) / 1e6;
+    final long loaded = CLASSES.getTotalLoadedClassCount() - classes;
+    System.out.printf("%-18s: %8.1f ms %6d classes%n", phase, millis, loaded);
+  }
+}
@@ -5,5 +5,12 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({RecordUtilTest.class, ArizeClientTest.class})
+@SuiteClasses({
+  RecordUtilTest.class,
+  ArizeClientTest.class,
+  RecordRingBufferTest.class,
+  SamplersTest.class,
+  DeduplicatorTest.class,
+  EncodingAllocationTest.class
+})
 public class TestSuite {}